@@ -18,4 +18,13 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+# Keep line numbers so crash reports from minified builds can be traced back to the source
+-keepattributes SourceFile,LineNumberTable
+
+# Room creates the generated database implementation by name. Room's own rules cover this, it is
+# kept here too so the database still opens if those rules change.
+-keep class * extends androidx.room.RoomDatabase { <init>(); }
+# Entities and query results are read and written through their getters and setters, keep them
+# so the generated DAOs and the schema stay in step with the source
+-keep class com.josephlimbert.weighttracker.model.** { *; }
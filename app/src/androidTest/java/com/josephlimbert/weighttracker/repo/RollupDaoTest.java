@@ -0,0 +1,89 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Runs the rollup queries on the device's own SQLite. Robolectric uses a newer SQLite than the
+ * oldest devices, so run this on an API 30 emulator (SQLite 3.28) to catch syntax they reject.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RollupDaoTest {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final int DAY = (int) LocalDate.of(2024, 1, 1).toEpochDay();
+
+    private WeightTrackerDatabase database;
+    private long userId;
+
+    @Before
+    public void createDatabase() {
+        database = Room.inMemoryDatabaseBuilder(
+                        InstrumentationRegistry.getInstrumentation().getTargetContext(), WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        userId = database.userDao().registerUser(user);
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void rebuildBucket_summarizesTheBucketsWeights() {
+        addWeight(DAY, 9, 200);
+        addWeight(DAY + 1, 9, 196);
+        addWeight(DAY + 2, 9, 198);
+        // Outside the bucket
+        addWeight(DAY + 7, 9, 150);
+
+        long bucketStart = RollupBuckets.dayStart(DAY, ZONE);
+        database.rollupDao().rebuildBucket(userId, WeightRollup.WEEK, bucketStart, DAY, DAY + 7);
+
+        List<WeightRollup> rollups = database.rollupDao().getRollups(userId, WeightRollup.WEEK, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(1, rollups.size());
+        WeightRollup rollup = rollups.get(0);
+        assertEquals(bucketStart, rollup.getBucketStart());
+        assertEquals(3, rollup.getWeightCount());
+        assertEquals(196, rollup.getMinWeight(), 0);
+        assertEquals(200, rollup.getMaxWeight(), 0);
+        assertEquals(594, rollup.getSumWeight(), 0.01);
+        assertEquals(200, rollup.getFirstWeight(), 0);
+        assertEquals(198, rollup.getLastWeight(), 0);
+    }
+
+    @Test
+    public void rebuildBucket_emptyBucketInsertsNothing() {
+        database.rollupDao().rebuildBucket(userId, WeightRollup.WEEK, RollupBuckets.dayStart(DAY, ZONE), DAY, DAY + 7);
+
+        assertTrue(database.rollupDao().getRollups(userId, WeightRollup.WEEK, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    private void addWeight(int day, int hour, float value) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(LocalDate.ofEpochDay(day).atTime(hour, 0).atZone(ZONE).toInstant().toEpochMilli(), ZONE);
+        weight.setWeight(value);
+        database.weightDao().addWeight(weight);
+    }
+}
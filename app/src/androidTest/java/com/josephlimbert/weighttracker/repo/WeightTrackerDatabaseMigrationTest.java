@@ -0,0 +1,188 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.ZoneId;
+
+/**
+ * Creates each version of the database from the schemas exported to app/schemas and checks
+ * that the migrations turn it into the next version's schema. The query plan tests run the
+ * WeightDao queries against the migrated database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightTrackerDatabaseMigrationTest {
+    private static final String TEST_DB = "migration-test.db";
+    private static final int LATEST_VERSION = 6;
+    private static final String USER_DATE_INDEX = "index_Weights_user_id_recorded_date";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(),
+            WeightTrackerDatabase.class);
+
+    // Left open so each test can add its own rows before migrating
+    private SupportSQLiteDatabase version1;
+
+    @Before
+    public void createVersion1Database() {
+        version1 = helper.createDatabase(TEST_DB, 1);
+        version1.execSQL("INSERT INTO Users (id, username, password) VALUES (1, 'first', 'secret'), (2, 'second', 'secret')");
+        version1.execSQL("INSERT INTO Weights (weight, recorded_date, user_id) VALUES (200, 1000, 1), (195, 2000, 1), (170, 3000, 2)");
+    }
+
+    @Test
+    public void eachMigration_matchesTheNextExportedSchema() {
+        version1.close();
+        for (Migration migration : WeightTrackerDatabase.MIGRATIONS) {
+            String name = "migration-" + migration.startVersion + ".db";
+            helper.createDatabase(name, migration.startVersion).close();
+            helper.runMigrationsAndValidate(name, migration.endVersion, true, migration).close();
+        }
+    }
+
+    @Test
+    public void migrateFromVersion1_keepsWeightsAndReplacesIndex() {
+        SupportSQLiteDatabase db = migrateToLatest();
+
+        assertEquals(3, count(db, "SELECT COUNT(*) FROM Weights"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'index_Weights_recorded_date'"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE name = '" + USER_DATE_INDEX + "'"));
+    }
+
+    @Test
+    public void migrateFromVersion1_fillsRecordedDay() {
+        // A weight without a date can't be shown or exported so the migration drops it
+        version1.execSQL("INSERT INTO Weights (weight, recorded_date, user_id) VALUES (190, NULL, 2)");
+
+        SupportSQLiteDatabase db = migrateToLatest();
+        assertEquals(3, count(db, "SELECT COUNT(*) FROM Weights"));
+        int day = Weight.toEpochDay(2000, ZoneId.systemDefault());
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM Weights WHERE user_id = 1 AND recorded_day = " + day));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'index_Weights_user_id_recorded_day'"));
+    }
+
+    @Test
+    public void migrateFromVersion1_renamesDuplicateUsernames() {
+        // Older versions registered a second "first" when the password didn't match
+        version1.execSQL("INSERT INTO Users (id, username, password) VALUES (3, 'first', 'other')");
+        version1.close();
+
+        WeightTrackerDatabase database = openWithRoom();
+        assertEquals(1, database.userDao().getUserByUsername("first").getId());
+        assertEquals(3, database.userDao().getUserByUsername("first (3)").getId());
+        // Passwords are left as they were until each user logs in again
+        assertEquals("secret", database.userDao().getUserByUsername("first").getPassword());
+        assertEquals(1, count(database.getOpenHelper().getWritableDatabase(),
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = 'index_Users_username'"));
+    }
+
+    @Test
+    public void addWeight_doesNotReplaceOtherUsersWeightAtSameTime() {
+        version1.close();
+        WeightTrackerDatabase database = openWithRoom();
+        Weight weight = new Weight();
+        weight.setWeight(160);
+        weight.setRecorded(1000, ZoneId.systemDefault());
+        weight.setUserId(2);
+        database.weightDao().addWeight(weight);
+
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM Weights WHERE recorded_date = 1000"));
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM Weights WHERE user_id = 1"));
+    }
+
+    @Test
+    public void currentWeightQuery_usesUserDateIndex() {
+        assertUsesUserDateIndex(WeightDao.CURRENT_WEIGHT_QUERY, 1L);
+    }
+
+    @Test
+    public void startingWeightQuery_usesUserDateIndex() {
+        assertUsesUserDateIndex(WeightDao.STARTING_WEIGHT_QUERY, 1L);
+    }
+
+    @Test
+    public void weightListQuery_usesUserDateIndex() {
+        assertUsesUserDateIndex(WeightDao.WEIGHT_LIST_QUERY, 1L);
+    }
+
+    @Test
+    public void olderWeightsQuery_usesUserDateIndex() {
+        assertUsesUserDateIndex(WeightDao.OLDER_WEIGHTS_QUERY, 1L, 5000L, 30);
+    }
+
+    @Test
+    public void newerWeightsQuery_usesUserDateIndex() {
+        assertUsesUserDateIndex(WeightDao.NEWER_WEIGHTS_QUERY, 1L, 0L, 30);
+    }
+
+    @Test
+    public void goalWeightQuery_doesNotSort() {
+        // Goal_Weight has one row per user, so reading it is bounded by the number of users
+        String plan = queryPlan(migrateToLatest(), WeightDao.GOAL_WEIGHT_QUERY, 1L);
+        assertTrue(plan, plan.contains("Goal_Weight"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    // Close the version 1 database, migrate it to the latest version and check it matches the
+    // latest exported schema
+    private SupportSQLiteDatabase migrateToLatest() {
+        version1.close();
+        return helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, WeightTrackerDatabase.MIGRATIONS);
+    }
+
+    // Open the version 1 database the way the app does, so Room runs the migrations itself
+    private WeightTrackerDatabase openWithRoom() {
+        WeightTrackerDatabase database = Room.databaseBuilder(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                        WeightTrackerDatabase.class, TEST_DB)
+                .addMigrations(WeightTrackerDatabase.MIGRATIONS)
+                .build();
+        helper.closeWhenFinished(database);
+        return database;
+    }
+
+    // Every Weights lookup in the query should search the composite index and read rows in index
+    // order instead of scanning the table and sorting it. The DAO's named parameters are bound by
+    // position.
+    private void assertUsesUserDateIndex(String sql, Object... args) {
+        String plan = queryPlan(migrateToLatest(), sql, args);
+        assertTrue(plan, plan.contains(USER_DATE_INDEX));
+        assertFalse(plan, plan.matches("(?s).*SCAN (TABLE )?Weights\\b.*"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private static String queryPlan(SupportSQLiteDatabase db, String sql, Object... args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailColumn)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static long count(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
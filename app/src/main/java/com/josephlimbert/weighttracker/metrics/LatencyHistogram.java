@@ -0,0 +1,53 @@
+package com.josephlimbert.weighttracker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histogram of durations with one bucket per power of two microseconds, so recording is a few
+// atomic increments and never allocates. Percentiles are the upper bound of the bucket they fall
+// in, which is accurate to within a factor of two.
+public class LatencyHistogram {
+    // Bucket 0 holds everything under 2 microseconds, the last bucket holds over an hour
+    private static final int BUCKETS = 33;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 1);
+        int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n / 1000;
+    }
+
+    public long getMaxMicros() {
+        return maxNanos.get() / 1000;
+    }
+
+    // Get the duration that the given fraction of the recorded durations are under, for example
+    // 0.9 for the 90th percentile. Returns 0 when nothing was recorded.
+    public long getPercentileMicros(double fraction) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(1L << (i + 1), getMaxMicros());
+        }
+        return getMaxMicros();
+    }
+}
@@ -0,0 +1,34 @@
+package com.josephlimbert.weighttracker.metrics;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+// Dumps the metrics to a file from the command line. Only the shell can send it:
+//   adb shell am broadcast -n com.josephlimbert.weighttracker/.metrics.MetricsDumpReceiver
+// Add "--ez enable true" to turn recording on first, or "--ez reset true" to clear the metrics
+// after they are written. The path of the file is returned as the broadcast's result data.
+public class MetricsDumpReceiver extends BroadcastReceiver {
+    private static final String TAG = "MetricsDumpReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        if (intent.hasExtra("enable")) metrics.setEnabled(intent.getBooleanExtra("enable", false));
+        try {
+            File file = metrics.dumpToFile(context);
+            if (intent.getBooleanExtra("reset", false)) metrics.reset();
+            setResultCode(Activity.RESULT_OK);
+            setResultData(file.getPath());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not dump the metrics", e);
+            setResultCode(Activity.RESULT_CANCELED);
+            setResultData(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.josephlimbert.weighttracker.metrics;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Latency histograms, counters and frame stats recorded while the app runs, shown on the metrics
+// screen and written to a file on request. Recording is off by default. While it is off every
+// record method returns after reading one volatile flag, so the calls can stay in release builds.
+public class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private volatile boolean enabled;
+    private volatile long enabledAt;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> frames = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> jankFrames = new ConcurrentHashMap<>();
+    // Values other classes already count, such as the user change tracker's. They are read when
+    // the metrics are dumped instead of being recorded here.
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    // The app shares one registry, tests make their own
+    @VisibleForTesting
+    MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) enabledAt = System.currentTimeMillis();
+        this.enabled = enabled;
+    }
+
+    // Record how long the named operation took, for example "WeightDao.loadGoalWeight"
+    public void recordLatency(String name, long nanos) {
+        if (!enabled) return;
+        latencies.computeIfAbsent(name, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    // Start timing an operation to pass to recordSince. Returns 0 while recording is off, so an
+    // operation that is always timed costs one volatile read and no clock read.
+    public long startTiming() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // Record the time since startTiming under the given name
+    public void recordSince(String name, long start) {
+        if (start != 0) recordLatency(name, System.nanoTime() - start);
+    }
+
+    public void increment(String name) {
+        if (!enabled) return;
+        counters.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    // Record one frame drawn while the given screen was showing
+    public void recordFrame(String screen, long durationNanos, boolean jank) {
+        if (!enabled) return;
+        frames.computeIfAbsent(screen, key -> new LatencyHistogram()).record(durationNanos);
+        if (jank) jankFrames.computeIfAbsent(screen, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    // Wrap a LiveData so every value it emits to its observers is counted under the given name
+    public <T> LiveData<T> countEmissions(String name, LiveData<T> source) {
+        return Transformations.map(source, value -> {
+            increment(name);
+            return value;
+        });
+    }
+
+    // Forget everything recorded so far. Gauges are kept since they belong to other classes.
+    public void reset() {
+        latencies.clear();
+        counters.clear();
+        frames.clear();
+        jankFrames.clear();
+        enabledAt = System.currentTimeMillis();
+    }
+
+    // Write every metric as plain text, one per line and sorted by name
+    public void dump(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        long seconds = enabled ? (System.currentTimeMillis() - enabledAt) / 1000 : 0;
+        out.println("Weight Tracker metrics, recording " + (enabled ? "on for " + seconds + " s" : "off"));
+
+        out.println();
+        out.println("Latency (microseconds): count mean p50 p90 p99 max");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            out.println("  " + entry.getKey() + ": " + histogram.getCount() + " " + durations(histogram));
+        }
+
+        out.println();
+        out.println("Counters");
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+            out.println("  " + entry.getKey() + ": " + entry.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            out.println("  " + entry.getKey() + ": " + entry.getValue().getAsLong());
+        }
+
+        out.println();
+        out.println("Frames (microseconds): count jank mean p50 p90 p99 max");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(frames).entrySet()) {
+            AtomicLong jank = jankFrames.get(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            out.println("  " + entry.getKey() + ": " + histogram.getCount() + " "
+                    + (jank == null ? 0 : jank.get()) + " " + durations(histogram));
+        }
+        out.flush();
+    }
+
+    public String dumpToString() {
+        StringWriter writer = new StringWriter();
+        dump(writer);
+        return writer.toString();
+    }
+
+    // Write the metrics to a new file in the app's external files so it can be pulled with adb
+    // without root. Returns the file that was written.
+    public File dumpToFile(Context context) throws IOException {
+        File dir = context.getExternalFilesDir("metrics");
+        if (dir == null) dir = new File(context.getFilesDir(), "metrics");
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        File file = new File(dir, "metrics-" + System.currentTimeMillis() + ".txt");
+        try (FileWriter writer = new FileWriter(file)) {
+            dump(writer);
+        }
+        return file;
+    }
+
+    // Mean, p50, p90, p99 and max
+    private static String durations(LatencyHistogram histogram) {
+        return histogram.getMeanMicros()
+                + " " + histogram.getPercentileMicros(0.5) + " " + histogram.getPercentileMicros(0.9)
+                + " " + histogram.getPercentileMicros(0.99) + " " + histogram.getMaxMicros();
+    }
+}
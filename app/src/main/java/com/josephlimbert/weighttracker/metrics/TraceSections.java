@@ -0,0 +1,50 @@
+package com.josephlimbert.weighttracker.metrics;
+
+import androidx.tracing.Trace;
+
+import com.josephlimbert.weighttracker.BuildConfig;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Named sections in system traces, so Perfetto and the macrobenchmarks can see what the app's
+// threads are doing. Sections are only emitted when the app is built with TRACE_SECTIONS, which
+// debug builds turn on and release builds only with -PtraceSections=true. The flag is a constant,
+// so in other builds every call here is removed by R8.
+//
+// Section names are "<Class>.<operation>". A section is ended on the thread that began it.
+public final class TraceSections {
+    public static final boolean ENABLED = BuildConfig.TRACE_SECTIONS;
+
+    // Async sections with the same name need different cookies to be told apart
+    private static final AtomicInteger nextCookie = new AtomicInteger();
+
+    private TraceSections() {
+    }
+
+    public static void begin(String name) {
+        if (ENABLED) Trace.beginSection(name);
+    }
+
+    public static void end() {
+        if (ENABLED) Trace.endSection();
+    }
+
+    // Wrap a task that runs on another thread. The task runs in a section with the given name and
+    // an async section named "<name> (queued)" covers the time from this call until the task
+    // finishes, including the time spent waiting for a free thread.
+    public static Runnable wrap(String name, Runnable task) {
+        if (!ENABLED) return task;
+        String asyncName = name + " (queued)";
+        int cookie = nextCookie.incrementAndGet();
+        Trace.beginAsyncSection(asyncName, cookie);
+        return () -> {
+            Trace.beginSection(name);
+            try {
+                task.run();
+            } finally {
+                Trace.endSection();
+                Trace.endAsyncSection(asyncName, cookie);
+            }
+        };
+    }
+}
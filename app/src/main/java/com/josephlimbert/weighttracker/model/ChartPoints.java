@@ -0,0 +1,39 @@
+package com.josephlimbert.weighttracker.model;
+
+// Points for the weight chart stored as parallel arrays of epoch milliseconds and weights, oldest
+// first. from and to are the range of time the points were loaded for.
+public class ChartPoints {
+    private final long[] dates;
+    private final float[] weights;
+    private final int size;
+    private final long from;
+    private final long to;
+
+    public ChartPoints(long[] dates, float[] weights, int size, long from, long to) {
+        this.dates = dates;
+        this.weights = weights;
+        this.size = size;
+        this.from = from;
+        this.to = to;
+    }
+
+    public long[] getDates() {
+        return dates;
+    }
+
+    public float[] getWeights() {
+        return weights;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+}
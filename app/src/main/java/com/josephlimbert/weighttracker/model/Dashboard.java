@@ -0,0 +1,126 @@
+package com.josephlimbert.weighttracker.model;
+
+import java.util.Objects;
+
+// Summary of a user's weights shown on the home screen. The starting and current weights, start
+// date and count come from the user's cached weight series, see WeightSeriesCache.
+public class Dashboard {
+    private Float startingWeight;
+
+    private Float currentWeight;
+
+    private Float goalWeight;
+
+    // Epoch milliseconds of the first weight, null when there are no weights
+    private Long startDate;
+
+    private int weightCount;
+
+    // True when the values were saved on an earlier launch instead of read from the database
+    private boolean snapshot;
+
+    // Build the dashboard from the user's weight series, oldest first, and their goal weight
+    public static Dashboard from(WeightSeries series, Float goalWeight) {
+        Dashboard dashboard = new Dashboard();
+        int size = series.size();
+        if (size > 0) {
+            dashboard.setStartingWeight(series.getWeight(0));
+            dashboard.setCurrentWeight(series.getWeight(size - 1));
+            dashboard.setStartDate(series.getDate(0));
+        }
+        dashboard.setGoalWeight(goalWeight);
+        dashboard.setWeightCount(size);
+        return dashboard;
+    }
+
+    public Float getStartingWeight() {
+        return startingWeight;
+    }
+
+    public void setStartingWeight(Float startingWeight) {
+        this.startingWeight = startingWeight;
+    }
+
+    public Float getCurrentWeight() {
+        return currentWeight;
+    }
+
+    public void setCurrentWeight(Float currentWeight) {
+        this.currentWeight = currentWeight;
+    }
+
+    public Float getGoalWeight() {
+        return goalWeight;
+    }
+
+    public void setGoalWeight(Float goalWeight) {
+        this.goalWeight = goalWeight;
+    }
+
+    public Long getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Long startDate) {
+        this.startDate = startDate;
+    }
+
+    public int getWeightCount() {
+        return weightCount;
+    }
+
+    public void setWeightCount(int weightCount) {
+        this.weightCount = weightCount;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // Use the starting weight and current weight to get the total weight lost. Returns 0 if either is not set
+    public float getTotalLossWeight() {
+        if (startingWeight == null || currentWeight == null) return 0;
+        return startingWeight - currentWeight;
+    }
+
+    // Use the starting weight and goal weight to get the total weight loss goal. Returns 0 if either is not set
+    public float getTargetLossWeight() {
+        if (startingWeight == null || goalWeight == null) return 0;
+        return startingWeight - goalWeight;
+    }
+
+    // Use the target weight loss and total weight loss so far to get the amount of weight left to lose
+    public float getTargetLeftWeight() {
+        return getTargetLossWeight() - getTotalLossWeight();
+    }
+
+    // Use the starting weight, current weight, and goal weight to get the percentage of weight lost.
+    // Returns 0 if any weight is not set
+    public float getTotalLossPercentage() {
+        if (startingWeight == null || currentWeight == null || goalWeight == null) return 0;
+        return Math.min((getTotalLossWeight() / getTargetLossWeight()) * 100, 100);
+    }
+
+    // Compared by value so the repository can skip emitting a dashboard that didn't change. A
+    // snapshot never equals a dashboard read from the database so the first real one is shown.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Dashboard)) return false;
+        Dashboard other = (Dashboard) o;
+        return weightCount == other.weightCount && snapshot == other.snapshot
+                && Objects.equals(startingWeight, other.startingWeight)
+                && Objects.equals(currentWeight, other.currentWeight)
+                && Objects.equals(goalWeight, other.goalWeight)
+                && Objects.equals(startDate, other.startDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(startingWeight, currentWeight, goalWeight, startDate, weightCount, snapshot);
+    }
+}
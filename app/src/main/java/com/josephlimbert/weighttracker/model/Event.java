@@ -0,0 +1,21 @@
+package com.josephlimbert.weighttracker.model;
+
+// A value published through LiveData that should only be acted on once, such as an error to show
+// in a toast. LiveData keeps its last value so one that arrives while nothing is observing still
+// reaches the next observer, and a screen that is recreated gets the consumed event and skips it.
+// Only used on the main thread.
+public class Event<T> {
+    private final T content;
+    private boolean consumed;
+
+    public Event(T content) {
+        this.content = content;
+    }
+
+    // Get the value the first time it is asked for, null after that
+    public T consume() {
+        if (consumed) return null;
+        consumed = true;
+        return content;
+    }
+}
@@ -5,6 +5,8 @@ import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.PrimaryKey;
 
+import java.util.Objects;
+
 @Entity(tableName = "Goal_Weight", foreignKeys = @ForeignKey(entity = User.class, parentColumns = "id", childColumns = "user_id", onDelete = ForeignKey.CASCADE))
 public class GoalWeight {
     @PrimaryKey()
@@ -40,4 +42,18 @@ public class GoalWeight {
     public void setUserId(long userId) {
         this.userId = userId;
     }
+
+    // Compared by value so the repository can skip emitting a goal that didn't change
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GoalWeight)) return false;
+        GoalWeight other = (GoalWeight) o;
+        return id == other.id && Float.compare(weight, other.weight) == 0 && userId == other.userId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, weight, userId);
+    }
 }
@@ -0,0 +1,47 @@
+package com.josephlimbert.weighttracker.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Number of rows from an import file that have been committed to the database. Saved in the
+// same transaction as each batch so an interrupted import can resume after the last batch.
+@Entity(tableName = "Import_Checkpoints")
+public class ImportCheckpoint {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "source_key")
+    private String sourceKey = "";
+
+    @ColumnInfo(name = "user_id")
+    private long userId;
+
+    @ColumnInfo(name = "rows_committed")
+    private long rowsCommitted;
+
+    @NonNull
+    public String getSourceKey() {
+        return sourceKey;
+    }
+
+    public void setSourceKey(@NonNull String sourceKey) {
+        this.sourceKey = sourceKey;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public long getRowsCommitted() {
+        return rowsCommitted;
+    }
+
+    public void setRowsCommitted(long rowsCommitted) {
+        this.rowsCommitted = rowsCommitted;
+    }
+}
@@ -0,0 +1,23 @@
+package com.josephlimbert.weighttracker.model;
+
+// The outcome of logging in with a username and password. A new username registers a new user.
+public class LoginResult {
+    public enum Status { LOGGED_IN, REGISTERED, WRONG_PASSWORD }
+
+    private final Status status;
+    private final long userId;
+
+    public LoginResult(Status status, long userId) {
+        this.status = status;
+        this.userId = userId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // The logged in or registered user's ID. Not set when the password was wrong.
+    public long getUserId() {
+        return userId;
+    }
+}
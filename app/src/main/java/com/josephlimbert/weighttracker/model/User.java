@@ -2,9 +2,12 @@ package com.josephlimbert.weighttracker.model;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "Users")
+// The password column holds a PBKDF2 hash, or plain text for users who haven't logged in since
+// hashing was added. PasswordHasher handles both.
+@Entity(tableName = "Users", indices = {@Index(value = {"username"}, unique = true)})
 public class User {
     @PrimaryKey(autoGenerate = true)
     @ColumnInfo(name = "id")
@@ -0,0 +1,41 @@
+package com.josephlimbert.weighttracker.model;
+
+// The logged in user and the SMS notification settings. Read and saved together by SettingsStore.
+public class UserSettings {
+    private Long loggedInUserId;
+    private String phoneNumber = "";
+    private boolean smsEnabled;
+
+    public UserSettings() {}
+
+    public UserSettings(UserSettings other) {
+        this.loggedInUserId = other.loggedInUserId;
+        this.phoneNumber = other.phoneNumber;
+        this.smsEnabled = other.smsEnabled;
+    }
+
+    // Null when nobody is logged in
+    public Long getLoggedInUserId() {
+        return loggedInUserId;
+    }
+
+    public void setLoggedInUserId(Long loggedInUserId) {
+        this.loggedInUserId = loggedInUserId;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+    }
+
+    public boolean isSmsEnabled() {
+        return smsEnabled;
+    }
+
+    public void setSmsEnabled(boolean smsEnabled) {
+        this.smsEnabled = smsEnabled;
+    }
+}
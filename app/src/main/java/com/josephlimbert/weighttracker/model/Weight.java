@@ -3,12 +3,15 @@ package com.josephlimbert.weighttracker.model;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Objects;
 
-@Entity(tableName = "Weights", indices = {@Index(value = {"recorded_date"}, unique = true)}, foreignKeys = @ForeignKey(entity = User.class, parentColumns = "id", childColumns = "user_id", onDelete = ForeignKey.CASCADE))
+@Entity(tableName = "Weights", indices = {@Index(value = {"user_id", "recorded_date"}, unique = true), @Index(value = {"user_id", "recorded_day"})}, foreignKeys = @ForeignKey(entity = User.class, parentColumns = "id", childColumns = "user_id", onDelete = ForeignKey.CASCADE))
 public class Weight {
     @PrimaryKey(autoGenerate = true)
     @ColumnInfo(name = "id")
@@ -17,12 +20,30 @@ public class Weight {
     @ColumnInfo(name = "weight")
     private float weight;
 
+    // When the weight was recorded, in epoch milliseconds
     @ColumnInfo(name = "recorded_date")
-    private Date recordedDate;
+    private long recordedDate;
+
+    // The local calendar day it was recorded on, in days since 1970-01-01. Kept with the weight so
+    // day, week and month buckets are integer ranges that don't depend on the current time zone.
+    @ColumnInfo(name = "recorded_day")
+    private int recordedDay;
 
     @ColumnInfo(name = "user_id")
     private long userId;
 
+    public Weight() {}
+
+    // Copy a weight so it can be edited without changing the instance shown in the list or cached
+    @Ignore
+    public Weight(Weight other) {
+        this.id = other.id;
+        this.weight = other.weight;
+        this.recordedDate = other.recordedDate;
+        this.recordedDay = other.recordedDay;
+        this.userId = other.userId;
+    }
+
     public long getId() {
         return id;
     }
@@ -39,12 +60,31 @@ public class Weight {
         this.weight = weight;
     }
 
-    public Date getRecordedDate() {
+    public long getRecordedDate() {
         return recordedDate;
     }
 
-    public void setRecordedDate(Date recordedDate) {
+    public void setRecordedDate(long recordedDate) {
+        this.recordedDate = recordedDate;
+    }
+
+    public int getRecordedDay() {
+        return recordedDay;
+    }
+
+    public void setRecordedDay(int recordedDay) {
+        this.recordedDay = recordedDay;
+    }
+
+    // Set the time the weight was recorded and the day it falls on in the given time zone
+    public void setRecorded(long recordedDate, ZoneId zone) {
         this.recordedDate = recordedDate;
+        this.recordedDay = toEpochDay(recordedDate, zone);
+    }
+
+    // Get the local day a time falls on in days since 1970-01-01
+    public static int toEpochDay(long time, ZoneId zone) {
+        return (int) Instant.ofEpochMilli(time).atZone(zone).toLocalDate().toEpochDay();
     }
 
     public long getUserId() {
@@ -54,5 +94,19 @@ public class Weight {
     public void setUserId(long userId) {
         this.userId = userId;
     }
-}
 
+    // Compared by value so the repository can skip emitting a weight that didn't change
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Weight)) return false;
+        Weight other = (Weight) o;
+        return id == other.id && Float.compare(weight, other.weight) == 0 && userId == other.userId
+                && recordedDate == other.recordedDate && recordedDay == other.recordedDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, weight, recordedDate, recordedDay, userId);
+    }
+}
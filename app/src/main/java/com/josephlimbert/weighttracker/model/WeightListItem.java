@@ -0,0 +1,33 @@
+package com.josephlimbert.weighttracker.model;
+
+// A weight with the text shown for it in the history list. The text is formatted when the page
+// is loaded so binding a row only has to set it on the views.
+public class WeightListItem {
+    private final Weight weight;
+    private final String dayOfWeek;
+    private final String dayOfMonth;
+    private final String weightText;
+
+    public WeightListItem(Weight weight, String dayOfWeek, String dayOfMonth, String weightText) {
+        this.weight = weight;
+        this.dayOfWeek = dayOfWeek;
+        this.dayOfMonth = dayOfMonth;
+        this.weightText = weightText;
+    }
+
+    public Weight getWeight() {
+        return weight;
+    }
+
+    public String getDayOfWeek() {
+        return dayOfWeek;
+    }
+
+    public String getDayOfMonth() {
+        return dayOfMonth;
+    }
+
+    public String getWeightText() {
+        return weightText;
+    }
+}
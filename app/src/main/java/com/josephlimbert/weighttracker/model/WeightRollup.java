@@ -0,0 +1,142 @@
+package com.josephlimbert.weighttracker.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+// Summary of a user's weights over one day, week or month. Kept up to date as weights are
+// written so charts can read one row per bucket instead of every weight.
+@Entity(tableName = "Weight_Rollups", primaryKeys = {"user_id", "period", "bucket_start"})
+public class WeightRollup {
+    public static final int DAY = 0;
+    public static final int WEEK = 1;
+    public static final int MONTH = 2;
+    public static final int[] PERIODS = {DAY, WEEK, MONTH};
+
+    @ColumnInfo(name = "user_id")
+    private long userId;
+
+    // One of DAY, WEEK or MONTH
+    @ColumnInfo(name = "period")
+    private int period;
+
+    // Start of the bucket in epoch milliseconds, at local midnight
+    @ColumnInfo(name = "bucket_start")
+    private long bucketStart;
+
+    @ColumnInfo(name = "min_weight")
+    private float minWeight;
+
+    @ColumnInfo(name = "max_weight")
+    private float maxWeight;
+
+    @ColumnInfo(name = "sum_weight")
+    private double sumWeight;
+
+    @ColumnInfo(name = "weight_count")
+    private int weightCount;
+
+    @ColumnInfo(name = "first_date")
+    private long firstDate;
+
+    @ColumnInfo(name = "first_weight")
+    private float firstWeight;
+
+    @ColumnInfo(name = "last_date")
+    private long lastDate;
+
+    @ColumnInfo(name = "last_weight")
+    private float lastWeight;
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(int period) {
+        this.period = period;
+    }
+
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(long bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public float getMinWeight() {
+        return minWeight;
+    }
+
+    public void setMinWeight(float minWeight) {
+        this.minWeight = minWeight;
+    }
+
+    public float getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(float maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public double getSumWeight() {
+        return sumWeight;
+    }
+
+    public void setSumWeight(double sumWeight) {
+        this.sumWeight = sumWeight;
+    }
+
+    public int getWeightCount() {
+        return weightCount;
+    }
+
+    public void setWeightCount(int weightCount) {
+        this.weightCount = weightCount;
+    }
+
+    public long getFirstDate() {
+        return firstDate;
+    }
+
+    public void setFirstDate(long firstDate) {
+        this.firstDate = firstDate;
+    }
+
+    public float getFirstWeight() {
+        return firstWeight;
+    }
+
+    public void setFirstWeight(float firstWeight) {
+        this.firstWeight = firstWeight;
+    }
+
+    public long getLastDate() {
+        return lastDate;
+    }
+
+    public void setLastDate(long lastDate) {
+        this.lastDate = lastDate;
+    }
+
+    public float getLastWeight() {
+        return lastWeight;
+    }
+
+    public void setLastWeight(float lastWeight) {
+        this.lastWeight = lastWeight;
+    }
+
+    // Get the average weight in the bucket
+    public float getAverageWeight() {
+        return weightCount == 0 ? 0 : (float) (sumWeight / weightCount);
+    }
+}
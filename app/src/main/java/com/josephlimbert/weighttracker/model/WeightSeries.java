@@ -0,0 +1,45 @@
+package com.josephlimbert.weighttracker.model;
+
+import java.util.Arrays;
+
+// A user's weights as parallel arrays of epoch milliseconds and weights, oldest first. A reading
+// takes 12 bytes here instead of a Weight and a Date object each, so the full history can be kept
+// in memory for statistics and the chart. The arrays are never changed after the series is built.
+public class WeightSeries {
+    private final long[] dates;
+    private final float[] weights;
+    private final int size;
+
+    public WeightSeries(long[] dates, float[] weights, int size) {
+        this.dates = dates;
+        this.weights = weights;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getDate(int index) {
+        return dates[index];
+    }
+
+    public float getWeight(int index) {
+        return weights[index];
+    }
+
+    // Index of the first reading at or after time, or size if every reading is before it
+    public int indexOf(long time) {
+        int index = Arrays.binarySearch(dates, 0, size, time);
+        if (index < 0) return -index - 1;
+        // Step back over readings at the same time so the first one is returned
+        while (index > 0 && dates[index - 1] == time) index--;
+        return index;
+    }
+
+    // Copy the readings in [from, to) into new arrays for the chart
+    public ChartPoints toChartPoints(int fromIndex, int toIndex, long from, long to) {
+        return new ChartPoints(Arrays.copyOfRange(dates, fromIndex, toIndex),
+                Arrays.copyOfRange(weights, fromIndex, toIndex), toIndex - fromIndex, from, to);
+    }
+}
@@ -0,0 +1,54 @@
+package com.josephlimbert.weighttracker.model;
+
+import java.time.LocalDate;
+
+// Trend statistics for a user's weights as of their latest weigh-in day. The averages are null
+// when there are no weights, and the weekly rate is null until there are at least two days.
+public class WeightStats {
+    public static final WeightStats EMPTY = new WeightStats(null, null, null, null, null);
+
+    private final LocalDate lastDay;
+    private final Float sevenDayAverage;
+    private final Float thirtyDayAverage;
+    private final Float trendWeight;
+    private final Float weeklyRate;
+
+    public WeightStats(LocalDate lastDay, Float sevenDayAverage, Float thirtyDayAverage, Float trendWeight, Float weeklyRate) {
+        this.lastDay = lastDay;
+        this.sevenDayAverage = sevenDayAverage;
+        this.thirtyDayAverage = thirtyDayAverage;
+        this.trendWeight = trendWeight;
+        this.weeklyRate = weeklyRate;
+    }
+
+    public LocalDate getLastDay() {
+        return lastDay;
+    }
+
+    public Float getSevenDayAverage() {
+        return sevenDayAverage;
+    }
+
+    public Float getThirtyDayAverage() {
+        return thirtyDayAverage;
+    }
+
+    // Exponentially weighted average of the daily weights, which smooths out day to day noise
+    public Float getTrendWeight() {
+        return trendWeight;
+    }
+
+    // Change in trend weight per week. Negative when the user is losing weight.
+    public Float getWeeklyRate() {
+        return weeklyRate;
+    }
+
+    // Get the day the trend reaches the goal at the current rate, or null if it is moving away from it
+    public LocalDate getProjectedGoalDate(Float goalWeight) {
+        if (goalWeight == null || trendWeight == null || weeklyRate == null || weeklyRate == 0) return null;
+        float remaining = goalWeight - trendWeight;
+        if (remaining == 0) return lastDay;
+        if (Math.signum(remaining) != Math.signum(weeklyRate)) return null;
+        return lastDay.plusDays((long) Math.ceil(remaining / weeklyRate * 7));
+    }
+}
@@ -0,0 +1,64 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.ChartPoints;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+import com.josephlimbert.weighttracker.model.WeightSeries;
+
+import java.time.ZoneId;
+import java.util.List;
+
+// Loads the points for the visible range of the weight chart. When the range holds only a few
+// weights per pixel they are copied from the user's cached weight series. Wider ranges read the
+// day, week or month rollups instead so zooming out over years of data copies one row per bucket.
+public class ChartLoader {
+    // Use raw weights while there are at most this many per pixel of chart width
+    private static final int RAW_POINTS_PER_PIXEL = 4;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long[] PERIOD_MILLIS = {DAY_MILLIS, 7 * DAY_MILLIS, 31 * DAY_MILLIS};
+
+    private final WeightSeriesCache seriesCache;
+    private final RollupDao rollupDao;
+    private final ZoneId zone;
+
+    public ChartLoader(WeightTrackerDatabase database, WeightSeriesCache seriesCache, ZoneId zone) {
+        this.seriesCache = seriesCache;
+        this.rollupDao = database.timedRollupDao();
+        this.zone = zone;
+    }
+
+    // Load the points recorded in [from, to) for a chart maxPoints pixels wide
+    public ChartPoints load(long userId, long from, long to, int maxPoints) {
+        WeightSeries series = seriesCache.get(userId);
+        int fromIndex = series.indexOf(from);
+        int toIndex = series.indexOf(to);
+        if (toIndex - fromIndex <= (long) maxPoints * RAW_POINTS_PER_PIXEL) {
+            // The readings just outside the range are included so the line runs off the edges of the chart
+            return series.toChartPoints(Math.max(fromIndex - 1, 0), Math.min(toIndex + 1, series.size()), from, to);
+        }
+        return loadRollups(userId, choosePeriod(to - from, maxPoints), from, to);
+    }
+
+    // Use the smallest bucket that gives about two buckets per pixel or fewer
+    static int choosePeriod(long span, int maxPoints) {
+        for (int period : WeightRollup.PERIODS) {
+            if (span / PERIOD_MILLIS[period] <= 2L * maxPoints) return period;
+        }
+        return WeightRollup.MONTH;
+    }
+
+    // Each bucket is drawn as its average weight halfway between its first and last weight
+    private ChartPoints loadRollups(long userId, int period, long from, long to) {
+        long bucketFrom = RollupBuckets.bucketStart(period, from, zone);
+        List<WeightRollup> rollups = rollupDao.getRollups(userId, period, bucketFrom, to);
+
+        int size = rollups.size();
+        long[] dates = new long[size];
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            WeightRollup rollup = rollups.get(i);
+            dates[i] = rollup.getFirstDate() + (rollup.getLastDate() - rollup.getFirstDate()) / 2;
+            values[i] = rollup.getAverageWeight();
+        }
+        return new ChartPoints(dates, values, size, from, to);
+    }
+}
@@ -0,0 +1,67 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+// Reads "date,weight" rows from a CSV file. The date can be epoch milliseconds, an ISO date
+// (2024-03-04) or an ISO date and time (2024-03-04T07:30). A header row is skipped.
+public class CsvWeightReader implements WeightImportReader {
+    private final BufferedReader reader;
+    private final ZoneId zone;
+    private long lineNumber;
+
+    public CsvWeightReader(Reader reader, ZoneId zone) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.zone = zone;
+    }
+
+    @Override
+    public boolean next(Weight weight) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            int comma = line.indexOf(',');
+            if (comma < 0) throw new IOException("Line " + lineNumber + ": expected date,weight");
+            String date = line.substring(0, comma).trim();
+            String value = line.substring(comma + 1).trim();
+
+            // Skip the header row if the file has one
+            if (lineNumber == 1 && !value.isEmpty() && !Character.isDigit(value.charAt(0))) continue;
+
+            try {
+                weight.setRecorded(parseTimestamp(date, zone), zone);
+                weight.setWeight(Float.parseFloat(value));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Parse epoch milliseconds, an ISO date or an ISO date and time in the given zone
+    static long parseTimestamp(String date, ZoneId zone) {
+        if (!date.isEmpty() && Character.isDigit(date.charAt(0)) && date.indexOf('-') < 0) {
+            return Long.parseLong(date);
+        }
+        if (date.indexOf('T') >= 0) {
+            return LocalDateTime.parse(date).atZone(zone).toInstant().toEpochMilli();
+        }
+        return LocalDate.parse(date).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,65 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+// Reads weights from a JSON array of objects like {"date": "2024-03-04", "weight": 180.5}.
+// The date accepts the same formats as the CSV reader. The array is streamed one object at a time.
+public class JsonWeightReader implements WeightImportReader {
+    private final JsonReader reader;
+    private final ZoneId zone;
+    private boolean started;
+
+    public JsonWeightReader(Reader reader, ZoneId zone) {
+        this.reader = new JsonReader(reader);
+        this.zone = zone;
+    }
+
+    @Override
+    public boolean next(Weight weight) throws IOException {
+        if (!started) {
+            reader.beginArray();
+            started = true;
+        }
+        if (!reader.hasNext()) {
+            reader.endArray();
+            return false;
+        }
+
+        String date = null;
+        Double value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("date") && reader.peek() != JsonToken.NULL) {
+                date = reader.nextString();
+            } else if (name.equals("weight") && reader.peek() != JsonToken.NULL) {
+                value = reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (date == null || value == null) throw new IOException("Each weight needs a date and a weight");
+        try {
+            weight.setRecorded(CsvWeightReader.parseTimestamp(date, zone), zone);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        weight.setWeight(value.floatValue());
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
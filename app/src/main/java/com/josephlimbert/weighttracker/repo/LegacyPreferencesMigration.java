@@ -0,0 +1,84 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.rxjava3.RxDataMigration;
+
+import java.util.Map;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+
+// Copies the settings saved by older versions of the app into the settings DataStore the first
+// time it is read, then deletes the old files. The logged in user was kept in "AuthUser", the
+// SMS settings in the file MainActivity.getPreferences created, which is named after the activity,
+// and the last goal each user was told about in "GoalNotifications" under "user<id>".
+class LegacyPreferencesMigration implements RxDataMigration<Preferences> {
+    static final String AUTH_PREFERENCES = "AuthUser";
+    static final String ACTIVITY_PREFERENCES = "MainActivity";
+    static final String GOAL_PREFERENCES = "GoalNotifications";
+    private static final String GOAL_KEY_PREFIX = "user";
+
+    private final Context context;
+
+    LegacyPreferencesMigration(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public Single<Boolean> shouldMigrate(Preferences currentData) {
+        return Single.fromCallable(() -> !preferences(AUTH_PREFERENCES).getAll().isEmpty()
+                || !preferences(ACTIVITY_PREFERENCES).getAll().isEmpty()
+                || !preferences(GOAL_PREFERENCES).getAll().isEmpty());
+    }
+
+    // Values already in the DataStore win, so running the migration twice changes nothing
+    @Override
+    public Single<Preferences> migrate(Preferences currentData) {
+        return Single.fromCallable(() -> {
+            MutablePreferences migrated = currentData.toMutablePreferences();
+            SharedPreferences auth = preferences(AUTH_PREFERENCES);
+            long userId = auth.getLong("userId", -1);
+            if (userId != -1 && currentData.get(SettingsStore.LOGGED_IN_USER_ID) == null) {
+                migrated.set(SettingsStore.LOGGED_IN_USER_ID, userId);
+            }
+
+            SharedPreferences activity = preferences(ACTIVITY_PREFERENCES);
+            if (activity.contains("userPhoneNumber") && currentData.get(SettingsStore.PHONE_NUMBER) == null) {
+                migrated.set(SettingsStore.PHONE_NUMBER, activity.getString("userPhoneNumber", ""));
+            }
+            if (activity.contains("smsEnabled") && currentData.get(SettingsStore.SMS_ENABLED) == null) {
+                migrated.set(SettingsStore.SMS_ENABLED, activity.getBoolean("smsEnabled", false));
+            }
+
+            for (Map.Entry<String, ?> goal : preferences(GOAL_PREFERENCES).getAll().entrySet()) {
+                if (!goal.getKey().startsWith(GOAL_KEY_PREFIX) || !(goal.getValue() instanceof Float)) continue;
+                long userId;
+                try {
+                    userId = Long.parseLong(goal.getKey().substring(GOAL_KEY_PREFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Preferences.Key<Float> key = SettingsStore.notifiedGoalKey(userId);
+                if (currentData.get(key) == null) migrated.set(key, (Float) goal.getValue());
+            }
+            return migrated;
+        });
+    }
+
+    @Override
+    public Completable cleanUp() {
+        return Completable.fromAction(() -> {
+            context.deleteSharedPreferences(AUTH_PREFERENCES);
+            context.deleteSharedPreferences(ACTIVITY_PREFERENCES);
+            context.deleteSharedPreferences(GOAL_PREFERENCES);
+        });
+    }
+
+    private SharedPreferences preferences(String name) {
+        return context.getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,34 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+// Edits and deletes that the UI should show before the database has them. Weights in the list
+// are hidden if deleted and shown with their new values if updated.
+public class PendingWrites {
+    public static final PendingWrites EMPTY = new PendingWrites(Collections.emptyMap(), Collections.emptySet());
+
+    private final Map<Long, Weight> updates;
+    private final Set<Long> deletes;
+
+    public PendingWrites(Map<Long, Weight> updates, Set<Long> deletes) {
+        this.updates = updates;
+        this.deletes = deletes;
+    }
+
+    public boolean isEmpty() {
+        return updates.isEmpty() && deletes.isEmpty();
+    }
+
+    public boolean isDeleted(long id) {
+        return deletes.contains(id);
+    }
+
+    // Get the updated weight for an ID, or null if it hasn't been edited
+    public Weight getUpdate(long id) {
+        return updates.get(id);
+    }
+}
@@ -0,0 +1,28 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.startup.Initializer;
+
+import java.util.Collections;
+import java.util.List;
+
+// Run by App Startup before the first activity is created. It builds the repository and starts
+// opening the database and loading the dashboard in the background, so by the time the home
+// screen asks for them the work is done or already under way.
+public class RepositoryInitializer implements Initializer<WeightTrackerRepository> {
+    @NonNull
+    @Override
+    public WeightTrackerRepository create(@NonNull Context context) {
+        WeightTrackerRepository repo = WeightTrackerRepository.getInstance(context);
+        repo.prewarm();
+        return repo;
+    }
+
+    @NonNull
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.emptyList();
+    }
+}
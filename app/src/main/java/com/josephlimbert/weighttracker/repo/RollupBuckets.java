@@ -0,0 +1,66 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+
+// Works out which day, week or month bucket a time falls in. Buckets start at local midnight,
+// weeks start on Monday and months start on the first of the month. Weights store the local day
+// they were recorded on, so a bucket is also a range of epoch days.
+public class RollupBuckets {
+    private RollupBuckets() {}
+
+    // Get the start of the bucket containing the time, in epoch milliseconds
+    public static long bucketStart(int period, long time, ZoneId zone) {
+        return toMillis(startDate(period, Instant.ofEpochMilli(time).atZone(zone).toLocalDate()), zone);
+    }
+
+    // Get the first epoch day of the bucket containing the day
+    public static int startDay(int period, int day) {
+        return (int) startDate(period, LocalDate.ofEpochDay(day)).toEpochDay();
+    }
+
+    // Get the first epoch day of the bucket after the one starting on startDay
+    public static int endDay(int period, int startDay) {
+        return (int) endDate(period, LocalDate.ofEpochDay(startDay)).toEpochDay();
+    }
+
+    // Get local midnight at the start of an epoch day, in epoch milliseconds
+    public static long dayStart(int day, ZoneId zone) {
+        return toMillis(LocalDate.ofEpochDay(day), zone);
+    }
+
+    private static LocalDate endDate(int period, LocalDate start) {
+        switch (period) {
+            case WeightRollup.DAY:
+                return start.plusDays(1);
+            case WeightRollup.WEEK:
+                return start.plusWeeks(1);
+            case WeightRollup.MONTH:
+                return start.plusMonths(1);
+            default:
+                throw new IllegalArgumentException("Unknown rollup period " + period);
+        }
+    }
+
+    private static LocalDate startDate(int period, LocalDate date) {
+        switch (period) {
+            case WeightRollup.DAY:
+                return date;
+            case WeightRollup.WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case WeightRollup.MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                throw new IllegalArgumentException("Unknown rollup period " + period);
+        }
+    }
+
+    private static long toMillis(LocalDate date, ZoneId zone) {
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+}
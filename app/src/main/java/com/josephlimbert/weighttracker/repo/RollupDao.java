@@ -0,0 +1,44 @@
+package com.josephlimbert.weighttracker.repo;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import java.util.List;
+
+@Dao
+public interface RollupDao {
+    // Get the buckets for a chart, oldest first. Reads one row per bucket in the range.
+    @Query("SELECT * FROM Weight_Rollups WHERE user_id = :userId AND period = :period " +
+            "AND bucket_start >= :from AND bucket_start < :to ORDER BY bucket_start ASC")
+    List<WeightRollup> getRollups(long userId, int period, long from, long to);
+
+    // Recalculate one bucket from the weights recorded on the days [startDay, endDay). Nothing is
+    // inserted if the bucket is empty, since grouping no rows gives no rows. SQLite before 3.39
+    // (Android 13 and older) rejects HAVING without GROUP BY, so the query groups by the one user.
+    @Query("INSERT OR REPLACE INTO Weight_Rollups (user_id, period, bucket_start, min_weight, max_weight, " +
+            "sum_weight, weight_count, first_date, first_weight, last_date, last_weight) " +
+            "SELECT :userId, :period, :bucketStart, MIN(weight), MAX(weight), SUM(weight), COUNT(*), " +
+            "MIN(recorded_date), (SELECT weight FROM Weights WHERE user_id = :userId AND recorded_day >= :startDay " +
+            "AND recorded_day < :endDay ORDER BY recorded_date ASC LIMIT 1), " +
+            "MAX(recorded_date), (SELECT weight FROM Weights WHERE user_id = :userId AND recorded_day >= :startDay " +
+            "AND recorded_day < :endDay ORDER BY recorded_date DESC LIMIT 1) " +
+            "FROM Weights WHERE user_id = :userId AND recorded_day >= :startDay AND recorded_day < :endDay " +
+            "GROUP BY user_id")
+    void rebuildBucket(long userId, int period, long bucketStart, int startDay, int endDay);
+
+    @Query("DELETE FROM Weight_Rollups WHERE user_id = :userId AND period = :period AND bucket_start = :bucketStart")
+    void deleteBucket(long userId, int period, long bucketStart);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void addRollups(List<WeightRollup> rollups);
+
+    @Query("DELETE FROM Weight_Rollups")
+    void deleteAllRollups();
+
+    @Query("SELECT EXISTS(SELECT 1 FROM Weight_Rollups)")
+    boolean hasRollups();
+}
@@ -0,0 +1,136 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Keeps the rollup table in step with the weights table. After a write, only the day, week and
+// month buckets containing the changed weights are recalculated, which reads just the weights in
+// those buckets. Buckets are found from the day each weight was recorded on, so they are integer
+// ranges of days. Call refresh inside the same transaction as the write.
+public class RollupUpdater {
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final WeightTrackerDatabase database;
+    private final WeightDao weightDao;
+    private final RollupDao rollupDao;
+    private final ZoneId zone;
+
+    public RollupUpdater(WeightTrackerDatabase database, ZoneId zone) {
+        this.database = database;
+        this.weightDao = database.timedWeightDao();
+        this.rollupDao = database.timedRollupDao();
+        this.zone = zone;
+    }
+
+    // Recalculate the buckets containing the given recorded days for the user
+    public void refresh(long userId, int... recordedDays) {
+        for (int period : WeightRollup.PERIODS) {
+            Set<Integer> startDays = new HashSet<>();
+            for (int recordedDay : recordedDays) {
+                startDays.add(RollupBuckets.startDay(period, recordedDay));
+            }
+            refreshBuckets(userId, period, startDays);
+        }
+    }
+
+    // Recalculate the buckets containing any of the weights, for example after a batch import
+    public void refresh(long userId, Collection<Weight> weights) {
+        for (int period : WeightRollup.PERIODS) {
+            Set<Integer> startDays = new HashSet<>();
+            for (Weight weight : weights) {
+                startDays.add(RollupBuckets.startDay(period, weight.getRecordedDay()));
+            }
+            refreshBuckets(userId, period, startDays);
+        }
+    }
+
+    private void refreshBuckets(long userId, int period, Set<Integer> startDays) {
+        for (int startDay : startDays) {
+            long bucketStart = RollupBuckets.dayStart(startDay, zone);
+            rollupDao.deleteBucket(userId, period, bucketStart);
+            rollupDao.rebuildBucket(userId, period, bucketStart, startDay, RollupBuckets.endDay(period, startDay));
+        }
+    }
+
+    // Rebuild the whole rollup table from the weights table. The weights are read one page at a
+    // time in date order and each bucket is written once it is complete.
+    public void rebuildAll() {
+        database.runInTransaction(() -> {
+            rollupDao.deleteAllRollups();
+            for (long userId : weightDao.getUserIdsWithWeights()) {
+                rebuildUser(userId);
+            }
+        });
+    }
+
+    // Rebuild the rollups if the table is empty but there are weights, e.g. after upgrading
+    public void rebuildIfEmpty() {
+        if (!rollupDao.hasRollups() && weightDao.hasWeights()) {
+            rebuildAll();
+        }
+    }
+
+    private void rebuildUser(long userId) {
+        WeightRollup[] current = new WeightRollup[WeightRollup.PERIODS.length];
+        List<WeightRollup> completed = new ArrayList<>();
+        long after = Long.MIN_VALUE;
+        List<Weight> page;
+        do {
+            page = weightDao.getWeightsNewerThan(userId, after, REBUILD_PAGE_SIZE);
+            for (Weight weight : page) {
+                for (int period : WeightRollup.PERIODS) {
+                    long bucketStart = RollupBuckets.dayStart(RollupBuckets.startDay(period, weight.getRecordedDay()), zone);
+                    WeightRollup rollup = current[period];
+                    if (rollup == null || rollup.getBucketStart() != bucketStart) {
+                        if (rollup != null) completed.add(rollup);
+                        rollup = newRollup(userId, period, bucketStart, weight);
+                        current[period] = rollup;
+                    } else {
+                        addToRollup(rollup, weight);
+                    }
+                }
+            }
+            if (!page.isEmpty()) after = page.get(page.size() - 1).getRecordedDate();
+            rollupDao.addRollups(completed);
+            completed.clear();
+        } while (page.size() == REBUILD_PAGE_SIZE);
+
+        for (WeightRollup rollup : current) {
+            if (rollup != null) completed.add(rollup);
+        }
+        rollupDao.addRollups(completed);
+    }
+
+    private static WeightRollup newRollup(long userId, int period, long bucketStart, Weight weight) {
+        WeightRollup rollup = new WeightRollup();
+        rollup.setUserId(userId);
+        rollup.setPeriod(period);
+        rollup.setBucketStart(bucketStart);
+        rollup.setMinWeight(weight.getWeight());
+        rollup.setMaxWeight(weight.getWeight());
+        rollup.setSumWeight(weight.getWeight());
+        rollup.setWeightCount(1);
+        rollup.setFirstDate(weight.getRecordedDate());
+        rollup.setFirstWeight(weight.getWeight());
+        rollup.setLastDate(weight.getRecordedDate());
+        rollup.setLastWeight(weight.getWeight());
+        return rollup;
+    }
+
+    // Weights arrive in date order so the added weight is always the last one in the bucket
+    private static void addToRollup(WeightRollup rollup, Weight weight) {
+        rollup.setMinWeight(Math.min(rollup.getMinWeight(), weight.getWeight()));
+        rollup.setMaxWeight(Math.max(rollup.getMaxWeight(), weight.getWeight()));
+        rollup.setSumWeight(rollup.getSumWeight() + weight.getWeight());
+        rollup.setWeightCount(rollup.getWeightCount() + 1);
+        rollup.setLastDate(weight.getRecordedDate());
+        rollup.setLastWeight(weight.getWeight());
+    }
+}
@@ -0,0 +1,201 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.content.Context;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.preferences.core.PreferencesKeys;
+import androidx.datastore.preferences.rxjava3.RxPreferenceDataStoreBuilder;
+import androidx.datastore.rxjava3.RxDataStore;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.UserSettings;
+
+import java.util.function.Consumer;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+// Stores the logged in user, the SMS settings, the last goal each user was told about and the
+// last dashboard shown in a Preferences DataStore. The file is read and written on DataStore's own
+// thread, never the main thread. The last value read or written is kept in memory so screens and
+// background work don't wait for the disk after the first read.
+public class SettingsStore {
+    private static final String FILE_NAME = "settings";
+    static final Preferences.Key<Long> LOGGED_IN_USER_ID = PreferencesKeys.longKey("loggedInUserId");
+    static final Preferences.Key<String> PHONE_NUMBER = PreferencesKeys.stringKey("phoneNumber");
+    static final Preferences.Key<Boolean> SMS_ENABLED = PreferencesKeys.booleanKey("smsEnabled");
+    private static final String NOTIFIED_GOAL_PREFIX = "notifiedGoal";
+    // The user ID followed by the dashboard's values, comma separated with nulls left empty
+    static final Preferences.Key<String> DASHBOARD_SNAPSHOT = PreferencesKeys.stringKey("dashboardSnapshot");
+
+    // DataStore only allows one instance per file in a process
+    private static volatile SettingsStore settingsStore;
+
+    private final RxDataStore<Preferences> dataStore;
+    private final MutableLiveData<UserSettings> settings = new MutableLiveData<>();
+    private volatile UserSettings cachedSettings;
+    private Disposable subscription;
+
+    public static SettingsStore getInstance(Context context) {
+        SettingsStore store = settingsStore;
+        if (store == null) {
+            synchronized (SettingsStore.class) {
+                store = settingsStore;
+                if (store == null) {
+                    store = new SettingsStore(context.getApplicationContext(), FILE_NAME);
+                    settingsStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    @VisibleForTesting
+    public SettingsStore(Context context, String fileName) {
+        dataStore = new RxPreferenceDataStoreBuilder(context, fileName)
+                .addRxDataMigration(new LegacyPreferencesMigration(context))
+                .build();
+    }
+
+    // The settings, updated whenever they change. The file is only read once something observes it.
+    public LiveData<UserSettings> getSettings() {
+        synchronized (this) {
+            if (subscription == null) {
+                subscription = dataStore.data()
+                        .map(SettingsStore::toSettings)
+                        .subscribe(value -> {
+                            cachedSettings = value;
+                            settings.postValue(value);
+                        }, e -> Log.e("SettingsStore", "Failed to read settings", e));
+            }
+        }
+        return settings;
+    }
+
+    // Get the settings on the calling thread. Waits for the file the first time so it must not be
+    // called on the main thread.
+    public UserSettings readSettings() {
+        UserSettings cached = cachedSettings;
+        if (cached != null) return cached;
+        return toSettings(dataStore.data().blockingFirst());
+    }
+
+    // Change any number of settings in one write. The change is shown in memory straight away and
+    // written in the background. The returned Single completes once the file is written.
+    public Single<UserSettings> edit(Consumer<UserSettings> changes) {
+        UserSettings cached = cachedSettings;
+        if (cached != null) {
+            UserSettings updated = new UserSettings(cached);
+            changes.accept(updated);
+            cachedSettings = updated;
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                settings.setValue(updated);
+            } else {
+                settings.postValue(updated);
+            }
+        }
+
+        Single<UserSettings> write = dataStore.updateDataAsync(preferences -> {
+            UserSettings updated = toSettings(preferences);
+            changes.accept(updated);
+            return Single.just(toPreferences(preferences, updated));
+        }).map(SettingsStore::toSettings).cache();
+        write.subscribe(value -> {}, e -> Log.e("SettingsStore", "Failed to save settings", e));
+        return write;
+    }
+
+    // The last goal weight the user was told they reached, or null if they never were. Waits for
+    // the file so it is only for background work such as GoalCheckWorker.
+    public Float readNotifiedGoal(long userId) {
+        return dataStore.data().blockingFirst().get(notifiedGoalKey(userId));
+    }
+
+    // Remember that the user was told they reached the goal. Waits until the file is written so a
+    // retry after this returns can't send the same goal again.
+    public void saveNotifiedGoal(long userId, float goalWeight) {
+        dataStore.updateDataAsync(preferences -> {
+            MutablePreferences mutable = preferences.toMutablePreferences();
+            mutable.set(notifiedGoalKey(userId), goalWeight);
+            return Single.just(mutable);
+        }).blockingGet();
+    }
+
+    // The dashboard saved for the user so the home screen can draw it straight away on the next
+    // launch, or null if the last one saved was for another user. Waits for the file the first
+    // time so it must not be called on the main thread.
+    public Dashboard readDashboardSnapshot(long userId) {
+        String saved = dataStore.data().blockingFirst().get(DASHBOARD_SNAPSHOT);
+        if (saved == null) return null;
+        String[] values = saved.split(",", -1);
+        if (values.length != 6 || Long.parseLong(values[0]) != userId) return null;
+
+        Dashboard dashboard = new Dashboard();
+        dashboard.setStartingWeight(values[1].isEmpty() ? null : Float.valueOf(values[1]));
+        dashboard.setCurrentWeight(values[2].isEmpty() ? null : Float.valueOf(values[2]));
+        dashboard.setGoalWeight(values[3].isEmpty() ? null : Float.valueOf(values[3]));
+        dashboard.setStartDate(values[4].isEmpty() ? null : Long.valueOf(values[4]));
+        dashboard.setWeightCount(Integer.parseInt(values[5]));
+        dashboard.setSnapshot(true);
+        return dashboard;
+    }
+
+    // Replace the saved dashboard. Only the most recent user's dashboard is kept. The returned
+    // Completable completes once the file is written.
+    public Completable saveDashboardSnapshot(long userId, Dashboard dashboard) {
+        String saved = userId + "," + toString(dashboard.getStartingWeight()) + ","
+                + toString(dashboard.getCurrentWeight()) + "," + toString(dashboard.getGoalWeight()) + ","
+                + toString(dashboard.getStartDate()) + "," + dashboard.getWeightCount();
+        Completable write = dataStore.updateDataAsync(preferences -> {
+            MutablePreferences mutable = preferences.toMutablePreferences();
+            mutable.set(DASHBOARD_SNAPSHOT, saved);
+            return Single.just(mutable);
+        }).ignoreElement().cache();
+        write.subscribe(() -> {}, e -> Log.e("SettingsStore", "Failed to save dashboard", e));
+        return write;
+    }
+
+    static Preferences.Key<Float> notifiedGoalKey(long userId) {
+        return PreferencesKeys.floatKey(NOTIFIED_GOAL_PREFIX + userId);
+    }
+
+    // Close the file. Only for stores made in tests, the app's store lives as long as the process.
+    @VisibleForTesting
+    public void dispose() {
+        synchronized (this) {
+            if (subscription != null) subscription.dispose();
+        }
+        dataStore.dispose();
+    }
+
+    private static String toString(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static UserSettings toSettings(Preferences preferences) {
+        UserSettings settings = new UserSettings();
+        settings.setLoggedInUserId(preferences.get(LOGGED_IN_USER_ID));
+        String phoneNumber = preferences.get(PHONE_NUMBER);
+        settings.setPhoneNumber(phoneNumber != null ? phoneNumber : "");
+        settings.setSmsEnabled(Boolean.TRUE.equals(preferences.get(SMS_ENABLED)));
+        return settings;
+    }
+
+    private static Preferences toPreferences(Preferences preferences, UserSettings settings) {
+        MutablePreferences mutable = preferences.toMutablePreferences();
+        if (settings.getLoggedInUserId() != null) {
+            mutable.set(LOGGED_IN_USER_ID, settings.getLoggedInUserId());
+        } else {
+            mutable.remove(LOGGED_IN_USER_ID);
+        }
+        mutable.set(PHONE_NUMBER, settings.getPhoneNumber());
+        mutable.set(SMS_ENABLED, settings.isSmsEnabled());
+        return mutable;
+    }
+}
@@ -0,0 +1,77 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import java.util.List;
+
+// Records how long each RollupDao call takes while metrics are enabled, see TimedWeightDao
+final class TimedRollupDao implements RollupDao {
+    private final RollupDao dao;
+    private final MetricsRegistry metrics;
+
+    TimedRollupDao(RollupDao dao, MetricsRegistry metrics) {
+        this.dao = dao;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<WeightRollup> getRollups(long userId, int period, long from, long to) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getRollups(userId, period, from, to);
+        } finally {
+            metrics.recordSince("RollupDao.getRollups", start);
+        }
+    }
+
+    @Override
+    public void rebuildBucket(long userId, int period, long bucketStart, int startDay, int endDay) {
+        long start = metrics.startTiming();
+        try {
+            dao.rebuildBucket(userId, period, bucketStart, startDay, endDay);
+        } finally {
+            metrics.recordSince("RollupDao.rebuildBucket", start);
+        }
+    }
+
+    @Override
+    public void deleteBucket(long userId, int period, long bucketStart) {
+        long start = metrics.startTiming();
+        try {
+            dao.deleteBucket(userId, period, bucketStart);
+        } finally {
+            metrics.recordSince("RollupDao.deleteBucket", start);
+        }
+    }
+
+    @Override
+    public void addRollups(List<WeightRollup> rollups) {
+        long start = metrics.startTiming();
+        try {
+            dao.addRollups(rollups);
+        } finally {
+            metrics.recordSince("RollupDao.addRollups", start);
+        }
+    }
+
+    @Override
+    public void deleteAllRollups() {
+        long start = metrics.startTiming();
+        try {
+            dao.deleteAllRollups();
+        } finally {
+            metrics.recordSince("RollupDao.deleteAllRollups", start);
+        }
+    }
+
+    @Override
+    public boolean hasRollups() {
+        long start = metrics.startTiming();
+        try {
+            return dao.hasRollups();
+        } finally {
+            metrics.recordSince("RollupDao.hasRollups", start);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.model.User;
+
+// Records how long each UserDao call takes while metrics are enabled, see TimedWeightDao
+final class TimedUserDao implements UserDao {
+    private final UserDao dao;
+    private final MetricsRegistry metrics;
+
+    TimedUserDao(UserDao dao, MetricsRegistry metrics) {
+        this.dao = dao;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public User getUserByUsername(String username) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getUserByUsername(username);
+        } finally {
+            metrics.recordSince("UserDao.getUserByUsername", start);
+        }
+    }
+
+    @Override
+    public long registerUser(User user) {
+        long start = metrics.startTiming();
+        try {
+            return dao.registerUser(user);
+        } finally {
+            metrics.recordSince("UserDao.registerUser", start);
+        }
+    }
+
+    @Override
+    public void updatePassword(long userId, String password) {
+        long start = metrics.startTiming();
+        try {
+            dao.updatePassword(userId, password);
+        } finally {
+            metrics.recordSince("UserDao.updatePassword", start);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.database.Cursor;
+
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.ImportCheckpoint;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.util.List;
+
+// Records how long each WeightDao call takes under "WeightDao.<method>" while metrics are enabled.
+// Written out by hand so a call costs one volatile read and a direct call while they are off.
+final class TimedWeightDao implements WeightDao {
+    private final WeightDao dao;
+    private final MetricsRegistry metrics;
+
+    TimedWeightDao(WeightDao dao, MetricsRegistry metrics) {
+        this.dao = dao;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Weight loadCurrentWeight(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.loadCurrentWeight(userId);
+        } finally {
+            metrics.recordSince("WeightDao.loadCurrentWeight", start);
+        }
+    }
+
+    @Override
+    public Weight loadStartingWeight(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.loadStartingWeight(userId);
+        } finally {
+            metrics.recordSince("WeightDao.loadStartingWeight", start);
+        }
+    }
+
+    @Override
+    public List<Weight> loadWeightList(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.loadWeightList(userId);
+        } finally {
+            metrics.recordSince("WeightDao.loadWeightList", start);
+        }
+    }
+
+    @Override
+    public List<Weight> getWeightsOlderThan(long userId, long before, int limit) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getWeightsOlderThan(userId, before, limit);
+        } finally {
+            metrics.recordSince("WeightDao.getWeightsOlderThan", start);
+        }
+    }
+
+    @Override
+    public List<Weight> getWeightsNewerThan(long userId, long after, int limit) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getWeightsNewerThan(userId, after, limit);
+        } finally {
+            metrics.recordSince("WeightDao.getWeightsNewerThan", start);
+        }
+    }
+
+    @Override
+    public Cursor getWeightSeries(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getWeightSeries(userId);
+        } finally {
+            metrics.recordSince("WeightDao.getWeightSeries", start);
+        }
+    }
+
+    @Override
+    public long getWeightCount(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getWeightCount(userId);
+        } finally {
+            metrics.recordSince("WeightDao.getWeightCount", start);
+        }
+    }
+
+    @Override
+    public boolean hasWeights() {
+        long start = metrics.startTiming();
+        try {
+            return dao.hasWeights();
+        } finally {
+            metrics.recordSince("WeightDao.hasWeights", start);
+        }
+    }
+
+    @Override
+    public List<Long> getUserIdsWithWeights() {
+        long start = metrics.startTiming();
+        try {
+            return dao.getUserIdsWithWeights();
+        } finally {
+            metrics.recordSince("WeightDao.getUserIdsWithWeights", start);
+        }
+    }
+
+    @Override
+    public Weight getWeight(long id) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getWeight(id);
+        } finally {
+            metrics.recordSince("WeightDao.getWeight", start);
+        }
+    }
+
+    @Override
+    public void addWeight(Weight weight) {
+        long start = metrics.startTiming();
+        try {
+            dao.addWeight(weight);
+        } finally {
+            metrics.recordSince("WeightDao.addWeight", start);
+        }
+    }
+
+    @Override
+    public void addWeights(List<Weight> weights) {
+        long start = metrics.startTiming();
+        try {
+            dao.addWeights(weights);
+        } finally {
+            metrics.recordSince("WeightDao.addWeights", start);
+        }
+    }
+
+    @Override
+    public void updateWeight(Weight weight) {
+        long start = metrics.startTiming();
+        try {
+            dao.updateWeight(weight);
+        } finally {
+            metrics.recordSince("WeightDao.updateWeight", start);
+        }
+    }
+
+    @Override
+    public void deleteWeight(Weight weight) {
+        long start = metrics.startTiming();
+        try {
+            dao.deleteWeight(weight);
+        } finally {
+            metrics.recordSince("WeightDao.deleteWeight", start);
+        }
+    }
+
+    @Override
+    public GoalWeight loadGoalWeight(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.loadGoalWeight(userId);
+        } finally {
+            metrics.recordSince("WeightDao.loadGoalWeight", start);
+        }
+    }
+
+    @Override
+    public void addGoalWeight(GoalWeight goalWeight) {
+        long start = metrics.startTiming();
+        try {
+            dao.addGoalWeight(goalWeight);
+        } finally {
+            metrics.recordSince("WeightDao.addGoalWeight", start);
+        }
+    }
+
+    @Override
+    public void updateGoalWeight(GoalWeight goalWeight) {
+        long start = metrics.startTiming();
+        try {
+            dao.updateGoalWeight(goalWeight);
+        } finally {
+            metrics.recordSince("WeightDao.updateGoalWeight", start);
+        }
+    }
+
+    @Override
+    public Float getReachedGoalWeight(long userId) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getReachedGoalWeight(userId);
+        } finally {
+            metrics.recordSince("WeightDao.getReachedGoalWeight", start);
+        }
+    }
+
+    @Override
+    public ImportCheckpoint getImportCheckpoint(String sourceKey) {
+        long start = metrics.startTiming();
+        try {
+            return dao.getImportCheckpoint(sourceKey);
+        } finally {
+            metrics.recordSince("WeightDao.getImportCheckpoint", start);
+        }
+    }
+
+    @Override
+    public void saveImportCheckpoint(ImportCheckpoint checkpoint) {
+        long start = metrics.startTiming();
+        try {
+            dao.saveImportCheckpoint(checkpoint);
+        } finally {
+            metrics.recordSince("WeightDao.saveImportCheckpoint", start);
+        }
+    }
+
+    @Override
+    public void deleteImportCheckpoint(String sourceKey) {
+        long start = metrics.startTiming();
+        try {
+            dao.deleteImportCheckpoint(sourceKey);
+        } finally {
+            metrics.recordSince("WeightDao.deleteImportCheckpoint", start);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.os.Handler;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs a user's queries again only when that user's weights or goal change. Room invalidates a
+// whole table, so with its LiveData a write for one user re-ran every observed query for every
+// user. Here the repository says which user each write touched and only that user's active
+// queries run again. A result equal to the one already shown is not emitted, so editing a weight
+// in the middle of the history doesn't rebind the starting weight.
+//
+// Every write has to go through the repository, a write made straight through a DAO is not seen.
+public class UserChangeTracker {
+    // Changes are dispatched on the write thread. A change reported inside a transaction is
+    // dispatched after that write task finishes, so the queries it starts read the committed data.
+    private final Executor dispatchExecutor;
+    private final Executor queryExecutor;
+    private final Handler mainThreadHandler;
+    // Bumped on every change to a user's data so a query that was inactive knows it is out of date
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<UserQuery<?>>> activeQueries = new ConcurrentHashMap<>();
+    private final Map<Long, MutableLiveData<Long>> changes = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Runnable>> changeListeners = new ConcurrentHashMap<>();
+
+    private final AtomicLong queriesRun = new AtomicLong();
+    private final AtomicLong queriesSkipped = new AtomicLong();
+    private final AtomicLong emissionsDelivered = new AtomicLong();
+    private final AtomicLong emissionsSuppressed = new AtomicLong();
+
+    // How many queries ran or were skipped and how many results were emitted or dropped as
+    // unchanged since the tracker was created
+    public static class Counters {
+        private final long queriesRun;
+        private final long queriesSkipped;
+        private final long emissionsDelivered;
+        private final long emissionsSuppressed;
+
+        Counters(long queriesRun, long queriesSkipped, long emissionsDelivered, long emissionsSuppressed) {
+            this.queriesRun = queriesRun;
+            this.queriesSkipped = queriesSkipped;
+            this.emissionsDelivered = emissionsDelivered;
+            this.emissionsSuppressed = emissionsSuppressed;
+        }
+
+        // Queries that ran, including the first load of each one
+        public long getQueriesRun() {
+            return queriesRun;
+        }
+
+        // Active queries of other users that a change didn't run again
+        public long getQueriesSkipped() {
+            return queriesSkipped;
+        }
+
+        public long getEmissionsDelivered() {
+            return emissionsDelivered;
+        }
+
+        // Results that equalled the value already shown
+        public long getEmissionsSuppressed() {
+            return emissionsSuppressed;
+        }
+    }
+
+    public UserChangeTracker(Executor dispatchExecutor, Executor queryExecutor, Handler mainThreadHandler) {
+        this.dispatchExecutor = dispatchExecutor;
+        this.queryExecutor = queryExecutor;
+        this.mainThreadHandler = mainThreadHandler;
+    }
+
+    // LiveData of the query's result for the user. The query runs on the query executor when the
+    // LiveData becomes active and again after each change to the user's data while it is active.
+    // Each run is a trace section with the given name.
+    public <T> LiveData<T> observe(String name, long userId, Callable<T> query) {
+        return new UserQuery<>(name, userId, query);
+    }
+
+    // Emits a new version after every change to the user's data, for views that reload themselves
+    // such as the chart. There is no value until the first change.
+    public LiveData<Long> getChanges(long userId) {
+        return changes.computeIfAbsent(userId, id -> new MutableLiveData<>());
+    }
+
+    // Run the listener on the write thread after each change to the user's data, for sources that
+    // reload themselves such as the paged weight list. Changes to other users don't reach it.
+    public void addChangeListener(long userId, Runnable listener) {
+        changeListeners.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+    }
+
+    public void removeChangeListener(long userId, Runnable listener) {
+        Set<Runnable> listeners = changeListeners.get(userId);
+        if (listeners != null) listeners.remove(listener);
+    }
+
+    // Called by the repository on the write thread when a write touched the user's data
+    public void onUserChanged(long userId) {
+        dispatchExecutor.execute(() -> {
+            long version = version(userId).incrementAndGet();
+            for (Map.Entry<Long, Set<UserQuery<?>>> entry : activeQueries.entrySet()) {
+                if (entry.getKey() == userId) {
+                    for (UserQuery<?> query : entry.getValue()) query.invalidate();
+                } else {
+                    queriesSkipped.addAndGet(entry.getValue().size());
+                }
+            }
+            Set<Runnable> listeners = changeListeners.get(userId);
+            if (listeners != null) {
+                for (Runnable listener : listeners) listener.run();
+            }
+            MutableLiveData<Long> userChanges = changes.get(userId);
+            if (userChanges != null) userChanges.postValue(version);
+        });
+    }
+
+    public Counters getCounters() {
+        return new Counters(queriesRun.get(), queriesSkipped.get(), emissionsDelivered.get(), emissionsSuppressed.get());
+    }
+
+    private AtomicLong version(long userId) {
+        return versions.computeIfAbsent(userId, id -> new AtomicLong());
+    }
+
+    // Follows Room's own tracking LiveData: invalidations that arrive while the query is running
+    // are merged into one more run, and only one run happens at a time so results arrive in order.
+    private class UserQuery<T> extends LiveData<T> {
+        private final String name;
+        private final long userId;
+        private final Callable<T> query;
+        private final AtomicBoolean invalid = new AtomicBoolean(true);
+        private final AtomicBoolean computing = new AtomicBoolean(false);
+        // Version of the user's data the last result was read from, -1 before the first run
+        private volatile long loadedVersion = -1;
+        // Only read and written on the main thread
+        private boolean hasValue;
+
+        private final Runnable refresh = () -> {
+            boolean computed;
+            do {
+                computed = false;
+                if (computing.compareAndSet(false, true)) {
+                    try {
+                        T value = null;
+                        while (invalid.compareAndSet(true, false)) {
+                            computed = true;
+                            loadedVersion = version(userId).get();
+                            queriesRun.incrementAndGet();
+                            TraceSections.begin(name);
+                            try {
+                                value = query.call();
+                            } finally {
+                                TraceSections.end();
+                            }
+                        }
+                        if (computed) deliver(value);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Could not run the query for user " + userId, e);
+                    } finally {
+                        computing.set(false);
+                    }
+                }
+            } while (computed && invalid.get());
+        };
+
+        UserQuery(String name, long userId, Callable<T> query) {
+            this.name = name;
+            this.userId = userId;
+            this.query = query;
+        }
+
+        @Override
+        protected void onActive() {
+            activeQueries.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(this);
+            // Catch up on changes made while nothing was observing
+            if (loadedVersion != version(userId).get()) invalid.set(true);
+            if (invalid.get()) queryExecutor.execute(refresh);
+        }
+
+        @Override
+        protected void onInactive() {
+            Set<UserQuery<?>> queries = activeQueries.get(userId);
+            if (queries != null) queries.remove(this);
+        }
+
+        void invalidate() {
+            if (invalid.compareAndSet(false, true)) queryExecutor.execute(refresh);
+        }
+
+        private void deliver(T value) {
+            mainThreadHandler.post(() -> {
+                if (hasValue && Objects.equals(getValue(), value)) {
+                    emissionsSuppressed.incrementAndGet();
+                    return;
+                }
+                hasValue = true;
+                setValue(value);
+                emissionsDelivered.incrementAndGet();
+            });
+        }
+    }
+}
@@ -8,9 +8,15 @@ import com.josephlimbert.weighttracker.model.User;
 
 @Dao
 public interface UserDao {
-    @Query("SELECT * FROM Users WHERE username = :username AND password = :password")
-    User loginUser(String username, String password);
+    // Usernames are unique so this is a single index lookup. The password is checked by the
+    // caller against the stored hash, see PasswordHasher.
+    @Query("SELECT * FROM Users WHERE username = :username")
+    User getUserByUsername(String username);
 
     @Insert
     long registerUser(User user);
+
+    // Replace a plain text or outdated password hash after a successful login
+    @Query("UPDATE Users SET password = :password WHERE id = :userId")
+    void updatePassword(long userId, String password);
 }
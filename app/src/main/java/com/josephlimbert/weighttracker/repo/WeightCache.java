@@ -0,0 +1,76 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded cache of the weights most recently loaded into the list, keyed by ID, so opening the
+// edit sheet for a weight on screen doesn't read it from the database again. LruCache is
+// synchronized and counts hits and misses. The cache is cleared whenever the weights table
+// changes and callers always get a copy, so an edit can never change a cached weight.
+public class WeightCache {
+    private final LruCache<Long, Weight> weights;
+
+    // Bumped on every change so a page loaded before a write can't put old weights back
+    private final AtomicLong version = new AtomicLong();
+
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("Weights") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate();
+        }
+    };
+
+    public WeightCache(WeightTrackerDatabase database, int maxSize) {
+        this.weights = new LruCache<>(maxSize);
+        database.getInvalidationTracker().addObserver(observer);
+    }
+
+    // Get the version to pass to putAll. Read it before starting the load.
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Cache weights that were loaded at the given version. Dropped if the table changed since.
+    public synchronized void putAll(List<Weight> loaded, long loadedVersion) {
+        for (Weight weight : loaded) {
+            if (version.get() != loadedVersion) return;
+            weights.put(weight.getId(), weight);
+        }
+    }
+
+    // Get a copy of the cached weight, or null if it isn't cached
+    public Weight get(long id) {
+        Weight weight = weights.get(id);
+        return weight != null ? new Weight(weight) : null;
+    }
+
+    public synchronized void remove(long id) {
+        version.incrementAndGet();
+        weights.remove(id);
+    }
+
+    public synchronized void invalidate() {
+        version.incrementAndGet();
+        weights.evictAll();
+    }
+
+    public int hitCount() {
+        return weights.hitCount();
+    }
+
+    public int missCount() {
+        return weights.missCount();
+    }
+
+    public int size() {
+        return weights.size();
+    }
+}
@@ -1,6 +1,7 @@
 package com.josephlimbert.weighttracker.repo;
 
-import androidx.lifecycle.LiveData;
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -9,20 +10,52 @@ import androidx.room.Query;
 import androidx.room.Update;
 
 import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.ImportCheckpoint;
 import com.josephlimbert.weighttracker.model.Weight;
 
 import java.util.List;
 
 @Dao
 public interface WeightDao {
-    @Query("SELECT * FROM Weights WHERE user_id = :userId ORDER BY recorded_date DESC LIMIT 1")
-    LiveData<Weight> getCurrentWeight(long userId);
+    String CURRENT_WEIGHT_QUERY = "SELECT * FROM Weights WHERE user_id = :userId ORDER BY recorded_date DESC LIMIT 1";
+    String STARTING_WEIGHT_QUERY = "SELECT * FROM Weights WHERE user_id = :userId ORDER BY recorded_date ASC LIMIT 1";
+    String WEIGHT_LIST_QUERY = "SELECT * FROM Weights WHERE user_id = :userId ORDER BY recorded_date DESC";
+    String GOAL_WEIGHT_QUERY = "SELECT * FROM Goal_Weight WHERE user_id = :userId";
+
+    // Read once on the calling thread
+    @Query(CURRENT_WEIGHT_QUERY)
+    Weight loadCurrentWeight(long userId);
+
+    @Query(STARTING_WEIGHT_QUERY)
+    Weight loadStartingWeight(long userId);
+
+    @Query(WEIGHT_LIST_QUERY)
+    List<Weight> loadWeightList(long userId);
+
+    // Keyset pages of a user's weights. Older pages are returned newest first and newer pages are
+    // returned oldest first so both can use LIMIT against the recorded date.
+    String OLDER_WEIGHTS_QUERY = "SELECT * FROM Weights WHERE user_id = :userId AND recorded_date < :before ORDER BY recorded_date DESC LIMIT :limit";
+    String NEWER_WEIGHTS_QUERY = "SELECT * FROM Weights WHERE user_id = :userId AND recorded_date > :after ORDER BY recorded_date ASC LIMIT :limit";
+
+    @Query(OLDER_WEIGHTS_QUERY)
+    List<Weight> getWeightsOlderThan(long userId, long before, int limit);
+
+    @Query(NEWER_WEIGHTS_QUERY)
+    List<Weight> getWeightsNewerThan(long userId, long after, int limit);
+
+    // Get only the date and weight of each of the user's weights, oldest first, so the series can
+    // be read into arrays without creating an entity per row
+    @Query("SELECT recorded_date, weight FROM Weights WHERE user_id = :userId ORDER BY recorded_date ASC")
+    Cursor getWeightSeries(long userId);
 
-    @Query("SELECT * FROM Weights WHERE user_id = :userId ORDER BY recorded_date ASC LIMIT 1")
-    LiveData<Weight> getStartingWeight(long userId);
+    @Query("SELECT COUNT(*) FROM Weights WHERE user_id = :userId")
+    long getWeightCount(long userId);
 
-    @Query("SELECT * FROM Weights WHERE user_id = :userId ORDER BY recorded_date DESC")
-    LiveData<List<Weight>> getWeightList(long userId);
+    @Query("SELECT EXISTS(SELECT 1 FROM Weights)")
+    boolean hasWeights();
+
+    @Query("SELECT DISTINCT user_id FROM Weights")
+    List<Long> getUserIdsWithWeights();
 
     @Query("SELECT * FROM Weights WHERE id = :id")
     Weight getWeight(long id);
@@ -30,18 +63,36 @@ public interface WeightDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void addWeight(Weight weight);
 
+    // Insert a batch of weights with one prepared statement
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void addWeights(List<Weight> weights);
+
     @Update
     void updateWeight(Weight weight);
 
     @Delete
     void deleteWeight(Weight weight);
 
-    @Query("SELECT * FROM Goal_Weight WHERE user_id = :userId")
-    LiveData<GoalWeight> getGoalWeight(long userId);
+    @Query(GOAL_WEIGHT_QUERY)
+    GoalWeight loadGoalWeight(long userId);
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void addGoalWeight(GoalWeight goalWeight);
 
     @Update
     void updateGoalWeight(GoalWeight goalWeight);
+
+    // The user's goal weight if their most recent weight is at or below it, otherwise null
+    @Query("SELECT weight FROM Goal_Weight WHERE user_id = :userId AND weight >= " +
+            "(SELECT weight FROM Weights WHERE user_id = :userId ORDER BY recorded_date DESC LIMIT 1)")
+    Float getReachedGoalWeight(long userId);
+
+    @Query("SELECT * FROM Import_Checkpoints WHERE source_key = :sourceKey")
+    ImportCheckpoint getImportCheckpoint(String sourceKey);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void saveImportCheckpoint(ImportCheckpoint checkpoint);
+
+    @Query("DELETE FROM Import_Checkpoints WHERE source_key = :sourceKey")
+    void deleteImportCheckpoint(String sourceKey);
 }
@@ -0,0 +1,73 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// Writes a user's weights to CSV or JSON, oldest first. The weights are read one keyset page at
+// a time and written straight to the writer, so memory use doesn't grow with the size of the history.
+// The output uses the same date format the importer reads.
+public class WeightExporter {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    public enum Format { CSV, JSON }
+
+    private final WeightDao weightDao;
+    private final int pageSize;
+
+    public interface ProgressListener {
+        void onProgress(long rowsExported, long totalRows);
+    }
+
+    public WeightExporter(WeightTrackerDatabase database, int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be at least 1");
+        this.weightDao = database.timedWeightDao();
+        this.pageSize = pageSize;
+    }
+
+    // Export every weight for the user and return the number of rows written. The export stops
+    // between pages with an InterruptedIOException if its thread is interrupted.
+    public long exportWeights(Writer writer, long userId, Format format, ZoneId zone,
+                              ProgressListener listener) throws IOException {
+        long totalRows = weightDao.getWeightCount(userId);
+        long exported = 0;
+        long after = Long.MIN_VALUE;
+
+        writer.write(format == Format.CSV ? "date,weight\n" : "[");
+        while (true) {
+            if (Thread.interrupted()) throw new InterruptedIOException("Export cancelled");
+
+            List<Weight> page = weightDao.getWeightsNewerThan(userId, after, pageSize);
+            for (Weight weight : page) {
+                String date = LocalDateTime.ofInstant(Instant.ofEpochMilli(weight.getRecordedDate()), zone).toString();
+                if (format == Format.CSV) {
+                    writer.write(date);
+                    writer.write(',');
+                    writer.write(Float.toString(weight.getWeight()));
+                    writer.write('\n');
+                } else {
+                    if (exported > 0) writer.write(',');
+                    writer.write("\n  {\"date\": \"");
+                    writer.write(date);
+                    writer.write("\", \"weight\": ");
+                    writer.write(Float.toString(weight.getWeight()));
+                    writer.write('}');
+                }
+                exported++;
+            }
+            listener.onProgress(exported, totalRows);
+
+            if (page.size() < pageSize) break;
+            after = page.get(page.size() - 1).getRecordedDate();
+        }
+        if (format == Format.JSON) writer.write("\n]\n");
+        writer.flush();
+        return exported;
+    }
+}
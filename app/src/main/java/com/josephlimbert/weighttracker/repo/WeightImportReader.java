@@ -0,0 +1,12 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Reads weights from an import file one at a time so the whole file is never held in memory
+public interface WeightImportReader extends Closeable {
+    // Read the next weight from the file into the given weight. Returns false at the end of the file.
+    boolean next(Weight weight) throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.ImportCheckpoint;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+// Imports weights from a reader in batches. Each batch is inserted in a single transaction
+// together with its rollup buckets and a checkpoint of how many rows have been committed, so an import that is
+// interrupted picks up after the last committed batch the next time it runs for the same source.
+public class WeightImporter {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final WeightTrackerDatabase database;
+    private final WeightDao weightDao;
+    private final RollupUpdater rollupUpdater;
+    private final int batchSize;
+
+    public interface ProgressListener {
+        void onProgress(long rowsImported);
+    }
+
+    public WeightImporter(WeightTrackerDatabase database, int batchSize) {
+        this(database, new RollupUpdater(database, ZoneId.systemDefault()), batchSize);
+    }
+
+    public WeightImporter(WeightTrackerDatabase database, RollupUpdater rollupUpdater, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.database = database;
+        this.weightDao = database.timedWeightDao();
+        this.rollupUpdater = rollupUpdater;
+        this.batchSize = batchSize;
+    }
+
+    // Import every weight from the reader for the user and return the number of rows in the source.
+    // Rows with the same date as an existing weight replace it, so re-importing a file is safe.
+    public long importWeights(WeightImportReader reader, long userId, String sourceKey,
+                              ProgressListener listener) throws IOException {
+        ImportCheckpoint checkpoint = weightDao.getImportCheckpoint(sourceKey);
+        long committed = checkpoint != null && checkpoint.getUserId() == userId ? checkpoint.getRowsCommitted() : 0;
+
+        // Skip the rows that were committed by an earlier run of this import
+        Weight skipped = new Weight();
+        for (long row = 0; row < committed; row++) {
+            if (!reader.next(skipped)) break;
+        }
+        if (committed > 0) listener.onProgress(committed);
+
+        List<Weight> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Weight weight = new Weight();
+            boolean hasNext = reader.next(weight);
+            if (hasNext) {
+                weight.setUserId(userId);
+                batch.add(weight);
+            }
+            if (batch.size() == batchSize || (!hasNext && !batch.isEmpty())) {
+                // Stop between batches if the import was cancelled. The checkpoint is kept.
+                if (Thread.interrupted()) throw new InterruptedIOException("Import cancelled");
+                committed = commitBatch(batch, userId, sourceKey, committed);
+                listener.onProgress(committed);
+                batch.clear();
+            }
+            if (!hasNext) break;
+        }
+
+        weightDao.deleteImportCheckpoint(sourceKey);
+        return committed;
+    }
+
+    private long commitBatch(List<Weight> batch, long userId, String sourceKey, long committed) {
+        long total = committed + batch.size();
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setSourceKey(sourceKey);
+        checkpoint.setUserId(userId);
+        checkpoint.setRowsCommitted(total);
+
+        database.runInTransaction(() -> {
+            weightDao.addWeights(batch);
+            rollupUpdater.refresh(userId, batch);
+            weightDao.saveImportCheckpoint(checkpoint);
+        });
+        return total;
+    }
+}
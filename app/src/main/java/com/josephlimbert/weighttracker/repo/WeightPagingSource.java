@@ -0,0 +1,126 @@
+package com.josephlimbert.weighttracker.repo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kotlin.Unit;
+
+// Loads a user's weights newest first, one page at a time. Pages are keyed on the recorded date
+// of the weight at the edge of the page so each load is an index range scan instead of an OFFSET.
+public class WeightPagingSource extends ListenableFuturePagingSource<Long, Weight> {
+    private final WeightDao weightDao;
+    private final WeightCache weightCache;
+    private final UserChangeTracker userChangeTracker;
+    private final long userId;
+    private final ListeningExecutorService executor;
+
+    // Invalidate this paging source when this user's weights change so the list reloads. Writes
+    // for other users don't touch it.
+    private final Runnable onUserChanged = this::invalidate;
+    private final AtomicBoolean listening = new AtomicBoolean();
+
+    public WeightPagingSource(WeightTrackerDatabase database, WeightCache weightCache,
+                              UserChangeTracker userChangeTracker, long userId, ListeningExecutorService executor) {
+        this.weightDao = database.timedWeightDao();
+        this.weightCache = weightCache;
+        this.userChangeTracker = userChangeTracker;
+        this.userId = userId;
+        this.executor = executor;
+
+        registerInvalidatedCallback(() -> {
+            userChangeTracker.removeChangeListener(userId, onUserChanged);
+            return Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Long, Weight>> loadFuture(@NonNull LoadParams<Long> params) {
+        return executor.submit(() -> load(params));
+    }
+
+    // Every loaded page is added to the weight cache so editing a weight on screen doesn't read it again
+    private LoadResult<Long, Weight> load(LoadParams<Long> params) {
+        TraceSections.begin("WeightPagingSource.load");
+        try {
+            startListening();
+            long cacheVersion = weightCache.getVersion();
+            LoadResult.Page<Long, Weight> page = loadPage(params);
+            weightCache.putAll(page.getData(), cacheVersion);
+            return page;
+        } finally {
+            TraceSections.end();
+        }
+    }
+
+    private LoadResult.Page<Long, Weight> loadPage(LoadParams<Long> params) {
+        int limit = params.getLoadSize();
+        Long key = params.getKey();
+
+        // Prepend loads the weights newer than the first weight on screen. They come back oldest
+        // first so they are reversed to keep the list newest first.
+        if (params instanceof LoadParams.Prepend) {
+            List<Weight> weights = weightDao.getWeightsNewerThan(userId, key, limit);
+            Collections.reverse(weights);
+            Long prevKey = weights.size() < limit ? null : firstKey(weights);
+            return new LoadResult.Page<>(weights, prevKey, key);
+        }
+
+        // Append loads the weights older than the last weight on screen. A refresh loads from
+        // the anchor weight (inclusive) or from the newest weight when there is no anchor.
+        List<Weight> weights;
+        Long prevKey;
+        if (params instanceof LoadParams.Append) {
+            weights = weightDao.getWeightsOlderThan(userId, key, limit);
+            prevKey = key;
+        } else if (key != null) {
+            weights = weightDao.getWeightsOlderThan(userId, key + 1, limit);
+            prevKey = weights.isEmpty() ? null : firstKey(weights);
+        } else {
+            weights = weightDao.getWeightsOlderThan(userId, Long.MAX_VALUE, limit);
+            prevKey = null;
+        }
+        Long nextKey = weights.size() < limit ? null : lastKey(weights);
+        return new LoadResult.Page<>(weights, prevKey, nextKey);
+    }
+
+    // Listen for changes from the first load, on the paging executor, so a source created on the
+    // main thread does no work there. Listening starts before the page is read so a change made
+    // during the read still invalidates it.
+    private void startListening() {
+        if (!listening.compareAndSet(false, true)) return;
+        userChangeTracker.addChangeListener(userId, onUserChanged);
+        // The source may have been invalidated before the listener was added
+        if (getInvalid()) userChangeTracker.removeChangeListener(userId, onUserChanged);
+    }
+
+    // Reload around the weight closest to where the user is scrolled so the position is kept
+    @Nullable
+    @Override
+    public Long getRefreshKey(@NonNull PagingState<Long, Weight> state) {
+        Integer anchorPosition = state.getAnchorPosition();
+        if (anchorPosition == null) return null;
+
+        Weight anchor = state.closestItemToPosition(anchorPosition);
+        return anchor != null ? anchor.getRecordedDate() : null;
+    }
+
+    private static Long firstKey(List<Weight> weights) {
+        return weights.get(0).getRecordedDate();
+    }
+
+    private static Long lastKey(List<Weight> weights) {
+        return weights.get(weights.size() - 1).getRecordedDate();
+    }
+}
@@ -0,0 +1,76 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.josephlimbert.weighttracker.model.WeightSeries;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps each user's weight series in memory. A series is read straight from a two column cursor
+// into primitive arrays, so no Weight or Date objects are created, and it is dropped when the
+// weights table changes.
+public class WeightSeriesCache {
+    private final WeightDao weightDao;
+    private final Map<Long, WeightSeries> series = new ConcurrentHashMap<>();
+
+    // Bumped on every change so a series loaded while a write was committing is not cached
+    private final AtomicLong version = new AtomicLong();
+
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("Weights") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate();
+        }
+    };
+
+    public WeightSeriesCache(WeightTrackerDatabase database) {
+        this.weightDao = database.timedWeightDao();
+        database.getInvalidationTracker().addObserver(observer);
+    }
+
+    // Get the user's series, loading it if it isn't cached. Must be called off the main thread.
+    public WeightSeries get(long userId) {
+        WeightSeries cached = series.get(userId);
+        if (cached != null) return cached;
+
+        long loadedVersion = version.get();
+        WeightSeries loaded = load(userId);
+        put(userId, loaded, loadedVersion);
+        return loaded;
+    }
+
+    // Cache a series loaded at the given version. Dropped if the table changed since. Synchronized
+    // with invalidate so the table can't change between the check and the put.
+    private synchronized void put(long userId, WeightSeries loaded, long loadedVersion) {
+        if (version.get() == loadedVersion) {
+            series.put(userId, loaded);
+        }
+    }
+
+    // Drop every cached series. The repository also calls this after its own writes so the next
+    // read sees them without waiting for the invalidation tracker.
+    public synchronized void invalidate() {
+        version.incrementAndGet();
+        series.clear();
+    }
+
+    private WeightSeries load(long userId) {
+        try (Cursor cursor = weightDao.getWeightSeries(userId)) {
+            int size = cursor.getCount();
+            long[] dates = new long[size];
+            float[] weights = new float[size];
+            int index = 0;
+            while (cursor.moveToNext()) {
+                dates[index] = cursor.getLong(0);
+                weights[index++] = cursor.getFloat(1);
+            }
+            return new WeightSeries(dates, weights, index);
+        }
+    }
+}
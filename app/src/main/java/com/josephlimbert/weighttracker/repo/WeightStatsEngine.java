@@ -0,0 +1,98 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.WeightStats;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Keeps the trend statistics for one user up to date as single days change. Each day holds the
+// sum and count of that day's weights and the trend weight as of that day, in a map sorted by day.
+//
+// Changing a day is O(log n) for the map plus a replay of the trend from that day onwards. The
+// trend of a day only depends on the day before it and a change shrinks by (1 - TREND_SMOOTHING)
+// each day, so the replay stops as soon as the trend stops changing. A new weigh-in today only
+// touches one day and a backdated edit touches a few weeks at most. The averages read at most
+// 30 days from the map.
+public class WeightStatsEngine {
+    // Weight given to each new day in the trend. 0.1 follows about the last ten days.
+    static final double TREND_SMOOTHING = 0.1;
+    // Replay stops once a day's trend moves by less than this many pounds
+    private static final double TREND_TOLERANCE = 1e-6;
+
+    private static class Day {
+        double sum;
+        int count;
+        double trend = Double.NaN;
+    }
+
+    private final TreeMap<Long, Day> days = new TreeMap<>();
+
+    // Set the sum and count of the weights recorded on a day. A count of zero removes the day.
+    public void setDay(LocalDate date, double sum, int count) {
+        long epochDay = date.toEpochDay();
+        if (count == 0) {
+            if (days.remove(epochDay) != null) replayFrom(epochDay);
+            return;
+        }
+
+        Day day = days.get(epochDay);
+        if (day == null) {
+            day = new Day();
+            days.put(epochDay, day);
+        }
+        day.sum = sum;
+        day.count = count;
+        replayFrom(epochDay);
+    }
+
+    public void clear() {
+        days.clear();
+    }
+
+    private void replayFrom(long epochDay) {
+        Map.Entry<Long, Day> previous = days.lowerEntry(epochDay);
+        double trend = previous != null ? previous.getValue().trend : Double.NaN;
+        for (Day day : days.tailMap(epochDay, true).values()) {
+            double mean = day.sum / day.count;
+            double newTrend = Double.isNaN(trend) ? mean : trend + TREND_SMOOTHING * (mean - trend);
+            double change = Math.abs(newTrend - day.trend);
+            day.trend = newTrend;
+            trend = newTrend;
+            // A new day's old trend is NaN so the comparison is false and the replay carries on
+            if (change < TREND_TOLERANCE) break;
+        }
+    }
+
+    // Get the statistics as of the latest day
+    public WeightStats getStats() {
+        Map.Entry<Long, Day> last = days.lastEntry();
+        if (last == null) return WeightStats.EMPTY;
+        long lastDay = last.getKey();
+        double trend = last.getValue().trend;
+
+        // Rate of change of the trend over the last week, or since the first day if that is sooner
+        Map.Entry<Long, Day> weekAgo = days.floorEntry(lastDay - 7);
+        if (weekAgo == null) weekAgo = days.firstEntry();
+        Float weeklyRate = null;
+        if (weekAgo.getKey() != lastDay) {
+            weeklyRate = (float) ((trend - weekAgo.getValue().trend) / (lastDay - weekAgo.getKey()) * 7);
+        }
+
+        return new WeightStats(LocalDate.ofEpochDay(lastDay), average(lastDay, 7), average(lastDay, 30),
+                (float) trend, weeklyRate);
+    }
+
+    // Average of every weight recorded in the given number of days up to and including lastDay
+    private float average(long lastDay, int numberOfDays) {
+        NavigableMap<Long, Day> window = days.subMap(lastDay - numberOfDays + 1, true, lastDay, true);
+        double sum = 0;
+        int count = 0;
+        for (Day day : window.values()) {
+            sum += day.sum;
+            count += day.count;
+        }
+        return (float) (sum / count);
+    }
+}
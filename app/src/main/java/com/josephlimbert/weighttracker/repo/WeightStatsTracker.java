@@ -0,0 +1,102 @@
+package com.josephlimbert.weighttracker.repo;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightSeries;
+import com.josephlimbert.weighttracker.model.WeightStats;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+// Keeps a statistics engine per user and publishes its results as LiveData. An engine is loaded
+// from the user's cached weight series the first time their stats are requested and is then
+// updated one day at a time after each write, reading only that day's readings from the series.
+// The series is shared with the dashboard and the chart so it is read once per change.
+public class WeightStatsTracker {
+    private final WeightSeriesCache weightSeriesCache;
+    private final ZoneId zone;
+    // Engines are only touched on this executor so the updates run one at a time in write order
+    private final Executor executor;
+    private final Map<Long, WeightStatsEngine> engines = new HashMap<>();
+    private final Map<Long, MutableLiveData<WeightStats>> stats = new ConcurrentHashMap<>();
+
+    public WeightStatsTracker(WeightSeriesCache weightSeriesCache, ZoneId zone, Executor executor) {
+        this.weightSeriesCache = weightSeriesCache;
+        this.zone = zone;
+        this.executor = executor;
+    }
+
+    public LiveData<WeightStats> getStats(long userId) {
+        MutableLiveData<WeightStats> liveData = stats.computeIfAbsent(userId, id -> new MutableLiveData<>());
+        executor.execute(() -> publish(userId));
+        return liveData;
+    }
+
+    // Update the recorded days from the user's series. Called after a write commits and the series
+    // cache was cleared. Users whose stats haven't been requested are loaded when they are.
+    public void onWeightsChanged(long userId, int... recordedDays) {
+        executor.execute(() -> {
+            WeightStatsEngine engine = engines.get(userId);
+            if (engine == null) return;
+            WeightSeries series = weightSeriesCache.get(userId);
+            for (int recordedDay : recordedDays) {
+                int from = series.indexOf(RollupBuckets.dayStart(recordedDay, zone));
+                int to = series.indexOf(RollupBuckets.dayStart(recordedDay + 1, zone));
+                double sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += series.getWeight(i);
+                }
+                engine.setDay(LocalDate.ofEpochDay(recordedDay), sum, to - from);
+            }
+            publish(userId);
+        });
+    }
+
+    // Load the user's statistics again from the series, for example after an import
+    public void reload(long userId) {
+        executor.execute(() -> {
+            engines.remove(userId);
+            publish(userId);
+        });
+    }
+
+    private void publish(long userId) {
+        MutableLiveData<WeightStats> liveData = stats.get(userId);
+        if (liveData != null) liveData.postValue(engine(userId).getStats());
+    }
+
+    // Days are added oldest first so each one only calculates its own trend. The series is oldest
+    // first too, so readings are summed until one falls past the end of the current day and the
+    // day is only looked up again then.
+    private WeightStatsEngine engine(long userId) {
+        WeightStatsEngine engine = engines.get(userId);
+        if (engine == null) {
+            engine = new WeightStatsEngine();
+            WeightSeries series = weightSeriesCache.get(userId);
+            int day = 0;
+            long dayEnd = Long.MIN_VALUE;
+            double sum = 0;
+            int count = 0;
+            for (int i = 0; i < series.size(); i++) {
+                if (series.getDate(i) >= dayEnd) {
+                    if (count > 0) engine.setDay(LocalDate.ofEpochDay(day), sum, count);
+                    day = Weight.toEpochDay(series.getDate(i), zone);
+                    dayEnd = RollupBuckets.dayStart(day + 1, zone);
+                    sum = 0;
+                    count = 0;
+                }
+                sum += series.getWeight(i);
+                count++;
+            }
+            if (count > 0) engine.setDay(LocalDate.ofEpochDay(day), sum, count);
+            engines.put(userId, engine);
+        }
+        return engine;
+    }
+}
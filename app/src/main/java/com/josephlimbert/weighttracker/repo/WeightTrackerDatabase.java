@@ -1,16 +1,122 @@
 package com.josephlimbert.weighttracker.repo;
 
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
-import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
 import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.ImportCheckpoint;
 import com.josephlimbert.weighttracker.model.User;
 import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import java.io.IOException;
+import java.time.ZoneId;
 
-@Database(entities = {Weight.class, User.class, GoalWeight.class}, version = 1)
-@TypeConverters({Converters.class})
+@Database(entities = {Weight.class, User.class, GoalWeight.class, ImportCheckpoint.class, WeightRollup.class}, version = 6)
 public abstract class WeightTrackerDatabase extends RoomDatabase {
     public abstract WeightDao weightDao();
     public abstract UserDao userDao();
+    public abstract RollupDao rollupDao();
+
+    // The DAOs the repository and its helpers use. Each call is timed while metrics are enabled,
+    // see TimedWeightDao. The wrappers hold no state so two threads racing here is harmless.
+    private volatile WeightDao timedWeightDao;
+    private volatile UserDao timedUserDao;
+    private volatile RollupDao timedRollupDao;
+
+    public WeightDao timedWeightDao() {
+        if (timedWeightDao == null) timedWeightDao = new TimedWeightDao(weightDao(), MetricsRegistry.getInstance());
+        return timedWeightDao;
+    }
+
+    public UserDao timedUserDao() {
+        if (timedUserDao == null) timedUserDao = new TimedUserDao(userDao(), MetricsRegistry.getInstance());
+        return timedUserDao;
+    }
+
+    public RollupDao timedRollupDao() {
+        if (timedRollupDao == null) timedRollupDao = new TimedRollupDao(rollupDao(), MetricsRegistry.getInstance());
+        return timedRollupDao;
+    }
+
+    // Version 2 replaces the unique index on recorded_date with a unique index on
+    // (user_id, recorded_date). Every weight query filters on the user and sorts by date so they
+    // can now use the index, and one user's weight can no longer replace another user's weight
+    // recorded at the same time.
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_Weights_recorded_date`");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_Weights_user_id_recorded_date` ON `Weights` (`user_id`, `recorded_date`)");
+        }
+    };
+
+    // Version 3 adds the table that tracks how far each weight import has been committed
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `Import_Checkpoints` (`source_key` TEXT NOT NULL, `user_id` INTEGER NOT NULL, `rows_committed` INTEGER NOT NULL, PRIMARY KEY(`source_key`))");
+        }
+    };
+
+    // Version 4 adds the daily, weekly and monthly rollups of each user's weights. The table is
+    // filled from the existing weights the first time the repository opens the database.
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `Weight_Rollups` (`user_id` INTEGER NOT NULL, `period` INTEGER NOT NULL, `bucket_start` INTEGER NOT NULL, `min_weight` REAL NOT NULL, `max_weight` REAL NOT NULL, `sum_weight` REAL NOT NULL, `weight_count` INTEGER NOT NULL, `first_date` INTEGER NOT NULL, `first_weight` REAL NOT NULL, `last_date` INTEGER NOT NULL, `last_weight` REAL NOT NULL, PRIMARY KEY(`user_id`, `period`, `bucket_start`))");
+        }
+    };
+
+    // Version 5 makes usernames unique so logging in is one index lookup. Older versions could
+    // register the same username twice, so every copy after the first is renamed "name (id)"
+    // first. Those users keep their weights. Passwords are hashed later, the next time each
+    // user logs in.
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE Users SET username = username || ' (' || id || ')' WHERE id NOT IN (SELECT MIN(id) FROM Users GROUP BY username)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_Users_username` ON `Users` (`username`)");
+        }
+    };
+
+    // Version 6 makes recorded_date NOT NULL so it is read as a primitive long, and adds the local
+    // day each weight was recorded on with an index on (user_id, recorded_day). SQLite can't change
+    // a column's constraints so the table is rebuilt. The app always set a date, so rows without
+    // one could never be shown and are not copied. The day is filled in with the device's current
+    // time zone, the same zone the existing rollups were built with.
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `Weights_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `weight` REAL NOT NULL, `recorded_date` INTEGER NOT NULL, `recorded_day` INTEGER NOT NULL, `user_id` INTEGER NOT NULL, FOREIGN KEY(`user_id`) REFERENCES `Users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT INTO Weights_new (id, weight, recorded_date, recorded_day, user_id) SELECT id, weight, recorded_date, 0, user_id FROM Weights WHERE recorded_date IS NOT NULL");
+            db.execSQL("DROP TABLE Weights");
+            db.execSQL("ALTER TABLE Weights_new RENAME TO Weights");
+
+            ZoneId zone = ZoneId.systemDefault();
+            try (SupportSQLiteStatement setDay = db.compileStatement("UPDATE Weights SET recorded_day = ? WHERE id = ?");
+                 Cursor cursor = db.query("SELECT id, recorded_date FROM Weights")) {
+                while (cursor.moveToNext()) {
+                    setDay.bindLong(1, Weight.toEpochDay(cursor.getLong(1), zone));
+                    setDay.bindLong(2, cursor.getLong(0));
+                    setDay.executeUpdateDelete();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_Weights_user_id_recorded_date` ON `Weights` (`user_id`, `recorded_date`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Weights_user_id_recorded_day` ON `Weights` (`user_id`, `recorded_day`)");
+        }
+    };
+
+    // Every migration in order. Add new migrations here so the app and the tests both use them.
+    public static final Migration[] MIGRATIONS = {MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6};
 }
@@ -1,120 +1,521 @@
 package com.josephlimbert.weighttracker.repo;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.paging.PagingSource;
+import androidx.room.InvalidationTracker;
 import androidx.room.Room;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.model.ChartPoints;
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.Event;
 import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.LoginResult;
 import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.UserSettings;
 import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightStats;
+import com.josephlimbert.weighttracker.work.GoalCheckWorker;
 
-import java.util.List;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class WeightTrackerRepository {
-    private static WeightTrackerRepository weightTrackerRepo;
+    // Writes are serialized on a single thread so they are applied in the order they were made.
+    // Reads share a small pool so a slow query does not block the others.
+    private static final int NUMBER_OF_READ_THREADS = 2;
+    // Number of weights kept in memory for the edit sheet, a few pages of the list
+    private static final int WEIGHT_CACHE_SIZE = 200;
+
+    // Builds the app's database file. Queries run on the repository's read threads.
+    private static final DatabaseFactory APP_DATABASE = (context, queryExecutor) ->
+            Room.databaseBuilder(context, WeightTrackerDatabase.class, "weight.db")
+                    .setQueryExecutor(queryExecutor)
+                    .addMigrations(WeightTrackerDatabase.MIGRATIONS)
+                    .build();
+
+    // Volatile so a thread that sees the instance also sees every field the constructor set
+    private static volatile WeightTrackerRepository weightTrackerRepo;
+    private final Context context;
+    private final WeightTrackerDatabase database;
     private final WeightDao weightDao;
     private final UserDao userDao;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(NUMBER_OF_READ_THREADS);
+    private final ExecutorService passwordExecutor = Executors.newSingleThreadExecutor();
+    private final PasswordHasher passwordHasher = new PasswordHasher(PasswordHasher.DEFAULT_ITERATIONS);
+    private final ListeningExecutorService pagingExecutor = MoreExecutors.listeningDecorator(readExecutor);
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+    private final WeightWriter weightWriter;
+    private final WeightSeriesCache weightSeriesCache;
+    private final WeightCache weightCache;
+    private final WeightWriteQueue weightWriteQueue;
+    private final WeightStatsTracker weightStatsTracker;
+    private final ChartLoader chartLoader;
+    private final WeightImporter weightImporter;
+    private final WeightExporter weightExporter;
+    private final SettingsStore settingsStore;
+    private final UserChangeTracker userChangeTracker;
+    // The newest dashboard known for each user, shown first while the database query runs
+    private final Map<Long, Dashboard> dashboardSnapshots = new ConcurrentHashMap<>();
+    // The last dashboard saved in the settings and its user. Only used on the main thread.
+    private Dashboard savedSnapshot;
+    private long savedSnapshotUserId;
+
+    // Creates the database for a repository. Tests pass one that builds an in-memory database.
+    public interface DatabaseFactory {
+        WeightTrackerDatabase create(Context context, Executor queryExecutor);
+    }
+
+    // Callback used to deliver the result of a background database operation on the main thread
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    // Listener for a weight import. Every method is called on the main thread.
+    public interface ImportListener extends WeightImporter.ProgressListener {
+        void onComplete(long rowsImported);
+        void onError(Exception e);
+    }
+
+    // Listener for a weight export. Every method is called on the main thread.
+    public interface ExportListener extends WeightExporter.ProgressListener {
+        void onComplete(long rowsExported);
+        void onError(Exception e);
+    }
 
     // Store the user ID of the logged in user. Used to get data from the weight table for the user.
     private final MutableLiveData<Long> loggedInUserId = new MutableLiveData<>();
 
+    // Get the repository shared by the whole app. Once it is built this is a single volatile read
+    // with no locking. The first callers lock so only one of them builds the database.
     public static WeightTrackerRepository getInstance(Context context) {
-        if (weightTrackerRepo == null) {
-            weightTrackerRepo = new WeightTrackerRepository(context);
+        return getInstance(context, APP_DATABASE);
+    }
+
+    @VisibleForTesting
+    static WeightTrackerRepository getInstance(Context context, DatabaseFactory databaseFactory) {
+        WeightTrackerRepository repo = weightTrackerRepo;
+        if (repo == null) {
+            synchronized (WeightTrackerRepository.class) {
+                repo = weightTrackerRepo;
+                if (repo == null) {
+                    // Keep the application context, an activity passed in here would be leaked
+                    repo = new WeightTrackerRepository(context.getApplicationContext(), databaseFactory);
+                    weightTrackerRepo = repo;
+                }
+            }
         }
-        return weightTrackerRepo;
+        return repo;
     }
 
-    private WeightTrackerRepository(Context context) {
-        WeightTrackerDatabase database = Room.databaseBuilder(context, WeightTrackerDatabase.class, "weight.db")
-                .allowMainThreadQueries()
-                .build();
+    // Replace the shared repository, for example with one on an in-memory database. Passing null
+    // makes the next getInstance build a new one.
+    @VisibleForTesting
+    public static void setInstance(WeightTrackerRepository repo) {
+        synchronized (WeightTrackerRepository.class) {
+            weightTrackerRepo = repo;
+        }
+    }
 
-        weightDao = database.weightDao();
-        userDao = database.userDao();
+    // Build a repository with its own database and threads, separate from the shared one.
+    // The caller closes it when done.
+    public static WeightTrackerRepository create(Context context, DatabaseFactory databaseFactory) {
+        return new WeightTrackerRepository(context.getApplicationContext(), databaseFactory);
     }
 
-    // Get the latest weight entered into the database. This would be the current weight.
-    public LiveData<Weight> getCurrentWeight(long userId) {
-        return weightDao.getCurrentWeight(userId);
+    private WeightTrackerRepository(Context context, DatabaseFactory databaseFactory) {
+        this.context = context;
+        database = databaseFactory.create(context, readExecutor);
+
+        weightDao = database.timedWeightDao();
+        userDao = database.timedUserDao();
+        RollupUpdater rollupUpdater = new RollupUpdater(database, ZoneId.systemDefault());
+        weightSeriesCache = new WeightSeriesCache(database);
+        weightStatsTracker = new WeightStatsTracker(weightSeriesCache, ZoneId.systemDefault(), writeExecutor);
+        weightWriter = new WeightWriter(database, rollupUpdater, this::onWeightsChanged);
+        weightCache = new WeightCache(database, WEIGHT_CACHE_SIZE);
+        weightWriteQueue = new WeightWriteQueue(weightWriter, this::writeWeights, mainThreadHandler,
+                WeightWriteQueue.DEFAULT_WINDOW_MILLIS);
+        chartLoader = new ChartLoader(database, weightSeriesCache, ZoneId.systemDefault());
+        weightImporter = new WeightImporter(database, rollupUpdater, WeightImporter.DEFAULT_BATCH_SIZE);
+        weightExporter = new WeightExporter(database, WeightExporter.DEFAULT_PAGE_SIZE);
+        settingsStore = SettingsStore.getInstance(context);
+        userChangeTracker = new UserChangeTracker(writeExecutor, readExecutor, mainThreadHandler);
+        registerMetrics(MetricsRegistry.getInstance());
+
+        // Fill the rollup table from the existing weights after upgrading from a version without it
+        writeExecutor.execute(TraceSections.wrap("Repository.rebuildRollups", rollupUpdater::rebuildIfEmpty));
     }
 
-    // Get the first weight entered into the database. This would be the starting weight.
-    public LiveData<Weight> getStartingWeight(long userId) {
-        return weightDao.getStartingWeight(userId);
+    // Count how often Room invalidates each table, which re-runs every Room query on that table,
+    // and report the user change tracker's counters with the other metrics
+    private void registerMetrics(MetricsRegistry metrics) {
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(
+                "Weights", "Users", "Goal_Weight", "Import_Checkpoints", "Weight_Rollups") {
+            @Override
+            public void onInvalidated(Set<String> tables) {
+                if (!metrics.isEnabled()) return;
+                for (String table : tables) metrics.increment("Invalidated " + table);
+            }
+        });
+        metrics.registerGauge("UserChangeTracker.queriesRun", () -> userChangeTracker.getCounters().getQueriesRun());
+        metrics.registerGauge("UserChangeTracker.queriesSkipped", () -> userChangeTracker.getCounters().getQueriesSkipped());
+        metrics.registerGauge("UserChangeTracker.emissionsDelivered", () -> userChangeTracker.getCounters().getEmissionsDelivered());
+        metrics.registerGauge("UserChangeTracker.emissionsSuppressed", () -> userChangeTracker.getCounters().getEmissionsSuppressed());
     }
 
-    // Get the list of weights in the database
-    public LiveData<List<Weight>> getWeightList(long userId) {
-        return weightDao.getWeightList(userId);
+    // Get the starting, current and goal weights together so they update at the same time. The
+    // last known dashboard is emitted straight away and replaced when the load returns. The load
+    // only runs again after a write to this user's data and only emits when the result changed,
+    // see UserChangeTracker.
+    public LiveData<Dashboard> getDashboard(long userId) {
+        MediatorLiveData<Dashboard> dashboard = new MediatorLiveData<>();
+        Dashboard snapshot = dashboardSnapshots.get(userId);
+        if (snapshot != null) dashboard.setValue(snapshot);
+        dashboard.addSource(userChangeTracker.observe("Repository.getDashboard", userId, () -> loadDashboard(userId)), value -> {
+            TraceSections.begin("Repository.onDashboardLoaded");
+            dashboard.setValue(value);
+            dashboardSnapshots.put(userId, value);
+            saveSnapshot(userId, value);
+            TraceSections.end();
+        });
+        return dashboard;
     }
 
-    // Get a weight based on its ID
-    public Weight getWeight(long id) {
-        return weightDao.getWeight(id);
+    // Save the dashboard in the settings for the next launch, DataStore writes it on its own
+    // thread. A dashboard equal to the last one saved for the same user is already in the file, so
+    // it isn't written again.
+    private void saveSnapshot(long userId, Dashboard dashboard) {
+        if (userId == savedSnapshotUserId && dashboard.equals(savedSnapshot)) return;
+        savedSnapshot = dashboard;
+        savedSnapshotUserId = userId;
+        settingsStore.saveDashboardSnapshot(userId, dashboard);
+    }
+
+    // Open the database and load the logged in user's dashboard on a background thread. Called at
+    // startup so the first screen doesn't wait for either.
+    public void prewarm() {
+        readExecutor.execute(TraceSections.wrap("Repository.prewarm", () -> {
+            // Reading the settings also loads them into memory for MainActivity
+            Long userId = settingsStore.readSettings().getLoggedInUserId();
+            if (userId == null) {
+                database.getOpenHelper().getWritableDatabase();
+                return;
+            }
+            // Served from the settings DataStore already read into memory above
+            Dashboard saved = settingsStore.readDashboardSnapshot(userId);
+            if (saved != null) dashboardSnapshots.putIfAbsent(userId, saved);
+
+            Dashboard dashboard = loadDashboard(userId);
+            dashboard.setSnapshot(true);
+            // Don't replace a dashboard the live query already delivered
+            if (saved == null) {
+                dashboardSnapshots.putIfAbsent(userId, dashboard);
+            } else {
+                dashboardSnapshots.replace(userId, saved, dashboard);
+            }
+        }));
+    }
+
+    // Build the dashboard from the user's cached weight series and their goal weight, on the
+    // calling thread. Loading the series here also warms it for the stats and the chart.
+    private Dashboard loadDashboard(long userId) {
+        GoalWeight goal = weightDao.loadGoalWeight(userId);
+        return Dashboard.from(weightSeriesCache.get(userId), goal != null ? goal.getWeight() : null);
+    }
+
+    // Emits after every write to the user's weights or goal, for views that reload themselves
+    public LiveData<Long> getUserChanges(long userId) {
+        return userChangeTracker.getChanges(userId);
+    }
+
+    // Get the user's weights one page at a time, newest first
+    public PagingSource<Long, Weight> getWeightPagingSource(long userId) {
+        return new WeightPagingSource(database, weightCache, userChangeTracker, userId, pagingExecutor);
+    }
+
+    // Get the user's moving averages, trend weight and weekly rate. They are updated one day at a
+    // time as weights are added, changed or deleted.
+    public LiveData<WeightStats> getWeightStats(long userId) {
+        return weightStatsTracker.getStats(userId);
+    }
+
+    // Get the chart points between from and to for a chart maxPoints pixels wide. Wide ranges
+    // come from the rollups so the number of rows read doesn't grow with the history.
+    public void getChartPoints(long userId, long from, long to, int maxPoints, Callback<ChartPoints> callback) {
+        readExecutor.execute(TraceSections.wrap("Repository.getChartPoints",
+                () -> postResult(callback, chartLoader.load(userId, from, to, maxPoints))));
+    }
+
+    // Get a copy of a weight based on its ID that the caller can edit. Weights shown in the list
+    // are cached so they come straight from memory, otherwise the weight is loaded in the background.
+    public void getWeight(long id, Callback<Weight> callback) {
+        // An edit that hasn't been written yet is newer than the database
+        PendingWrites pending = weightWriteQueue.getPendingWrites().getValue();
+        if (pending != null && pending.getUpdate(id) != null) {
+            postResult(callback, new Weight(pending.getUpdate(id)));
+            return;
+        }
+
+        Weight cached = weightCache.get(id);
+        if (cached != null) {
+            postResult(callback, cached);
+            return;
+        }
+        readExecutor.execute(TraceSections.wrap("Repository.getWeight", () -> postResult(callback, weightDao.getWeight(id))));
     }
 
     // Add a new weight to the database.
     public void addWeight(Weight weight) {
-        weightDao.addWeight(weight);
+        weightCache.remove(weight.getId());
+        writeWeights(() -> weightWriter.addWeight(weight));
     }
 
-    // Update an existing weight
+    // Update an existing weight. Edits and deletes made close together are written in one
+    // transaction, see WeightWriteQueue. The queue is only touched on the main thread so calls
+    // from other threads are posted there.
     public void updateWeight(Weight weight) {
-        weightDao.updateWeight(weight);
+        weightCache.remove(weight.getId());
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainThreadHandler.post(() -> weightWriteQueue.updateWeight(weight));
+            return;
+        }
+        weightWriteQueue.updateWeight(weight);
     }
 
-    // Delete a weight from the database
+    // Delete a weight from the database. Calls from other threads are posted to the main thread.
     public void deleteWeight(Weight weight) {
-        weightDao.deleteWeight(weight);
+        weightCache.remove(weight.getId());
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainThreadHandler.post(() -> weightWriteQueue.deleteWeight(weight));
+            return;
+        }
+        weightWriteQueue.deleteWeight(weight);
     }
 
-    // Get the goal weight from the database
-    public LiveData<GoalWeight> getGoalWeight(long userId) {
-        return weightDao.getGoalWeight(userId);
+    // Edits and deletes that haven't been written yet, for the list to show straight away
+    public LiveData<PendingWrites> getPendingWrites() {
+        return weightWriteQueue.getPendingWrites();
+    }
+
+    // Errors from edits and deletes that failed and were rolled back
+    public LiveData<Event<Exception>> getWriteErrors() {
+        return weightWriteQueue.getWriteErrors();
+    }
+
+    // Called when the list reloads from the database so committed writes stop being overlaid.
+    // Returns true if the pending writes changed.
+    public boolean clearConfirmedWrites() {
+        return weightWriteQueue.clearConfirmed();
+    }
+
+    // Import weights for the user from a CSV or JSON file. The file is streamed and inserted in
+    // batches on the write thread. If the import is interrupted or cancelled, importing the same
+    // file again continues after the last batch that was committed.
+    public Future<?> importWeights(Context context, Uri uri, long userId, ImportListener listener) {
+        Context appContext = context.getApplicationContext();
+        return writeExecutor.submit(TraceSections.wrap("Repository.importWeights", () -> {
+            try (InputStream stream = appContext.getContentResolver().openInputStream(uri)) {
+                if (stream == null) throw new FileNotFoundException(uri.toString());
+                String type = appContext.getContentResolver().getType(uri);
+                boolean isJson = (type != null && type.contains("json")) || uri.toString().endsWith(".json");
+                Reader in = new InputStreamReader(stream, StandardCharsets.UTF_8);
+                try (WeightImportReader reader = isJson
+                        ? new JsonWeightReader(in, ZoneId.systemDefault())
+                        : new CsvWeightReader(in, ZoneId.systemDefault())) {
+                    long rows = weightImporter.importWeights(reader, userId, uri.toString(),
+                            rowsImported -> mainThreadHandler.post(() -> listener.onProgress(rowsImported)));
+                    mainThreadHandler.post(() -> listener.onComplete(rows));
+                }
+            } catch (IOException | RuntimeException e) {
+                mainThreadHandler.post(() -> listener.onError(e));
+            } finally {
+                weightSeriesCache.invalidate();
+                weightCache.invalidate();
+                weightStatsTracker.reload(userId);
+                userChangeTracker.onUserChanged(userId);
+                GoalCheckWorker.enqueue(context, userId);
+            }
+        }));
+    }
+
+    // Export the user's weights to a CSV or JSON file in the background. The export can be
+    // stopped by cancelling the returned future.
+    public Future<?> exportWeights(Context context, Uri uri, long userId, WeightExporter.Format format, ExportListener listener) {
+        Context appContext = context.getApplicationContext();
+        return readExecutor.submit(TraceSections.wrap("Repository.exportWeights", () -> {
+            try (OutputStream stream = appContext.getContentResolver().openOutputStream(uri)) {
+                if (stream == null) throw new FileNotFoundException(uri.toString());
+                Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+                long rows = weightExporter.exportWeights(writer, userId, format, ZoneId.systemDefault(),
+                        (rowsExported, totalRows) -> mainThreadHandler.post(() -> listener.onProgress(rowsExported, totalRows)));
+                mainThreadHandler.post(() -> listener.onComplete(rows));
+            } catch (IOException | RuntimeException e) {
+                mainThreadHandler.post(() -> listener.onError(e));
+            }
+        }));
     }
 
     // Add a goal weight to the database
     public void addGoalWeight(GoalWeight goalWeight) {
-        weightDao.addGoalWeight(goalWeight);
+        writeExecutor.execute(TraceSections.wrap("Repository.addGoalWeight", () -> {
+            weightDao.addGoalWeight(goalWeight);
+            userChangeTracker.onUserChanged(goalWeight.getUserId());
+            GoalCheckWorker.enqueue(context, goalWeight.getUserId());
+        }));
     }
 
     // Update the goal weight
     public void updateGoalWeight(GoalWeight goalWeight) {
-        weightDao.updateGoalWeight(goalWeight);
+        writeExecutor.execute(TraceSections.wrap("Repository.updateGoalWeight", () -> {
+            weightDao.updateGoalWeight(goalWeight);
+            userChangeTracker.onUserChanged(goalWeight.getUserId());
+            GoalCheckWorker.enqueue(context, goalWeight.getUserId());
+        }));
+    }
+
+    // Get the user's goal weight if their latest weight has reached it, otherwise null. Reads on the
+    // calling thread so it is only for background work such as GoalCheckWorker.
+    public Float getReachedGoalWeight(long userId) {
+        return weightDao.getReachedGoalWeight(userId);
+    }
+
+    // The logged in user and SMS settings, loaded in the background and updated when they change
+    public LiveData<UserSettings> getSettings() {
+        return settingsStore.getSettings();
     }
 
-    // Store the logged in user ID to a SharedPreferences file then set the value of the
-    // MutableLiveData variable so we can start retrieving weight data
-    public void setLoggedInUserId(long userId, Context context) {
-        SharedPreferences sharedPref = context.getSharedPreferences("AuthUser", Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = sharedPref.edit();
-        editor.putLong("userId", userId);
-        editor.apply();
+    // Change any of the settings in one background write, see SettingsStore.edit
+    public void editSettings(Consumer<UserSettings> changes) {
+        settingsStore.edit(changes);
+    }
+
+    // Save the logged in user ID then set the value of the MutableLiveData variable so we can
+    // start retrieving weight data
+    public void setLoggedInUserId(long userId) {
+        settingsStore.edit(settings -> settings.setLoggedInUserId(userId));
         loggedInUserId.setValue(userId);
     }
 
     // Get the logged in user ID
     public MutableLiveData<Long> getLoggedInUserId() { return loggedInUserId; }
 
-    // Clear the user ID from shared preference file and the mutable live data variable.
+    // Clear the saved user ID and the mutable live data variable.
     // This will log us out and cause the log in screen to be shown.
-    public void logOutUser(Context context) {
-        SharedPreferences sharedPref = context.getApplicationContext().getSharedPreferences("AuthUser", Context.MODE_PRIVATE);
-        sharedPref.edit().clear().apply();
+    public void logOutUser() {
+        settingsStore.edit(settings -> settings.setLoggedInUserId(null));
         loggedInUserId.setValue(null);
     }
 
-    //Get the user from the database when logging in
-    public User loginUser(String username, String password) {
-        return userDao.loginUser(username, password);
+    // Log the user in, or register them if nobody has the username yet. Passwords are hashed on
+    // their own thread so the slow key derivation doesn't hold up other reads and writes, and
+    // one login runs at a time so two registrations can't race for the same username.
+    public void loginOrRegister(String username, String password, Callback<LoginResult> callback) {
+        passwordExecutor.execute(TraceSections.wrap("Repository.loginOrRegister",
+                () -> postResult(callback, loginOrRegister(username, password))));
+    }
+
+    private LoginResult loginOrRegister(String username, String password) {
+        User user = userDao.getUserByUsername(username);
+        if (user == null) {
+            User newUser = new User();
+            newUser.setUsername(username);
+            newUser.setPassword(passwordHasher.hash(password));
+            return new LoginResult(LoginResult.Status.REGISTERED, userDao.registerUser(newUser));
+        }
+        if (!passwordHasher.verify(password, user.getPassword())) {
+            return new LoginResult(LoginResult.Status.WRONG_PASSWORD, 0);
+        }
+        // Users from before passwords were hashed are moved over the first time they log in
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            userDao.updatePassword(user.getId(), passwordHasher.hash(password));
+        }
+        return new LoginResult(LoginResult.Status.LOGGED_IN, user.getId());
+    }
+
+    // Run a write to the weights table on the write thread. The caches are cleared as soon as the
+    // write commits so a read that follows it never sees the old weights.
+    private void writeWeights(Runnable write) {
+        writeExecutor.execute(TraceSections.wrap("Repository.writeWeights", () -> {
+            try {
+                write.run();
+            } finally {
+                weightSeriesCache.invalidate();
+                weightCache.invalidate();
+            }
+        }));
+    }
+
+    // Called on the write thread after a change to the user's weights has committed, once per
+    // user for a batch from the write queue and never for a batch that rolled back. The stats are
+    // updated for the changed days, the user's queries run again and the goal is checked in the
+    // background.
+    private void onWeightsChanged(long userId, int... recordedDays) {
+        weightStatsTracker.onWeightsChanged(userId, recordedDays);
+        userChangeTracker.onUserChanged(userId);
+        GoalCheckWorker.enqueue(context, userId);
+    }
+
+    // Wait for every write queued so far to finish. Edits still waiting in the write queue are
+    // not included until the queue flushes them.
+    @VisibleForTesting
+    public void awaitWrites(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        try {
+            writeExecutor.submit(() -> {}).get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Stop the repository's threads and close its database. Only for repositories made with
+    // create or passed to setInstance, the shared app repository lives as long as the process.
+    public void close() {
+        writeExecutor.shutdown();
+        readExecutor.shutdown();
+        passwordExecutor.shutdown();
+        try {
+            writeExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        database.close();
     }
 
-    // add a new user to the database
-    public long registerUser(User user) {
-        return userDao.registerUser(user);
+    // Send the result of a background operation back to the main thread
+    private <T> void postResult(Callback<T> callback, T result) {
+        mainThreadHandler.post(() -> callback.onResult(result));
     }
 }
@@ -0,0 +1,167 @@
+package com.josephlimbert.weighttracker.repo;
+
+import android.os.Handler;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.josephlimbert.weighttracker.model.Event;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Collects weight edits and deletes made within a short window and writes them in one
+// transaction, so a burst of deletes causes one invalidation and one reload of the list instead
+// of one per tap. Edits of the same weight are merged and only the last one is written.
+//
+// Until the batch commits, the writes are published as PendingWrites so the list can show them
+// straight away. If the transaction fails none of the batch is written, the pending writes are
+// dropped so the list shows the database again, and the error is published.
+//
+// Every method must be called on the handler's thread, normally the main thread.
+public class WeightWriteQueue {
+    public static final long DEFAULT_WINDOW_MILLIS = 300;
+
+    private static class Op {
+        final Weight weight;
+        final boolean delete;
+
+        Op(Weight weight, boolean delete) {
+            this.weight = weight;
+            this.delete = delete;
+        }
+    }
+
+    private final WeightWriter weightWriter;
+    private final Executor writeExecutor;
+    private final Handler handler;
+    private final long windowMillis;
+    private final Runnable flushRunnable = this::flush;
+
+    // Writes waiting for the window to close, and every write the UI should show by ID. A write
+    // stays in pending after it commits until the list has reloaded with it, see clearConfirmed.
+    private final LinkedHashMap<Long, Op> queued = new LinkedHashMap<>();
+    private final Map<Long, Op> pending = new HashMap<>();
+    private final Set<Op> confirmed = new HashSet<>();
+    private boolean flushScheduled;
+
+    private final MutableLiveData<PendingWrites> pendingWrites = new MutableLiveData<>(PendingWrites.EMPTY);
+    private final MutableLiveData<Event<Exception>> writeErrors = new MutableLiveData<>();
+
+    public WeightWriteQueue(WeightWriter weightWriter, Executor writeExecutor, Handler handler, long windowMillis) {
+        this.weightWriter = weightWriter;
+        this.writeExecutor = writeExecutor;
+        this.handler = handler;
+        this.windowMillis = windowMillis;
+    }
+
+    public LiveData<PendingWrites> getPendingWrites() {
+        return pendingWrites;
+    }
+
+    public LiveData<Event<Exception>> getWriteErrors() {
+        return writeErrors;
+    }
+
+    public void updateWeight(Weight weight) {
+        enqueue(new Op(weight, false));
+    }
+
+    public void deleteWeight(Weight weight) {
+        enqueue(new Op(weight, true));
+    }
+
+    private void enqueue(Op op) {
+        long id = op.weight.getId();
+        Op previous = queued.get(id);
+        // Nothing can be written to a weight after it is deleted
+        if (previous != null && previous.delete) return;
+
+        queued.put(id, op);
+        pending.put(id, op);
+        publish();
+
+        // The window starts at the first write so a steady stream of taps can't hold writes back
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, windowMillis);
+        }
+    }
+
+    // Write everything queued now without waiting for the window to close
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        if (queued.isEmpty()) return;
+
+        List<Op> batch = new ArrayList<>(queued.values());
+        queued.clear();
+        writeExecutor.execute(() -> {
+            try {
+                // The writer tells its listener about the batch only once it has committed
+                weightWriter.runInTransaction(() -> {
+                    for (Op op : batch) {
+                        if (op.delete) {
+                            weightWriter.deleteWeight(op.weight);
+                        } else {
+                            weightWriter.updateWeight(op.weight);
+                        }
+                    }
+                });
+                handler.post(() -> confirm(batch));
+            } catch (RuntimeException e) {
+                handler.post(() -> rollBack(batch, e));
+            }
+        });
+    }
+
+    // Drop the writes that have committed. Called when the list has reloaded from the database
+    // so it already shows them. Returns true if the pending writes changed.
+    public boolean clearConfirmed() {
+        if (confirmed.isEmpty()) return false;
+        for (Op op : confirmed) {
+            pending.remove(op.weight.getId(), op);
+        }
+        confirmed.clear();
+        publish();
+        return true;
+    }
+
+    private void confirm(List<Op> batch) {
+        for (Op op : batch) {
+            // A newer write to the same weight is still pending
+            if (pending.get(op.weight.getId()) == op) confirmed.add(op);
+        }
+    }
+
+    private void rollBack(List<Op> batch, Exception e) {
+        for (Op op : batch) {
+            pending.remove(op.weight.getId(), op);
+        }
+        publish();
+        // Kept until an observer consumes it, so it is neither lost nor shown again by a new list
+        writeErrors.setValue(new Event<>(e));
+    }
+
+    private void publish() {
+        Map<Long, Weight> updates = new HashMap<>();
+        Set<Long> deletes = new HashSet<>();
+        for (Op op : pending.values()) {
+            if (op.delete) {
+                deletes.add(op.weight.getId());
+            } else {
+                updates.put(op.weight.getId(), op.weight);
+            }
+        }
+        pendingWrites.setValue(pending.isEmpty() ? PendingWrites.EMPTY
+                : new PendingWrites(Collections.unmodifiableMap(updates), Collections.unmodifiableSet(deletes)));
+    }
+}
@@ -0,0 +1,119 @@
+package com.josephlimbert.weighttracker.repo;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Writes weights and updates the rollups for the changed buckets in the same transaction, so
+// the rollup table never disagrees with the weights table.
+public class WeightWriter {
+    // Told which of a user's recorded days changed once a write has committed
+    public interface OnWeightsChangedListener {
+        void onWeightsChanged(long userId, int... recordedDays);
+    }
+
+    private final WeightTrackerDatabase database;
+    private final WeightDao weightDao;
+    private final RollupUpdater rollupUpdater;
+    private final OnWeightsChangedListener listener;
+    // The days changed by each user inside runInTransaction on this thread, told to the listener
+    // once the whole transaction has committed
+    private final ThreadLocal<Map<Long, Set<Integer>>> batchChanges = new ThreadLocal<>();
+
+    public WeightWriter(WeightTrackerDatabase database, RollupUpdater rollupUpdater) {
+        this(database, rollupUpdater, (userId, recordedDays) -> {});
+    }
+
+    public WeightWriter(WeightTrackerDatabase database, RollupUpdater rollupUpdater, OnWeightsChangedListener listener) {
+        this.database = database;
+        this.weightDao = database.timedWeightDao();
+        this.rollupUpdater = rollupUpdater;
+        this.listener = listener;
+    }
+
+    // Adding a weight with an existing ID replaces it, so the replaced weight's bucket is refreshed too
+    public void addWeight(Weight weight) {
+        Weight oldWeight = database.runInTransaction(() -> {
+            Weight replaced = weight.getId() != 0 ? weightDao.getWeight(weight.getId()) : null;
+            weightDao.addWeight(weight);
+            if (replaced != null) {
+                rollupUpdater.refresh(replaced.getUserId(), replaced.getRecordedDay());
+            }
+            rollupUpdater.refresh(weight.getUserId(), weight.getRecordedDay());
+            return replaced;
+        });
+        notifyChanged(oldWeight, weight);
+    }
+
+    // The weight's old date is read first so the bucket it moved out of is also recalculated
+    public void updateWeight(Weight weight) {
+        Weight oldWeight = database.runInTransaction(() -> {
+            Weight stored = weightDao.getWeight(weight.getId());
+            weightDao.updateWeight(weight);
+            if (stored != null) {
+                rollupUpdater.refresh(stored.getUserId(), stored.getRecordedDay());
+            }
+            rollupUpdater.refresh(weight.getUserId(), weight.getRecordedDay());
+            return stored;
+        });
+        notifyChanged(oldWeight, weight);
+    }
+
+    // The stored weight is read first in case the date on the deleted weight is out of date
+    public void deleteWeight(Weight weight) {
+        Weight oldWeight = database.runInTransaction(() -> {
+            Weight stored = weightDao.getWeight(weight.getId());
+            weightDao.deleteWeight(weight);
+            if (stored != null) {
+                rollupUpdater.refresh(stored.getUserId(), stored.getRecordedDay());
+            }
+            return stored;
+        });
+        notifyChanged(oldWeight, null);
+    }
+
+    // Run several writes in one transaction. The listener is told about them only after the
+    // transaction commits, once per user, and not at all if it rolls back.
+    public void runInTransaction(Runnable writes) {
+        Map<Long, Set<Integer>> changes = new LinkedHashMap<>();
+        batchChanges.set(changes);
+        try {
+            database.runInTransaction(writes);
+        } finally {
+            batchChanges.remove();
+        }
+        for (Map.Entry<Long, Set<Integer>> entry : changes.entrySet()) {
+            int[] recordedDays = new int[entry.getValue().size()];
+            int i = 0;
+            for (int day : entry.getValue()) recordedDays[i++] = day;
+            listener.onWeightsChanged(entry.getKey(), recordedDays);
+        }
+    }
+
+    private void notifyChanged(Weight oldWeight, Weight newWeight) {
+        if (oldWeight != null && (newWeight == null || oldWeight.getUserId() != newWeight.getUserId())) {
+            changed(oldWeight.getUserId(), oldWeight.getRecordedDay());
+            oldWeight = null;
+        }
+        if (newWeight == null) return;
+        if (oldWeight != null) {
+            changed(newWeight.getUserId(), oldWeight.getRecordedDay(), newWeight.getRecordedDay());
+        } else {
+            changed(newWeight.getUserId(), newWeight.getRecordedDay());
+        }
+    }
+
+    // Tell the listener now, or after the batch commits if the write is part of one
+    private void changed(long userId, int... recordedDays) {
+        Map<Long, Set<Integer>> changes = batchChanges.get();
+        if (changes == null) {
+            listener.onWeightsChanged(userId, recordedDays);
+            return;
+        }
+        Set<Integer> days = changes.computeIfAbsent(userId, key -> new TreeSet<>());
+        for (int day : recordedDays) days.add(day);
+    }
+}
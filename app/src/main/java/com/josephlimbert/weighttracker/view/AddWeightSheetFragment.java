@@ -1,7 +1,5 @@
 package com.josephlimbert.weighttracker.view;
 
-import android.content.DialogInterface;
-import android.icu.util.TimeZone;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -21,11 +19,14 @@ import com.josephlimbert.weighttracker.model.Weight;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
 import com.josephlimbert.weighttracker.viewmodel.WeightViewModel;
 
-import android.icu.text.DateFormat;
 import android.widget.TextView;
 
-import java.text.ParseException;
-import java.util.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
 import java.util.Locale;
 
 public class AddWeightSheetFragment extends BottomSheetDialogFragment {
@@ -33,6 +34,8 @@ public class AddWeightSheetFragment extends BottomSheetDialogFragment {
     EditText weightText;
     WeightViewModel weightViewModel;
     long userId;
+    // The day picked for the weight. The date text only shows it and is never parsed back.
+    LocalDate selectedDate;
 
     Weight weight;
 
@@ -45,7 +48,6 @@ public class AddWeightSheetFragment extends BottomSheetDialogFragment {
         datePickerText = rootView.findViewById(R.id.date_input_edit_text);
         weightText = rootView.findViewById(R.id.weight_input_edit_text);
         TextView sheetLabel = rootView.findViewById(R.id.weight_sheet_label);
-        String todayString = dateToString(new Date());
         Button submitButton = rootView.findViewById(R.id.add_weight_submit_button);
         weightViewModel = new ViewModelProvider(requireActivity()).get(WeightViewModel.class);
         UserViewModel userViewModel = new ViewModelProvider(requireActivity()).get(UserViewModel.class);
@@ -54,19 +56,31 @@ public class AddWeightSheetFragment extends BottomSheetDialogFragment {
         // Will set the local userId variable when the live data is updated.
         userViewModel.getLoggedInUserId().observe(getViewLifecycleOwner(), id -> userId = id);
 
-        // Set the date on the date picker to today's date
-        datePickerText.setText(todayString);
+        // Set the date on the date picker to today's date, or the date picked before the sheet was recreated
+        setSelectedDate(savedInstanceState != null
+                ? LocalDate.ofEpochDay(savedInstanceState.getLong("selectedDay"))
+                : LocalDate.now());
 
         // If we are editing a weight then a weight ID will be passed as an argument
-        // Update views with data from the existing weight
-        if (getArguments() != null) {
+        // Update views with data from the existing weight. Submitting is disabled until it has
+        // loaded, otherwise the edit would be saved as a new weight.
+        if (isEditing()) {
             long weightId = getArguments().getLong("weightId");
-            weight = weightViewModel.getWeight(weightId);
-            if (weight != null) {
-                datePickerText.setText(dateToString(weight.getRecordedDate()));
+            submitButton.setEnabled(false);
+            weightViewModel.getWeight(weightId, result -> {
+                // The sheet may have been closed before the weight finished loading
+                if (getView() == null) return;
+                // The weight was deleted while it was loading, there is nothing left to edit
+                if (result == null) {
+                    dismiss();
+                    return;
+                }
+                weight = result;
+                if (savedInstanceState == null) setSelectedDate(LocalDate.ofEpochDay(weight.getRecordedDay()));
                 weightText.setText(String.valueOf(weight.getWeight()));
                 sheetLabel.setText(R.string.edit_weight_label);
-            }
+                submitButton.setEnabled(true);
+            });
         }
 
         datePickerText.setOnClickListener(this::showDatePicker);
@@ -74,41 +88,38 @@ public class AddWeightSheetFragment extends BottomSheetDialogFragment {
         return rootView;
     }
 
-    @Override
-    public void onDismiss(@NonNull DialogInterface dialog) {
-        super.onDismiss(dialog);
-        // After adding a new weight we check if the goal weight has been reached.
-        weightViewModel.checkGoalReached(Float.parseFloat(weightText.getText().toString()));
-    }
-
     // Function called to submit the weight entered
     public void submitWeight(View v) {
+        // Never add a weight from the edit sheet, even if the button was tapped before it was disabled
+        if (isEditing() && weight == null) return;
         if (weightText.getText().toString().isEmpty()){
             weightText.setError(getString(R.string.empty_weight_error));
         } else {
             try {
-                Date parsedDate = stringToDate(datePickerText.getText().toString());
                 float parsedWeight = Float.parseFloat(weightText.getText().toString());
+                ZoneId zone = ZoneId.systemDefault();
+                long startOfSelectedDay = selectedDate.atStartOfDay(zone).toInstant().toEpochMilli();
 
                 // If we are editing a weight then update the current weight
                 // Else we add a new weight
                 if (weight != null) {
                     weight.setWeight(parsedWeight);
-                    weight.setRecordedDate(parsedDate);
+                    // Keep the exact time the weight was recorded unless the user picked another day
+                    if (weight.getRecordedDay() != selectedDate.toEpochDay()) {
+                        weight.setRecorded(startOfSelectedDay, zone);
+                    }
                     weightViewModel.updateWeight(weight);
                     dismiss();
                 } else {
                     Weight newWeight = new Weight();
                     newWeight.setWeight(parsedWeight);
-                    newWeight.setRecordedDate(parsedDate);
+                    newWeight.setRecorded(startOfSelectedDay, zone);
                     newWeight.setUserId(userId);
                     weightViewModel.addWeight(newWeight);
                     dismiss();
                 }
             } catch (NumberFormatException e) {
                 weightText.setError(getString(R.string.weight_number_error));
-            } catch (ParseException e) {
-                throw new RuntimeException(e);
             }
         }
     }
@@ -117,33 +128,29 @@ public class AddWeightSheetFragment extends BottomSheetDialogFragment {
     public void showDatePicker(View v) {
         MaterialDatePicker.Builder<Long> datePickerBuilder = MaterialDatePicker.Builder.datePicker();
         datePickerBuilder.setTitleText(R.string.select_date);
-        if (!datePickerText.getText().toString().isEmpty()) {
-            try {
-                Date parsedDate = stringToDate(datePickerText.getText().toString());
-                datePickerBuilder.setSelection(parsedDate.getTime());
-
-            } catch (ParseException e) {
-                throw new RuntimeException(e);
-            }
-        }
+        // The picker selects UTC midnight of a day, so the day is converted in UTC both ways
+        datePickerBuilder.setSelection(selectedDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli());
         MaterialDatePicker<Long> datePicker = datePickerBuilder.build();
-        MaterialPickerOnPositiveButtonClickListener<Long> clickListener = selection -> {
-            DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, Locale.getDefault());
-            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-            String selectedDate = dateFormat.format(new Date(selection));
-            datePickerText.setText(selectedDate);
-        };
+        MaterialPickerOnPositiveButtonClickListener<Long> clickListener = selection ->
+                setSelectedDate(Instant.ofEpochMilli(selection).atZone(ZoneOffset.UTC).toLocalDate());
         datePicker.addOnPositiveButtonClickListener(clickListener);
         datePicker.show(getParentFragmentManager(), "date picker");
     }
 
-    // Function to convert a date to a string
-    private String dateToString(Date date) {
-        return DateFormat.getDateInstance(DateFormat.MEDIUM).format(date);
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong("selectedDay", selectedDate.toEpochDay());
+    }
+
+    // The sheet edits an existing weight when it was opened with a weight ID
+    private boolean isEditing() {
+        return getArguments() != null && getArguments().containsKey("weightId");
     }
 
-    // Function to convert a string to a date
-    private Date stringToDate(String dateString) throws ParseException {
-        return DateFormat.getDateInstance().parse(dateString);
+    // Store the selected day and show it in the date text
+    private void setSelectedDate(LocalDate date) {
+        selectedDate = date;
+        datePickerText.setText(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(Locale.getDefault()).format(date));
     }
 }
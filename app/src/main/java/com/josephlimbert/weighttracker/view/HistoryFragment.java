@@ -3,18 +3,41 @@ package com.josephlimbert.weighttracker.view;
 import android.os.Bundle;
 
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
+import com.josephlimbert.weighttracker.viewmodel.WeightViewModel;
 
 public class HistoryFragment extends Fragment {
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
+        TraceSections.begin("HistoryFragment.onCreateView");
         // Inflate the layout for this fragment
-        return inflater.inflate(R.layout.fragment_history, container, false);
+        View rootView = inflater.inflate(R.layout.fragment_history, container, false);
+
+        WeightChartView chart = rootView.findViewById(R.id.weight_chart);
+        WeightViewModel weightViewModel = new ViewModelProvider(requireActivity()).get(WeightViewModel.class);
+        UserViewModel userViewModel = new ViewModelProvider(requireActivity()).get(UserViewModel.class);
+
+        // The chart can only load points once the user is known
+        userViewModel.getLoggedInUserId().observe(getViewLifecycleOwner(), userId -> {
+            weightViewModel.setLoggedInUserId(userId);
+            chart.setOnRangeRequestListener(weightViewModel::loadChart);
+        });
+        weightViewModel.getChartPoints().observe(getViewLifecycleOwner(), chart::setPoints);
+
+        // Reload the visible range when the user's weights change. The dashboard can't be used for
+        // this because it doesn't emit when an edit leaves the starting and current weights alone.
+        weightViewModel.getWeightChanges.observe(getViewLifecycleOwner(), version -> chart.reload());
+
+        TraceSections.end();
+        return rootView;
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,10 @@
 package com.josephlimbert.weighttracker.view;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.icu.text.DateFormat;
 import android.os.Bundle;
 
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
-import android.telephony.SmsManager;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,18 +13,33 @@ import android.widget.TextView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.WeightStats;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
+import com.josephlimbert.weighttracker.viewmodel.WeightFormatter;
 import com.josephlimbert.weighttracker.viewmodel.WeightViewModel;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
 import java.util.Locale;
 
 import me.tankery.lib.circularseekbar.CircularSeekBar;
 
 public class HomeFragment extends Fragment {
+    private TextView sevenDayAverageText;
+    private TextView thirtyDayAverageText;
+    private TextView trendWeightText;
+    private TextView weeklyRateText;
+    private TextView projectedGoalDateText;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
+        TraceSections.begin("HomeFragment.onCreateView");
         // Inflate the layout for this fragment
         View rootView = inflater.inflate(R.layout.fragment_home, container, false);
         // Initialize variables
@@ -44,6 +54,11 @@ public class HomeFragment extends Fragment {
         TextView startDateText = rootView.findViewById(R.id.start_date_text);
         CircularSeekBar progressBar = rootView.findViewById(R.id.progress_bar);
         Button setGoalButton = rootView.findViewById(R.id.set_goal_button);
+        sevenDayAverageText = rootView.findViewById(R.id.seven_day_average_text);
+        thirtyDayAverageText = rootView.findViewById(R.id.thirty_day_average_text);
+        trendWeightText = rootView.findViewById(R.id.trend_weight_text);
+        weeklyRateText = rootView.findViewById(R.id.weekly_rate_text);
+        projectedGoalDateText = rootView.findViewById(R.id.projected_goal_date_text);
         WeightViewModel weightViewModel = new ViewModelProvider(requireActivity()).get(WeightViewModel.class);
         UserViewModel userViewModel = new ViewModelProvider(requireActivity()).get(UserViewModel.class);
 
@@ -62,78 +77,77 @@ public class HomeFragment extends Fragment {
                 weightViewModel.setLoggedInUserId(id);
         });
 
-        // Get the goal weight and set the text on the view. If no goal weight is set then we display N/A
-        // and show a button to add a goal weight
-        weightViewModel.getGoalWeight.observe(getViewLifecycleOwner(), goalWeight -> {
-            if (goalWeight != null) {
-                String weightText = goalWeight.getWeight() + " Lbs";
+        // Bind every stat from the same dashboard emission. Set to N/A if there is no weight data.
+        weightViewModel.getDashboard.observe(getViewLifecycleOwner(), dashboard -> {
+            if (dashboard == null) return;
+
+            // Set the goal weight text. If no goal weight is set then we display N/A
+            // and show a button to add a goal weight
+            if (dashboard.getGoalWeight() != null) {
+                String weightText = dashboard.getGoalWeight() + " Lbs";
                 goalWeightText.setText(weightText);
                 setGoalButton.setVisibility(View.GONE);
             } else {
                 goalWeightText.setText("N/A");
                 setGoalButton.setVisibility(View.VISIBLE);
             }
-        });
 
-        // Get the current weight and set the text on the view. Set to N/A if no weight data.
-        weightViewModel.getCurrentWeight.observe(getViewLifecycleOwner(), weight -> {
-            String weightText = weight != null ? weight.getWeight() + " Lbs" : "N/A";
-            currentWeightText.setText(weightText);
-        });
-        // Get the starting weight and set the text on the view. Set to N/A if no weight data.
-        weightViewModel.getStartingWeight.observe(getViewLifecycleOwner(), weight -> {
-            String weightText = weight != null ? weight.getWeight() + " Lbs" : "N/A";
-            startingWeightText.setText(weightText);
-            String startDateString = weight != null ? DateFormat.getDateInstance(DateFormat.MEDIUM, Locale.getDefault()).format(weight.getRecordedDate()) : "N/A";
+            String currentText = dashboard.getCurrentWeight() != null ? dashboard.getCurrentWeight() + " Lbs" : "N/A";
+            currentWeightText.setText(currentText);
+
+            String startingText = dashboard.getStartingWeight() != null ? dashboard.getStartingWeight() + " Lbs" : "N/A";
+            startingWeightText.setText(startingText);
+            String startDateString = dashboard.getStartDate() != null ? DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM)
+                    .withLocale(Locale.getDefault())
+                    .format(Instant.ofEpochMilli(dashboard.getStartDate()).atZone(ZoneId.systemDefault())) : "N/A";
             startDateText.setText(startDateString);
-        });
-        // Get the percentage of weight loss and set the text on the view.
-        weightViewModel.getTotalLossPercentage.observe(getViewLifecycleOwner(), total -> {
-            String percentText = total.intValue() + "%";
-            progressBar.setProgress(total);
+
+            // Set the percentage of weight loss and the progress bar
+            float totalPercentage = dashboard.getTotalLossPercentage();
+            String percentText = (int) totalPercentage + "%";
+            progressBar.setProgress(totalPercentage);
             progressPercentText.setText(percentText);
-        });
-        // get the weight loss in pounds and set the text on the view
-        weightViewModel.getTotalLossWeight.observe(getViewLifecycleOwner(), total -> {
-            String weightText = total + " Lbs";
-            totalLossText.setText(weightText);
-        });
-        // get the weight loss in pounds and set the text on the view. Set to N/A if no data returned
-        weightViewModel.getTargetLossWeight.observe(getViewLifecycleOwner(), weight -> {
-            String weightText = weight != null ? weight + " Lbs" : "N/A";
-            targetLossText.setText(weightText);
-        });
-        // get the weight left to lose and set the text on the view
-        weightViewModel.getTargetLeftWeight.observe(getViewLifecycleOwner(), weight -> {
-            String weightText = weight + " Lbs";
-            targetLeftText.setText(weightText);
-        });
 
-        // observe the goal reached live data. if it is true then we send the sms to the user.
-        weightViewModel.goalReached.observe(getViewLifecycleOwner(), result -> {
-            if (result)
-                sendSms();
+            // Set the weight lost so far, the weight loss target and the weight left to lose
+            String totalLossString = dashboard.getTotalLossWeight() + " Lbs";
+            totalLossText.setText(totalLossString);
+            String targetLossString = dashboard.getTargetLossWeight() + " Lbs";
+            targetLossText.setText(targetLossString);
+            String targetLeftString = dashboard.getTargetLeftWeight() + " Lbs";
+            targetLeftText.setText(targetLeftString);
+
+            // The projected goal date depends on the goal weight too
+            bindStats(weightViewModel.getWeightStats.getValue(), dashboard);
+
+            // The saved dashboard from the last launch is drawn first. The screen is fully drawn
+            // once the values from the database replace it.
+            if (!dashboard.isSnapshot()) requireActivity().reportFullyDrawn();
         });
 
+        weightViewModel.getWeightStats.observe(getViewLifecycleOwner(), stats ->
+                bindStats(stats, weightViewModel.getDashboard.getValue()));
+
+        TraceSections.end();
         return rootView;
     }
 
-    // Function that will send an SMS message to the provided phone number once the goal is reached
-    private void sendSms() {
-        // Get the stored phone number from shared preferences
-        SharedPreferences sharedPref = requireActivity().getPreferences(Context.MODE_PRIVATE);
-        String phoneNumber = sharedPref.getString("userPhoneNumber", "");
-        // if the phone number is empty we do nothing and exit
-        if (phoneNumber.isBlank()) return;
-        // Try to send the sms to the provided phone number. If the user denied the permissions or
-        // the message cannot be sent we log the error.
-        try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, "Congratulations on reaching your goal weight!", null, null);
-            Log.d("SMS", "SMS sent successfully to " + phoneNumber);
-        } catch (Exception e) {
-            Log.d("SMS", "SMS failed: " + e.getMessage());
-        }
+    // Set the moving averages, trend and projected goal date. Set to N/A if there isn't enough data.
+    private void bindStats(WeightStats stats, Dashboard dashboard) {
+        if (stats == null) return;
+        Locale locale = Locale.getDefault();
+
+        sevenDayAverageText.setText(stats.getSevenDayAverage() != null
+                ? WeightFormatter.formatAverageWeight(stats.getSevenDayAverage(), locale) : "N/A");
+        thirtyDayAverageText.setText(stats.getThirtyDayAverage() != null
+                ? WeightFormatter.formatAverageWeight(stats.getThirtyDayAverage(), locale) : "N/A");
+        trendWeightText.setText(stats.getTrendWeight() != null
+                ? WeightFormatter.formatAverageWeight(stats.getTrendWeight(), locale) : "N/A");
+        weeklyRateText.setText(stats.getWeeklyRate() != null
+                ? WeightFormatter.formatWeeklyRate(stats.getWeeklyRate(), locale) : "N/A");
+
+        LocalDate projectedDate = stats.getProjectedGoalDate(dashboard != null ? dashboard.getGoalWeight() : null);
+        projectedGoalDateText.setText(projectedDate != null
+                ? DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale).format(projectedDate) : "N/A");
     }
 
     // Function to show the add weight sheet
@@ -1,35 +1,37 @@
 package com.josephlimbert.weighttracker.view;
 
-import android.icu.text.DateFormat;
-import android.icu.text.SimpleDateFormat;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
+
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.josephlimbert.weighttracker.R;
-import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.model.WeightListItem;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
 import com.josephlimbert.weighttracker.viewmodel.WeightViewModel;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
-
 public class ListFragment extends Fragment {
     private RecyclerView recyclerView;
+    private WeightListAdapter adapter;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
+        TraceSections.begin("ListFragment.onCreateView");
         // Inflate the layout for this fragment
         View rootView = inflater.inflate(R.layout.fragment_list, container, false);
 
@@ -41,93 +43,139 @@ public class ListFragment extends Fragment {
         // Get the userId from the user view model and set it on the weight view model so we can load data
         userViewModel.getLoggedInUserId().observe(getViewLifecycleOwner(), weightViewModel::setLoggedInUserId);
 
-        // Get the weight list and send it to a recycler view
-        weightViewModel.getWeightList.observe(getViewLifecycleOwner(), weights -> recyclerView.setAdapter(new WeightListAdapter(weights, weightViewModel)));
+        // Page the weight list into the recycler view. Only the pages near the screen are loaded.
+        // The adapter lives as long as the fragment. Each new page of data is diffed against the
+        // current list on a background thread and only the rows that changed are rebound.
+        if (adapter == null) {
+            adapter = new WeightListAdapter(weightViewModel, getParentFragmentManager());
+            // Hold the saved scroll position until the first page arrives instead of dropping it
+            adapter.setStateRestorationPolicy(RecyclerView.Adapter.StateRestorationPolicy.PREVENT_WHEN_EMPTY);
+        }
+        WeightListAdapter adapter = this.adapter;
+        // Row changes never resize the list itself so they don't need a full layout pass
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setAdapter(adapter);
+        weightViewModel.getWeightPages.observe(getViewLifecycleOwner(), pagingData ->
+                adapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
+
+        // Edits and deletes are shown before they are written. Tell the user if they were undone.
+        weightViewModel.getWriteErrors().observe(getViewLifecycleOwner(), event -> {
+            if (event.consume() != null) Toast.makeText(requireContext(), R.string.write_failed, Toast.LENGTH_LONG).show();
+        });
 
         // add a divider between each weight on the recycler view list
         DividerItemDecoration divider = new DividerItemDecoration(recyclerView.getContext(),
                 DividerItemDecoration.VERTICAL);
         recyclerView.addItemDecoration(divider);
 
+        TraceSections.end();
         return rootView;
     }
 
-    private class WeightListAdapter extends RecyclerView.Adapter<WeightListHolder> {
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Detach the adapter so it doesn't keep the destroyed recycler view alive
+        recyclerView.setAdapter(null);
+        recyclerView = null;
+    }
+
+    // Weights are the same item if they have the same ID. The row only needs rebinding when
+    // the weight or date shown in it changed.
+    private static final DiffUtil.ItemCallback<WeightListItem> WEIGHT_DIFF_CALLBACK = new DiffUtil.ItemCallback<>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull WeightListItem oldItem, @NonNull WeightListItem newItem) {
+            return oldItem.getWeight().getId() == newItem.getWeight().getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull WeightListItem oldItem, @NonNull WeightListItem newItem) {
+            return Float.compare(oldItem.getWeight().getWeight(), newItem.getWeight().getWeight()) == 0
+                    && oldItem.getWeight().getRecordedDate() == newItem.getWeight().getRecordedDate();
+        }
+    };
+
+    // Static so tests can bind it to a recycler view without the fragment
+    static class WeightListAdapter extends PagingDataAdapter<WeightListItem, WeightListHolder> {
 
-        private final List<Weight> weightList;
         private final WeightViewModel viewModel;
-        private final FragmentManager fragmentManager = getParentFragmentManager();
+        private final FragmentManager fragmentManager;
+        // Counts created and bound rows, a bind count far above the rows shown means too many rebinds
+        private final MetricsRegistry metrics = MetricsRegistry.getInstance();
 
-        public WeightListAdapter(List<Weight> weightList, WeightViewModel viewModel) {
-            this.weightList = weightList;
+        public WeightListAdapter(WeightViewModel viewModel, FragmentManager fragmentManager) {
+            super(WEIGHT_DIFF_CALLBACK);
             this.viewModel = viewModel;
+            this.fragmentManager = fragmentManager;
         }
 
         @NonNull
         @Override
         public WeightListHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            LayoutInflater layoutInflater = LayoutInflater.from(getActivity());
-            return new WeightListHolder(layoutInflater, parent);
-        }
-
-        @Override
-        public void onBindViewHolder(WeightListHolder holder, int position) {
-            Weight weight = weightList.get(position);
-            holder.bind(weight, viewModel, fragmentManager);
-            holder.itemView.setTag(weight.getId());
+            TraceSections.begin("WeightListAdapter.onCreateViewHolder");
+            metrics.increment("ListFragment.createViewHolder");
+            LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
+            WeightListHolder holder = new WeightListHolder(layoutInflater, parent, viewModel, fragmentManager);
+            TraceSections.end();
+            return holder;
         }
 
         @Override
-        public int getItemCount() {
-            return weightList.size();
+        public void onBindViewHolder(@NonNull WeightListHolder holder, int position) {
+            // Placeholders are disabled so a loaded weight is always available
+            WeightListItem item = getItem(position);
+            if (item == null) return;
+            TraceSections.begin("WeightListAdapter.onBindViewHolder");
+            metrics.increment("ListFragment.bindViewHolder");
+            holder.bind(item);
+            TraceSections.end();
         }
     }
 
-    private static class WeightListHolder extends RecyclerView.ViewHolder {
+    // Views and click listeners are set up once when the holder is created. Binding only stores the
+    // item and sets its pre-formatted text, so scrolling doesn't allocate anything per row.
+    static class WeightListHolder extends RecyclerView.ViewHolder {
 
         private final TextView recordedWeightView;
         private final TextView dayOfWeekView;
         private final TextView dayOfMonthView;
+        private WeightListItem boundItem;
 
-        public WeightListHolder(LayoutInflater inflater, ViewGroup parent) {
+        public WeightListHolder(LayoutInflater inflater, ViewGroup parent, WeightViewModel viewModel, FragmentManager manager) {
             super(inflater.inflate(R.layout.list_item_weight, parent, false));
             // Initialize variables
             dayOfWeekView = itemView.findViewById(R.id.day_of_week);
             dayOfMonthView = itemView.findViewById(R.id.day_of_month);
             recordedWeightView = itemView.findViewById(R.id.weight);
-        }
-
-        public void bind(Weight weight, WeightViewModel viewModel, FragmentManager manager) {
-            // Initialize variables to format the date into the day of week and day
-            SimpleDateFormat dayOfMonthFormat = new SimpleDateFormat(DateFormat.DAY, Locale.getDefault());
-            SimpleDateFormat dayOfWeekFormat = new SimpleDateFormat(DateFormat.ABBR_WEEKDAY, Locale.getDefault());
-            Date recordedDate = weight.getRecordedDate();
-            String formattedDayOfWeek = dayOfWeekFormat.format(recordedDate);
-            String formattedDayOfMonth = dayOfMonthFormat.format(recordedDate);
-            String formattedWeight = weight.getWeight() + " Lbs";
-
-            // Set the view text of each weight view to the correct values
-            dayOfWeekView.setText(formattedDayOfWeek);
-            dayOfMonthView.setText(formattedDayOfMonth);
-            recordedWeightView.setText(formattedWeight);
-
-
             Button deleteButton = itemView.findViewById(R.id.delete_weight_button);
             Button editButton = itemView.findViewById(R.id.edit_weight_button);
 
-            // delete the weight when the delete button is clicked
-            deleteButton.setOnClickListener(v -> viewModel.deleteWeight(weight));
+            // delete the bound weight when the delete button is clicked
+            deleteButton.setOnClickListener(v -> {
+                if (boundItem != null) viewModel.deleteWeight(boundItem.getWeight());
+            });
 
-            // show add weight sheet when the edit button is clicked
+            // show add weight sheet for the bound weight when the edit button is clicked
             editButton.setOnClickListener(v -> {
+                if (boundItem == null) return;
                 AddWeightSheetFragment sheet = new AddWeightSheetFragment();
                 // create a bundle and send the weight ID to the sheet so we can edit the weight
                 Bundle bundle = new Bundle();
 
-                bundle.putLong("weightId", weight.getId());
+                bundle.putLong("weightId", boundItem.getWeight().getId());
                 sheet.setArguments(bundle);
                 sheet.show(manager, "edit weight");
             });
         }
+
+        public void bind(WeightListItem item) {
+            boundItem = item;
+
+            // Set the view text of each weight view to the correct values
+            dayOfWeekView.setText(item.getDayOfWeek());
+            dayOfMonthView.setText(item.getDayOfMonth());
+            recordedWeightView.setText(item.getWeightText());
+            itemView.setTag(item);
+        }
     }
-}
\ No newline at end of file
+}
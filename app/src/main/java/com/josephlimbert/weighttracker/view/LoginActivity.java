@@ -14,7 +14,7 @@ import androidx.core.view.WindowInsetsCompat;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.josephlimbert.weighttracker.R;
-import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.LoginResult;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
 
 public class LoginActivity extends AppCompatActivity {
@@ -22,6 +22,8 @@ public class LoginActivity extends AppCompatActivity {
     private UserViewModel userViewModel;
     private EditText usernameInput;
     private EditText passwordInput;
+    private Button loginButton;
+    private TextView guestButton;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -37,8 +39,8 @@ public class LoginActivity extends AppCompatActivity {
         userViewModel = new ViewModelProvider(this).get(UserViewModel.class);
         usernameInput = findViewById(R.id.username_input);
         passwordInput = findViewById(R.id.password_input);
-        Button loginButton = findViewById(R.id.login_submit_button);
-        TextView guestButton = findViewById(R.id.login_guest_button);
+        loginButton = findViewById(R.id.login_submit_button);
+        guestButton = findViewById(R.id.login_guest_button);
 
         loginButton.setOnClickListener(this::submitCredentials);
         guestButton.setOnClickListener(this::loginGuest);
@@ -49,45 +51,46 @@ public class LoginActivity extends AppCompatActivity {
         // do nothing if the username and password are not valid
         if (!validateFields()) return;
 
-        long userId;
         String username = usernameInput.getText().toString();
         String password = passwordInput.getText().toString();
-        // Try to retrieve the user from the database
-        //If the user doesn't exist we create a new one
-        User user = userViewModel.loginUser(username, password);
-        if (user == null) {
-            User newUser = new User();
-            newUser.setUsername(username);
-            newUser.setPassword(password);
-            userId = userViewModel.registerUser(newUser);
-        }
-        else userId = user.getId();
-        // log the user in and close the activity
-        userViewModel.setLoggedInUserId(userId, getApplicationContext());
-        finish();
+        loginOrRegister(username, password);
     }
 
     // This function will log in a user anonymously
     public void loginGuest(View v) {
         // Create an anonymous user
-        long userId;
+        // If an anonymous user already exits we log in as that user, otherwise we create
+        // a new anonymous user. This is required since we need a user ID for the weight db.
         String username = getString(R.string.anonymous_login);
         String password = getString(R.string.anonymous_login);
-        User user = userViewModel.loginUser(username, password);
-        // Check if an anonymous user already exits. If it does we log in as that user, otherwise
-        // we create a new anonymous user. This is required since we need a user ID for the weight db.
-        if (user == null) {
-            User newUser = new User();
-            newUser.setUsername(username);
-            newUser.setPassword(password);
-            userId = userViewModel.registerUser(newUser);
-        }
-        else userId = user.getId();
+        loginOrRegister(username, password);
+    }
 
-        userViewModel.setLoggedInUserId(userId, getApplicationContext());
+    // Log in, or create a new account if the username is new. The password is checked in the
+    // background so the buttons are disabled until it finishes.
+    private void loginOrRegister(String username, String password) {
+        setButtonsEnabled(false);
+        userViewModel.loginOrRegister(username, password, result -> {
+            if (result.getStatus() == LoginResult.Status.WRONG_PASSWORD) {
+                passwordInput.setError(getString(R.string.wrong_password));
+                setButtonsEnabled(true);
+                return;
+            }
+            completeLogin(result.getUserId());
+        });
+    }
+
+    // log the user in and close the activity
+    private void completeLogin(long userId) {
+        userViewModel.setLoggedInUserId(userId);
         finish();
     }
 
+    private void setButtonsEnabled(boolean enabled) {
+        loginButton.setEnabled(enabled);
+        guestButton.setEnabled(enabled);
+    }
+
     // This function checks that the username and password are not empty before submitting them.
     private boolean validateFields() {
         if (usernameInput.length() == 0) {
@@ -1,8 +1,6 @@
 package com.josephlimbert.weighttracker.view;
 
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 
 import androidx.activity.EdgeToEdge;
@@ -10,7 +8,12 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.metrics.performance.JankStats;
+import androidx.metrics.performance.PerformanceMetricsState;
+import androidx.metrics.performance.StateInfo;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 import androidx.navigation.fragment.NavHostFragment;
@@ -19,9 +22,16 @@ import androidx.navigation.ui.NavigationUI;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.model.UserSettings;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
 
 public class MainActivity extends AppCompatActivity {
+    // Key of the frame state that holds the screen being shown
+    private static final String SCREEN_STATE = "Screen";
+
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private JankStats jankStats;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,21 +58,63 @@ public class MainActivity extends AppCompatActivity {
 
             NavigationUI.setupActionBarWithNavController(this, navController, appBarConfig);
             NavigationUI.setupWithNavController(navView, navController);
+
+            // Tag every frame with the screen it was drawn on for the frame stats
+            PerformanceMetricsState.Holder frameState = PerformanceMetricsState.getHolderForHierarchy(navView);
+            navController.addOnDestinationChangedListener((controller, destination, arguments) -> {
+                PerformanceMetricsState state = frameState.getState();
+                if (state != null) state.putState(SCREEN_STATE, String.valueOf(destination.getLabel()));
+            });
         }
 
-        // Initialize user view model and get logged in user id from shared preferences
+        // Long pressing the settings tab opens the metrics screen
+        navView.findViewById(R.id.navigation_settings).setOnLongClickListener(v -> {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        });
+
+        // Record how long each frame took and which ones were janky while metrics are enabled
+        jankStats = JankStats.createAndTrack(getWindow(), frameData -> {
+            String screen = "Other";
+            for (StateInfo state : frameData.getStates()) {
+                if (SCREEN_STATE.equals(state.getKey())) screen = state.getValue();
+            }
+            metrics.recordFrame(screen, frameData.getFrameDurationUiNanos(), frameData.isJank());
+        });
+
+        // Initialize user view model and get the logged in user ID from the saved settings. They
+        // are read in the background, usually already loaded by RepositoryInitializer.
         UserViewModel userViewModel = new ViewModelProvider(this).get(UserViewModel.class);
-        SharedPreferences sharedPref = getApplicationContext().getSharedPreferences("AuthUser", Context.MODE_PRIVATE);
-        long userId = sharedPref.getLong("userId", -1);
-
-        // if user id is -1 then there is no logged in user so we show the log in activity.
-        // Otherwise, we store the logged in user ID in the user view model
-        if (userId == -1){
-            showLoginActivity();
-        } else {
-            userViewModel.setLoggedInUserId(userId, getApplicationContext());
-        }
+        LiveData<UserSettings> settings = userViewModel.getSettings();
+        settings.observe(this, new Observer<>() {
+            @Override
+            public void onChanged(UserSettings value) {
+                // Only the saved value at launch decides which screen to show
+                settings.removeObserver(this);
 
+                // if the user id is null then there is no logged in user so we show the log in
+                // activity. Otherwise, we store the logged in user ID in the user view model
+                if (value.getLoggedInUserId() == null) {
+                    showLoginActivity();
+                } else {
+                    userViewModel.setLoggedInUserId(value.getLoggedInUserId());
+                }
+            }
+        });
+    }
+
+    // Frames are only tracked while the activity is showing and metrics are enabled, so there is no
+    // per-frame work otherwise. Coming back from the metrics screen picks up a changed setting.
+    @Override
+    protected void onResume() {
+        super.onResume();
+        jankStats.setTrackingEnabled(metrics.isEnabled());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        jankStats.setTrackingEnabled(false);
     }
 
     @Override
@@ -0,0 +1,78 @@
+package com.josephlimbert.weighttracker.view;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+
+import com.google.android.material.materialswitch.MaterialSwitch;
+import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+
+import java.io.File;
+import java.io.IOException;
+
+// Hidden screen that turns metrics recording on or off and shows what was recorded. Opened by long
+// pressing the settings tab.
+public class MetricsActivity extends AppCompatActivity {
+
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private TextView metricsText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_metrics);
+        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.metrics), (v, insets) -> {
+            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
+            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
+            return insets;
+        });
+        // Initialize variables
+        MaterialSwitch enabledSwitch = findViewById(R.id.metrics_enabled);
+        Button refreshButton = findViewById(R.id.metrics_refresh_button);
+        Button resetButton = findViewById(R.id.metrics_reset_button);
+        Button dumpButton = findViewById(R.id.metrics_dump_button);
+        metricsText = findViewById(R.id.metrics_text);
+
+        enabledSwitch.setChecked(metrics.isEnabled());
+        enabledSwitch.setOnCheckedChangeListener((button, isChecked) -> {
+            metrics.setEnabled(isChecked);
+            showMetrics();
+        });
+
+        refreshButton.setOnClickListener(v -> showMetrics());
+
+        resetButton.setOnClickListener(v -> {
+            metrics.reset();
+            showMetrics();
+        });
+
+        // Write the metrics to a file that can be pulled with adb
+        dumpButton.setOnClickListener(v -> {
+            try {
+                File file = metrics.dumpToFile(this);
+                Toast.makeText(this, getString(R.string.metrics_saved, file.getPath()), Toast.LENGTH_LONG).show();
+            } catch (IOException e) {
+                Toast.makeText(this, getString(R.string.metrics_save_failed, e.getMessage()), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    private void showMetrics() {
+        metricsText.setText(metrics.dumpToString());
+    }
+}
@@ -15,6 +15,7 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.model.Dashboard;
 import com.josephlimbert.weighttracker.model.GoalWeight;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
 import com.josephlimbert.weighttracker.viewmodel.WeightViewModel;
@@ -24,7 +25,7 @@ public class SetGoalWeightFragment extends BottomSheetDialogFragment {
     WeightViewModel weightViewModel;
     long userId;
 
-    GoalWeight goalWeight;
+    boolean isEditing;
 
     @NonNull
     @Override
@@ -46,9 +47,10 @@ public class SetGoalWeightFragment extends BottomSheetDialogFragment {
         if (getArguments() != null) {
             // Store existing goal weight if we are editing a goal weight
             if (getArguments().getBoolean("isEditing")) {
-                goalWeight = weightViewModel.getGoalWeight.getValue();
-                if (goalWeight != null) {
-                    weightText.setText(String.valueOf(goalWeight.getWeight()));
+                Dashboard dashboard = weightViewModel.getDashboard.getValue();
+                if (dashboard != null && dashboard.getGoalWeight() != null) {
+                    isEditing = true;
+                    weightText.setText(String.valueOf(dashboard.getGoalWeight()));
                     goalWeightLabel.setText(getString(R.string.change_goal_weight));
                 }
             }
@@ -69,18 +71,17 @@ public class SetGoalWeightFragment extends BottomSheetDialogFragment {
                 float newWeight = Float.parseFloat(weightText.getText().toString());
                 // If we are editing a goal weight then we update the weight and send the update to the database
                 // Otherwise, we create a new goal weight and add it to the database
-                if (goalWeight != null) {
-                    goalWeight.setWeight(newWeight);
-                    weightViewModel.updateGoalWeight(goalWeight);
-                    dismiss();
+                // Each user has one goal weight and its ID is the user ID
+                GoalWeight weight = new GoalWeight();
+                weight.setWeight(newWeight);
+                weight.setId(userId);
+                weight.setUserId(userId);
+                if (isEditing) {
+                    weightViewModel.updateGoalWeight(weight);
                 } else {
-                    GoalWeight weight = new GoalWeight();
-                    weight.setWeight(newWeight);
-                    weight.setId(userId);
-                    weight.setUserId(userId);
                     weightViewModel.addGoalWeight(weight);
-                    dismiss();
                 }
+                dismiss();
             } catch (NumberFormatException e) {
                 weightText.setError(getString(R.string.weight_number_error));
             }
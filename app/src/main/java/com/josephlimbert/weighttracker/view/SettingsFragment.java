@@ -1,9 +1,7 @@
 package com.josephlimbert.weighttracker.view;
 
 import android.Manifest;
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 
@@ -12,6 +10,8 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 
 import android.util.Log;
@@ -20,18 +20,29 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.google.android.material.materialswitch.MaterialSwitch;
 import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.model.UserSettings;
+import com.josephlimbert.weighttracker.repo.WeightExporter;
+import com.josephlimbert.weighttracker.repo.WeightTrackerRepository;
 import com.josephlimbert.weighttracker.viewmodel.UserViewModel;
+import com.josephlimbert.weighttracker.viewmodel.WeightViewModel;
+
+import java.util.concurrent.Future;
 
 public class SettingsFragment extends Fragment {
     private static final String smsPermission = Manifest.permission.SEND_SMS;
     ConstraintLayout numberInput;
+    // The export that is running, if any. Tapping the export button again cancels it.
+    private Future<?> runningExport;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
+        TraceSections.begin("SettingsFragment.onCreateView");
         // Inflate the layout for this fragment
         View rootView = inflater.inflate(R.layout.fragment_settings, container, false);
         // Initialize variables
@@ -42,11 +53,13 @@ public class SettingsFragment extends Fragment {
         Button editGoalWeightButton = rootView.findViewById(R.id.edit_goal_button);
         TextView phoneText = rootView.findViewById(R.id.phone_input_text);
         Button logoutButton = rootView.findViewById(R.id.logout_button);
+        Button importWeightsButton = rootView.findViewById(R.id.import_weights_button);
+        Button exportWeightsButton = rootView.findViewById(R.id.export_weights_button);
 
         logoutButton.setOnClickListener(v -> {
             // call log out function on the view model then load main activity
             UserViewModel userViewModel = new ViewModelProvider(this).get(UserViewModel.class);
-            userViewModel.logOutUser(rootView.getContext());
+            userViewModel.logOutUser();
             Intent intent = new Intent(rootView.getContext(), MainActivity.class);
             startActivity(intent);
         });
@@ -60,19 +73,73 @@ public class SettingsFragment extends Fragment {
             sheet.setArguments(bundle);
             sheet.show(getParentFragmentManager(), "edit goal weight");
         });
-        // Create a shared preferences variable to read and store the phone number
-        SharedPreferences sharedPref = requireActivity().getPreferences(Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = sharedPref.edit();
-        String phoneNumber = sharedPref.getString("userPhoneNumber", "");
-
-        // If the phone number has previously been set then set the input text to the phone number
-        // and disable the input. We also hide the submit button and show the edit button
-        if (!phoneNumber.isBlank()) {
-            submitPhoneButton.setVisibility(View.GONE);
-            phoneText.setText(phoneNumber);
-            phoneText.setEnabled(false);
-            editPhoneButton.setVisibility(View.VISIBLE);
-        }
+        // Let the user pick a CSV or JSON file of past weights and import it in the background.
+        // The button shows the progress and is disabled until the import finishes.
+        ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocument(),
+                uri -> {
+                    Long userId = new ViewModelProvider(requireActivity()).get(UserViewModel.class).getLoggedInUserId().getValue();
+                    if (uri == null || userId == null) return;
+                    WeightViewModel weightViewModel = new ViewModelProvider(requireActivity()).get(WeightViewModel.class);
+                    importWeightsButton.setEnabled(false);
+                    weightViewModel.importWeights(uri, userId, new WeightTrackerRepository.ImportListener() {
+                        @Override
+                        public void onProgress(long rowsImported) {
+                            if (!isAdded()) return;
+                            importWeightsButton.setText(getString(R.string.import_progress, rowsImported));
+                        }
+
+                        @Override
+                        public void onComplete(long rowsImported) {
+                            finishImport(importWeightsButton, getString(R.string.import_complete, rowsImported));
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            finishImport(importWeightsButton, getString(R.string.import_failed, e.getMessage()));
+                        }
+                    });
+                });
+        importWeightsButton.setOnClickListener(v -> importLauncher.launch(
+                new String[]{"text/csv", "text/comma-separated-values", "text/plain", "application/json"}));
+
+        // Let the user choose where to save their weights and export them in the background.
+        // Files ending in .json are exported as JSON, everything else as CSV.
+        ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("text/csv"),
+                uri -> {
+                    Long userId = new ViewModelProvider(requireActivity()).get(UserViewModel.class).getLoggedInUserId().getValue();
+                    if (uri == null || userId == null) return;
+                    WeightViewModel weightViewModel = new ViewModelProvider(requireActivity()).get(WeightViewModel.class);
+                    WeightExporter.Format format = uri.toString().endsWith(".json") ? WeightExporter.Format.JSON : WeightExporter.Format.CSV;
+                    runningExport = weightViewModel.exportWeights(uri, userId, format, new WeightTrackerRepository.ExportListener() {
+                        @Override
+                        public void onProgress(long rowsExported, long totalRows) {
+                            if (!isAdded()) return;
+                            int percent = totalRows > 0 ? (int) (rowsExported * 100 / totalRows) : 100;
+                            exportWeightsButton.setText(getString(R.string.export_progress, percent));
+                        }
+
+                        @Override
+                        public void onComplete(long rowsExported) {
+                            finishExport(exportWeightsButton, getString(R.string.export_complete, rowsExported));
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            finishExport(exportWeightsButton, getString(R.string.export_failed, e.getMessage()));
+                        }
+                    });
+                });
+        exportWeightsButton.setOnClickListener(v -> {
+            if (runningExport != null) {
+                runningExport.cancel(true);
+            } else {
+                exportLauncher.launch("weights.csv");
+            }
+        });
+
+        UserViewModel userViewModel = new ViewModelProvider(requireActivity()).get(UserViewModel.class);
 
         editPhoneButton.setOnClickListener(v -> {
             // If the phone number is set, we re-enable the text input and allow for editing it
@@ -82,9 +149,9 @@ public class SettingsFragment extends Fragment {
         });
 
         submitPhoneButton.setOnClickListener(v -> {
-            // Store the phone number in shared preferences then disable the input and change the button to edit
-            editor.putString("userPhoneNumber", phoneText.getText().toString());
-            editor.apply();
+            // Save the phone number then disable the input and change the button to edit
+            String phoneNumber = phoneText.getText().toString();
+            userViewModel.editSettings(settings -> settings.setPhoneNumber(phoneNumber));
             submitPhoneButton.setVisibility(View.GONE);
             phoneText.setEnabled(false);
             editPhoneButton.setVisibility(View.VISIBLE);
@@ -94,50 +161,68 @@ public class SettingsFragment extends Fragment {
         ActivityResultLauncher<String> permissionsRegistration = registerForActivityResult(
                 new ActivityResultContracts.RequestPermission(),
                 isGranted -> {
-                    if (isGranted) {
-                        // If granted we set the switch to enabled and save the switches state to shared preferences
-                        Log.d("Permission: ", "GRANTED");
-                        smsSwitch.setChecked(true);
-                        editor.putBoolean("smsEnabled", true);
-                    } else {
-                        Log.d("Permission: ", "DENIED");
-                        // If denied we set the switch to disabled and save the switches state to shared preferences
-                        smsSwitch.setChecked(false);
-                        editor.putBoolean("smsEnabled", false);
-                    }
+                    // Set the switch to match the permission and save its state
+                    Log.d("Permission: ", isGranted ? "GRANTED" : "DENIED");
+                    smsSwitch.setChecked(isGranted);
+                    userViewModel.editSettings(settings -> settings.setSmsEnabled(isGranted));
                 }
         );
 
-        smsSwitch.setOnCheckedChangeListener((v, isChecked) -> {
-            // When the switch is enabled or disabled we check if sms permissions have been granted
-            // If they haven't then we request permission
-            // if the switch is enabled we show the phone input and save the switches state to shared preferences
-            if (isChecked) {
-                if (!permissionGranted())
-                    permissionsRegistration.launch(smsPermission);
-                numberInput.setVisibility(View.VISIBLE);
-                editor.putBoolean("smsEnabled", true);
-            } else {
-                // if the switch is disabled we hide the phone input and save the switches state to shared preferences
-                numberInput.setVisibility(View.GONE);
-                editor.putBoolean("smsEnabled", false);
+        // The saved settings load in the background. Fill in the phone number and switch once they
+        // arrive, then start listening to the switch so setting its initial state isn't saved back.
+        LiveData<UserSettings> savedSettings = userViewModel.getSettings();
+        savedSettings.observe(getViewLifecycleOwner(), new Observer<>() {
+            @Override
+            public void onChanged(UserSettings settings) {
+                savedSettings.removeObserver(this);
+
+                // If the phone number has previously been set then set the input text to the phone number
+                // and disable the input. We also hide the submit button and show the edit button
+                if (!settings.getPhoneNumber().isBlank()) {
+                    submitPhoneButton.setVisibility(View.GONE);
+                    phoneText.setText(settings.getPhoneNumber());
+                    phoneText.setEnabled(false);
+                    editPhoneButton.setVisibility(View.VISIBLE);
+                }
+
+                // check if the sms permissions have been granted. If so, we set the switch to checked.
+                boolean smsOn = permissionGranted() && settings.isSmsEnabled();
+                smsSwitch.setChecked(smsOn);
+                numberInput.setVisibility(smsOn ? View.VISIBLE : View.GONE);
+
+                smsSwitch.setOnCheckedChangeListener((v, isChecked) -> {
+                    // When the switch is enabled we check if sms permissions have been granted
+                    // If they haven't then we request permission
+                    // The phone input is only shown while the switch is on
+                    if (isChecked && !permissionGranted()) {
+                        permissionsRegistration.launch(smsPermission);
+                    }
+                    numberInput.setVisibility(isChecked ? View.VISIBLE : View.GONE);
+                    userViewModel.editSettings(value -> value.setSmsEnabled(isChecked));
+                });
             }
         });
 
-        // When creating the settings view we get the state of the sms switch from shared preferences and set it
-        boolean smsEnabled = sharedPref.getBoolean("smsEnabled", false);
-        // check if the sms permissions have been granted. If so, we set the switch to checked.
-        if (permissionGranted() && smsEnabled) {
-            smsSwitch.setChecked(true);
-            numberInput.setVisibility(View.VISIBLE);
-        } else {
-            smsSwitch.setChecked(false);
-            numberInput.setVisibility(View.GONE);
-        }
-
+        TraceSections.end();
         return rootView;
     }
 
+    // Reset the import button and show the result of the import
+    private void finishImport(Button importWeightsButton, String message) {
+        if (!isAdded()) return;
+        importWeightsButton.setEnabled(true);
+        importWeightsButton.setText(R.string.import_weights);
+        Toast.makeText(requireContext(), message, Toast.LENGTH_LONG).show();
+    }
+
+    // Reset the export button and show the result of the export
+    private void finishExport(Button exportWeightsButton, String message) {
+        runningExport = null;
+        if (!isAdded()) return;
+        exportWeightsButton.setText(R.string.export_weights);
+        Toast.makeText(requireContext(), message, Toast.LENGTH_LONG).show();
+    }
+
     // This function will check if the sms permission has been granted
     public boolean permissionGranted() {
         return ContextCompat.checkSelfPermission(requireContext(), smsPermission) == PackageManager.PERMISSION_GRANTED;
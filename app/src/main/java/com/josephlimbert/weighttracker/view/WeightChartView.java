@@ -0,0 +1,246 @@
+package com.josephlimbert.weighttracker.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.model.ChartPoints;
+import com.josephlimbert.weighttracker.viewmodel.WeightFormatter;
+
+import java.util.Arrays;
+
+// Line chart of the user's weight over time that can be panned by dragging and zoomed by
+// pinching. The chart only holds the points for the range around the visible part, already
+// downsampled to about one point per pixel. When the user pans or zooms past what is loaded it
+// asks its listener for the new range and keeps drawing the old points until they arrive.
+//
+// The line is drawn with a single drawLines call from an array that is filled in place, so
+// drawing a frame doesn't allocate and stays on the hardware accelerated fast path.
+public class WeightChartView extends View {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long MIN_SPAN = 7 * DAY_MILLIS;
+    private static final long MAX_SPAN = 20 * 365 * DAY_MILLIS;
+
+    // Called when the chart needs the points between from and to for a chart maxPoints pixels wide
+    public interface OnRangeRequestListener {
+        void onRangeRequest(long from, long to, int maxPoints);
+    }
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+
+    private OnRangeRequestListener listener;
+    private ChartPoints points;
+    private float[] lineBuffer = new float[0];
+    private float minWeight;
+    private float maxWeight;
+    private String minLabel;
+    private String maxLabel;
+
+    // The visible range and the range that was last requested from the listener
+    private long viewFrom;
+    private long viewTo;
+    private long requestedFrom;
+    private long requestedTo;
+
+    public WeightChartView(Context context) {
+        this(context, null);
+    }
+
+    public WeightChartView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeCap(Paint.Cap.ROUND);
+        linePaint.setStrokeWidth(dp(2));
+        linePaint.setColor(ContextCompat.getColor(context, R.color.md_theme_primary));
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 12,
+                getResources().getDisplayMetrics()));
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.md_theme_onSurfaceVariant));
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                zoom(detector.getScaleFactor(), detector.getFocusX());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float distanceX, float distanceY) {
+                pan(distanceX);
+                return true;
+            }
+        });
+
+        long now = System.currentTimeMillis();
+        viewFrom = now - 90 * DAY_MILLIS;
+        viewTo = now + DAY_MILLIS;
+    }
+
+    public void setOnRangeRequestListener(OnRangeRequestListener listener) {
+        this.listener = listener;
+        requestRange();
+    }
+
+    // Show the points for the range that was requested. The weight axis is fitted to every loaded
+    // point so it doesn't jump around while the user pans within the loaded range.
+    public void setPoints(ChartPoints points) {
+        this.points = points;
+        int size = points.getSize();
+        if (lineBuffer.length < size * 4) {
+            lineBuffer = new float[size * 4];
+        }
+
+        float[] weights = points.getWeights();
+        minWeight = Float.MAX_VALUE;
+        maxWeight = -Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minWeight = Math.min(minWeight, weights[i]);
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        minLabel = size > 0 ? WeightFormatter.formatWeight(minWeight) : null;
+        maxLabel = size > 0 ? WeightFormatter.formatWeight(maxWeight) : null;
+        invalidate();
+    }
+
+    // Load the visible range again, for example after the weights changed
+    public void reload() {
+        requestedFrom = 0;
+        requestedTo = 0;
+        requestRange();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // The number of points depends on the width so a new width needs new points
+        if (w != oldw) reload();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        if (!scaleDetector.isInProgress()) {
+            gestureDetector.onTouchEvent(event);
+        }
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            // Keep the drag in the chart instead of letting a parent scroll
+            getParent().requestDisallowInterceptTouchEvent(true);
+        } else if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+            performClick();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void pan(float distanceX) {
+        long shift = (long) (distanceX / contentWidth() * (viewTo - viewFrom));
+        setViewport(viewFrom + shift, viewTo + shift);
+    }
+
+    // Zoom around the time under the user's fingers so it stays in the same place on screen
+    private void zoom(float scaleFactor, float focusX) {
+        long span = viewTo - viewFrom;
+        long newSpan = Math.max(MIN_SPAN, Math.min(MAX_SPAN, (long) (span / scaleFactor)));
+        float focusFraction = (focusX - getPaddingLeft()) / contentWidth();
+        long focusTime = viewFrom + (long) (focusFraction * span);
+        long newFrom = focusTime - (long) (focusFraction * newSpan);
+        setViewport(newFrom, newFrom + newSpan);
+    }
+
+    private void setViewport(long from, long to) {
+        viewFrom = from;
+        viewTo = to;
+        postInvalidateOnAnimation();
+
+        // Request more points once the view leaves the loaded range, or once it is zoomed in far
+        // enough that the loaded points are too sparse for the new scale
+        long requestedSpan = requestedTo - requestedFrom;
+        if (from < requestedFrom || to > requestedTo || (to - from) * 4 < requestedSpan) {
+            requestRange();
+        }
+    }
+
+    // Request the visible range plus half a screen either side so short pans don't need a query
+    private void requestRange() {
+        if (listener == null || getWidth() == 0) return;
+        long margin = (viewTo - viewFrom) / 2;
+        requestedFrom = viewFrom - margin;
+        requestedTo = viewTo + margin;
+        listener.onRangeRequest(requestedFrom, requestedTo, (int) (contentWidth() * 2));
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (points == null || points.getSize() == 0) return;
+
+        float left = getPaddingLeft();
+        float top = getPaddingTop() + labelPaint.getTextSize();
+        float bottom = getHeight() - getPaddingBottom() - labelPaint.getTextSize();
+        float xScale = contentWidth() / (viewTo - viewFrom);
+        float weightRange = maxWeight > minWeight ? maxWeight - minWeight : 1;
+        float yScale = (bottom - top) / weightRange;
+
+        // Only the segments that cross the visible range are added to the line
+        long[] dates = points.getDates();
+        float[] weights = points.getWeights();
+        int size = points.getSize();
+        int start = Math.max(insertionPoint(dates, size, viewFrom) - 1, 0);
+        int end = Math.min(insertionPoint(dates, size, viewTo) + 1, size);
+
+        int count = 0;
+        for (int i = start + 1; i < end; i++) {
+            lineBuffer[count++] = left + (dates[i - 1] - viewFrom) * xScale;
+            lineBuffer[count++] = bottom - (weights[i - 1] - minWeight) * yScale;
+            lineBuffer[count++] = left + (dates[i] - viewFrom) * xScale;
+            lineBuffer[count++] = bottom - (weights[i] - minWeight) * yScale;
+        }
+        if (count > 0) {
+            canvas.drawLines(lineBuffer, 0, count, linePaint);
+        } else if (end > start) {
+            canvas.drawCircle(left + (dates[start] - viewFrom) * xScale,
+                    bottom - (weights[start] - minWeight) * yScale, linePaint.getStrokeWidth(), linePaint);
+        }
+
+        canvas.drawText(maxLabel, left, getPaddingTop() + labelPaint.getTextSize(), labelPaint);
+        canvas.drawText(minLabel, left, getHeight() - getPaddingBottom(), labelPaint);
+    }
+
+    // Index of the first date at or after time
+    private static int insertionPoint(long[] dates, int size, long time) {
+        int index = Arrays.binarySearch(dates, 0, size, time);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private float contentWidth() {
+        return Math.max(getWidth() - getPaddingLeft() - getPaddingRight(), 1);
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+}
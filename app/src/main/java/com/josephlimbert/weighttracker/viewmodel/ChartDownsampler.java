@@ -0,0 +1,85 @@
+package com.josephlimbert.weighttracker.viewmodel;
+
+import com.josephlimbert.weighttracker.model.ChartPoints;
+
+// Reduces a weight series to about one point per pixel before it is drawn, using
+// largest-triangle-three-buckets. The first and last points are kept, the rest are split into
+// equal buckets and from each bucket the point forming the largest triangle with the point kept
+// before it and the average of the next bucket is kept. Peaks and dips survive, which an average
+// or every-nth sample would flatten.
+public class ChartDownsampler {
+    private ChartDownsampler() {}
+
+    // Downsample the points to at most threshold points. Series that are already small enough
+    // are returned as they are.
+    public static ChartPoints downsample(ChartPoints points, int threshold) {
+        int size = points.getSize();
+        if (threshold < 3 || size <= threshold) return points;
+
+        long[] dates = new long[threshold];
+        float[] weights = new float[threshold];
+        int count = lttb(points.getDates(), points.getWeights(), size, threshold, dates, weights);
+        return new ChartPoints(dates, weights, count, points.getFrom(), points.getTo());
+    }
+
+    // Write the downsampled points into outDates and outWeights and return how many were written
+    public static int lttb(long[] dates, float[] weights, int size, int threshold,
+                           long[] outDates, float[] outWeights) {
+        if (threshold >= size || threshold < 3) {
+            System.arraycopy(dates, 0, outDates, 0, size);
+            System.arraycopy(weights, 0, outWeights, 0, size);
+            return size;
+        }
+
+        // Dates are measured from the first point so the triangle areas stay within double precision
+        long origin = dates[0];
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int kept = 0;
+        int selected = 0;
+        outDates[kept] = dates[0];
+        outWeights[kept++] = weights[0];
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket, or the last point for the final bucket
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += dates[i] - origin;
+                averageY += weights[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            if (nextCount > 0) {
+                averageX /= nextCount;
+                averageY /= nextCount;
+            } else {
+                averageX = dates[size - 1] - origin;
+                averageY = weights[size - 1];
+            }
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double selectedX = dates[selected] - origin;
+            double selectedY = weights[selected];
+            double maxArea = -1;
+            int next = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedX - averageX) * (weights[i] - selectedY)
+                        - (selectedX - (dates[i] - origin)) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+
+            outDates[kept] = dates[next];
+            outWeights[kept++] = weights[next];
+            selected = next;
+        }
+
+        outDates[kept] = dates[size - 1];
+        outWeights[kept++] = weights[size - 1];
+        return kept;
+    }
+}
@@ -1,14 +1,17 @@
 package com.josephlimbert.weighttracker.viewmodel;
 
 import android.app.Application;
-import android.content.Context;
 
 import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.LoginResult;
+import com.josephlimbert.weighttracker.model.UserSettings;
 import com.josephlimbert.weighttracker.repo.WeightTrackerRepository;
 
+import java.util.function.Consumer;
+
 public class UserViewModel extends AndroidViewModel {
     private final WeightTrackerRepository weightRepo;
 
@@ -17,21 +20,21 @@ public class UserViewModel extends AndroidViewModel {
         weightRepo = WeightTrackerRepository.getInstance(application.getApplicationContext());
     }
 
-    public void setLoggedInUserId(long userId, Context context) {
-       weightRepo.setLoggedInUserId(userId, context);
+    public void setLoggedInUserId(long userId) {
+       weightRepo.setLoggedInUserId(userId);
     }
 
     public MutableLiveData<Long> getLoggedInUserId() { return weightRepo.getLoggedInUserId(); }
 
-    public void logOutUser(Context context) {
-        weightRepo.logOutUser(context);
+    public void logOutUser() {
+        weightRepo.logOutUser();
     }
 
-    public User loginUser(String username, String password) {
-        return weightRepo.loginUser(username, password);
-    }
+    public LiveData<UserSettings> getSettings() { return weightRepo.getSettings(); }
+
+    public void editSettings(Consumer<UserSettings> changes) { weightRepo.editSettings(changes); }
 
-    public long registerUser(User user) {
-        return weightRepo.registerUser(user);
+    public void loginOrRegister(String username, String password, WeightTrackerRepository.Callback<LoginResult> callback) {
+        weightRepo.loginOrRegister(username, password, callback);
     }
 }
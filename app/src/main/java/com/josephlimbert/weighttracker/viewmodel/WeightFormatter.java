@@ -0,0 +1,55 @@
+package com.josephlimbert.weighttracker.viewmodel;
+
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightListItem;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Formats weights for display. DateTimeFormatter is immutable so one instance per locale is
+// cached and shared between threads instead of creating new formatters for every weight.
+public class WeightFormatter {
+    private static final Map<Locale, DateTimeFormatter> dayOfWeekFormats = new ConcurrentHashMap<>();
+    private static final Map<Locale, DateTimeFormatter> dayOfMonthFormats = new ConcurrentHashMap<>();
+
+    private WeightFormatter() {}
+
+    // Get the abbreviated day of the week formatter for a locale, e.g. "Mon"
+    public static DateTimeFormatter dayOfWeekFormat(Locale locale) {
+        return dayOfWeekFormats.computeIfAbsent(locale, l -> DateTimeFormatter.ofPattern("EEE", l));
+    }
+
+    // Get the day of the month formatter for a locale, e.g. "7"
+    public static DateTimeFormatter dayOfMonthFormat(Locale locale) {
+        return dayOfMonthFormats.computeIfAbsent(locale, l -> DateTimeFormatter.ofPattern("d", l));
+    }
+
+    // Format a weight for display, e.g. "180.5 Lbs"
+    public static String formatWeight(float weight) {
+        return weight + " Lbs";
+    }
+
+    // Format an average or trend weight to one decimal place, e.g. "180.3 Lbs"
+    public static String formatAverageWeight(float weight, Locale locale) {
+        return String.format(locale, "%.1f Lbs", weight);
+    }
+
+    // Format a change in weight per week with its sign, e.g. "-1.2 Lbs/week"
+    public static String formatWeeklyRate(float rate, Locale locale) {
+        return String.format(locale, "%+.1f Lbs/week", rate);
+    }
+
+    // Build the list item for a weight with all of its display text formatted
+    public static WeightListItem toListItem(Weight weight, Locale locale, ZoneId zone) {
+        ZonedDateTime recordedDate = Instant.ofEpochMilli(weight.getRecordedDate()).atZone(zone);
+        return new WeightListItem(weight,
+                dayOfWeekFormat(locale).format(recordedDate),
+                dayOfMonthFormat(locale).format(recordedDate),
+                formatWeight(weight.getWeight()));
+    }
+}
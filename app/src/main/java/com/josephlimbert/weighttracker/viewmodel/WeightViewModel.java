@@ -1,6 +1,7 @@
 package com.josephlimbert.weighttracker.viewmodel;
 
 import android.app.Application;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
@@ -8,126 +9,150 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
-
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingDataTransforms;
+import androidx.paging.PagingLiveData;
+
+import com.josephlimbert.weighttracker.metrics.MetricsRegistry;
+import com.josephlimbert.weighttracker.metrics.TraceSections;
+import com.josephlimbert.weighttracker.model.ChartPoints;
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.Event;
 import com.josephlimbert.weighttracker.model.GoalWeight;
 import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightListItem;
+import com.josephlimbert.weighttracker.model.WeightStats;
+import com.josephlimbert.weighttracker.repo.PendingWrites;
+import com.josephlimbert.weighttracker.repo.WeightExporter;
 import com.josephlimbert.weighttracker.repo.WeightTrackerRepository;
 
-import java.util.List;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WeightViewModel extends AndroidViewModel {
+    // Number of weights loaded per page. A screen shows about ten rows.
+    private static final int PAGE_SIZE = 30;
 
     private WeightTrackerRepository weightRepo;
 
-    public MutableLiveData<Boolean> goalReached = new MutableLiveData<>();
+    // Every LiveData below counts its emissions under "WeightViewModel.<field>" while metrics are on
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+    // Formats each page of weights for the list before it reaches the main thread
+    private final ExecutorService formatExecutor = Executors.newSingleThreadExecutor();
 
     private final MutableLiveData<Long> loggedInUserId = new MutableLiveData<>();
 
+    private final MutableLiveData<ChartPoints> chartPoints = new MutableLiveData<>();
+    private final LiveData<ChartPoints> countedChartPoints = metrics.countEmissions("WeightViewModel.getChartPoints", chartPoints);
+    private final AtomicInteger chartRequest = new AtomicInteger();
+
     public WeightViewModel(@NonNull Application application) {
         super(application);
         weightRepo = WeightTrackerRepository.getInstance(application.getApplicationContext());
     }
 
+    // Several fragments set the user ID when they are created. Only a different user should
+    // restart the queries below, otherwise the weight list would be reloaded from scratch.
     public void setLoggedInUserId(long userId) {
+        Long currentUserId = loggedInUserId.getValue();
+        if (currentUserId != null && currentUserId == userId) return;
         loggedInUserId.setValue(userId);
     }
 
-    public LiveData<List<Weight>> getWeightList = Transformations.switchMap(loggedInUserId, userId ->
-            weightRepo.getWeightList(userId));
-
-    public LiveData<Weight> getCurrentWeight = Transformations.switchMap(loggedInUserId, userId -> weightRepo.getCurrentWeight(userId));
-
-    public LiveData<Weight> getStartingWeight = Transformations.switchMap(loggedInUserId, userId-> weightRepo.getStartingWeight(userId));
-
-    public LiveData<GoalWeight> getGoalWeight = Transformations.switchMap(loggedInUserId, userId ->  weightRepo.getGoalWeight(userId));
-
-    // Use the starting weight, current weight, and goal weight to get the percentage of weight lost. returns 0 if any variable is not set
-    public LiveData<Float> getTotalLossPercentage = Transformations.switchMap(loggedInUserId, userId -> {
-        LiveData<Weight> startingWeightLiveData = getStartingWeight;
-        LiveData<Weight> currentWeightLiveData = getCurrentWeight;
-        LiveData<GoalWeight> goalWeightLiveData = getGoalWeight;
-
-        MediatorLiveData<Float> result = new MediatorLiveData<>();
-
-        result.addSource(startingWeightLiveData, value ->
-            result.setValue(calculateResult(startingWeightLiveData, currentWeightLiveData, goalWeightLiveData)));
-        result.addSource(currentWeightLiveData, value ->
-                result.setValue(calculateResult(startingWeightLiveData, currentWeightLiveData, goalWeightLiveData)));
-        result.addSource(goalWeightLiveData, value ->
-                result.setValue(calculateResult(startingWeightLiveData, currentWeightLiveData, goalWeightLiveData)));
-        return result;
-    });
-
-    // Use the starting weight and current weight to get the total weight lost.
-    public LiveData<Float> getTotalLossWeight = Transformations.switchMap(loggedInUserId, userId -> {
-        LiveData<Weight> startingWeightLiveData = getStartingWeight;
-        LiveData<Weight> currentWeightLiveData = getCurrentWeight;
-
-        MediatorLiveData<Float> result = new MediatorLiveData<>();
-
-        result.addSource(startingWeightLiveData, value -> {
-                if (currentWeightLiveData.getValue() != null && value != null)
-                    result.setValue(value.getWeight() - currentWeightLiveData.getValue().getWeight());
-                else
-                    result.setValue(0F);
+    // Page through the user's weights. Each page is formatted for display in the background and
+    // the pages are cached in the view model so they survive rotation. Edits and deletes that
+    // haven't been written yet are applied on top so the list updates as soon as the user taps.
+    public LiveData<PagingData<WeightListItem>> getWeightPages = metrics.countEmissions("WeightViewModel.getWeightPages",
+            Transformations.switchMap(loggedInUserId, userId -> {
+        TraceSections.begin("WeightViewModel.buildWeightPages");
+        Pager<Long, Weight> pager = new Pager<>(new PagingConfig(PAGE_SIZE, PAGE_SIZE, false),
+                () -> weightRepo.getWeightPagingSource(userId));
+        LiveData<PagingData<WeightListItem>> pages = Transformations.map(PagingLiveData.getLiveData(pager),
+                pagingData -> PagingDataTransforms.map(pagingData, formatExecutor, weight ->
+                        WeightFormatter.toListItem(weight, Locale.getDefault(), ZoneId.systemDefault())));
+        LiveData<PagingData<WeightListItem>> cachedPages = PagingLiveData.cachedIn(pages, ViewModelKt.getViewModelScope(this));
+
+        MediatorLiveData<PagingData<WeightListItem>> visiblePages = new MediatorLiveData<>();
+        LiveData<PendingWrites> pendingWrites = weightRepo.getPendingWrites();
+        // Each recomputation is a trace section so it can be told apart from other main thread work
+        visiblePages.addSource(cachedPages, pagingData -> {
+            TraceSections.begin("WeightViewModel.onPagesLoaded");
+            // New pages come from the database so writes that have committed are already in them.
+            // Clearing them updates pendingWrites, which submits the pages below.
+            if (!weightRepo.clearConfirmedWrites()) {
+                visiblePages.setValue(applyPendingWrites(pagingData, pendingWrites.getValue()));
+            }
+            TraceSections.end();
         });
-        result.addSource(currentWeightLiveData, value -> {
-            if (startingWeightLiveData.getValue() != null && value != null)
-                result.setValue(startingWeightLiveData.getValue().getWeight() - value.getWeight());
-            else
-                result.setValue(0F);
+        visiblePages.addSource(pendingWrites, pending -> {
+            TraceSections.begin("WeightViewModel.onPendingWritesChanged");
+            PagingData<WeightListItem> pagingData = cachedPages.getValue();
+            if (pagingData != null) visiblePages.setValue(applyPendingWrites(pagingData, pending));
+            TraceSections.end();
         });
-
-        return result;
-    });
-
-    // Use the starting weight and goal weight to get the total weight loss goal.
-    public LiveData<Float> getTargetLossWeight = Transformations.switchMap(loggedInUserId, userId -> {
-        LiveData<Weight> startingWeightLiveData = getStartingWeight;
-        LiveData<GoalWeight> goalWeightLiveData = getGoalWeight;
-
-        MediatorLiveData<Float> result = new MediatorLiveData<>();
-
-        result.addSource(startingWeightLiveData, value -> {
-            if (goalWeightLiveData.getValue() != null && value != null)
-                result.setValue(value.getWeight() - goalWeightLiveData.getValue().getWeight());
-            else
-                result.setValue(0F);
-        });
-        result.addSource(goalWeightLiveData, value -> {
-            if (startingWeightLiveData.getValue() != null && value != null)
-                result.setValue(startingWeightLiveData.getValue().getWeight() - value.getWeight());
-            else
-                result.setValue(0F);
+        TraceSections.end();
+        return visiblePages;
+    }));
+
+    private PagingData<WeightListItem> applyPendingWrites(PagingData<WeightListItem> pagingData, PendingWrites pending) {
+        if (pending == null || pending.isEmpty()) return pagingData;
+        PagingData<WeightListItem> remaining = PagingDataTransforms.filter(pagingData, formatExecutor,
+                item -> !pending.isDeleted(item.getWeight().getId()));
+        return PagingDataTransforms.map(remaining, formatExecutor, item -> {
+            Weight update = pending.getUpdate(item.getWeight().getId());
+            return update == null ? item : WeightFormatter.toListItem(update, Locale.getDefault(), ZoneId.systemDefault());
         });
+    }
 
-        return result;
-    });
+    // Errors from edits and deletes that could not be written and were undone. Each one is only
+    // consumed once.
+    public LiveData<Event<Exception>> getWriteErrors() {
+        return weightRepo.getWriteErrors();
+    }
 
-    // Use the target weight loss and total weight loss so far to get the amount of weight left to lose
-    public LiveData<Float> getTargetLeftWeight = Transformations.switchMap(loggedInUserId, userId -> {
-        LiveData<Float> targetLossLiveData = getTargetLossWeight;
-        LiveData<Float> totalLossLiveData = getTotalLossWeight;
+    // The starting, current and goal weights come from one load. Every stat on the home screen is
+    // calculated from a single emission so they can't show a mix of old and new values.
+    public LiveData<Dashboard> getDashboard = metrics.countEmissions("WeightViewModel.getDashboard",
+            Transformations.switchMap(loggedInUserId, userId -> weightRepo.getDashboard(userId)));
 
-        MediatorLiveData<Float> result = new MediatorLiveData<>();
+    // Emits after every write to the user's weights or goal, even one that leaves the dashboard
+    // the same such as editing a weight in the middle of the history
+    public LiveData<Long> getWeightChanges = metrics.countEmissions("WeightViewModel.getWeightChanges",
+            Transformations.switchMap(loggedInUserId, userId -> weightRepo.getUserChanges(userId)));
 
-        result.addSource(targetLossLiveData, value -> {
-            if (totalLossLiveData.getValue() != null && value != null)
-                result.setValue(value - totalLossLiveData.getValue());
-            else
-                result.setValue(0F);
-        });
-        result.addSource(totalLossLiveData, value -> {
-            if (targetLossLiveData.getValue() != null && value != null)
-                result.setValue(targetLossLiveData.getValue() - value);
-            else
-                result.setValue(0F);
+    public LiveData<ChartPoints> getChartPoints() {
+        return countedChartPoints;
+    }
+
+    // Load the chart points between from and to and downsample them to maxPoints in the
+    // background. Panning can request several ranges in a row so only the newest result is shown.
+    public void loadChart(long from, long to, int maxPoints) {
+        Long userId = loggedInUserId.getValue();
+        if (userId == null) return;
+
+        int request = chartRequest.incrementAndGet();
+        weightRepo.getChartPoints(userId, from, to, maxPoints, points -> {
+            if (request != chartRequest.get() || formatExecutor.isShutdown()) return;
+            formatExecutor.execute(TraceSections.wrap("WeightViewModel.downsampleChart", () -> {
+                ChartPoints downsampled = ChartDownsampler.downsample(points, maxPoints);
+                if (request == chartRequest.get()) chartPoints.postValue(downsampled);
+            }));
         });
+    }
 
-        return result;
-    });
+    // Moving averages, trend weight and weekly rate, updated incrementally by the repository
+    public LiveData<WeightStats> getWeightStats = metrics.countEmissions("WeightViewModel.getWeightStats",
+            Transformations.switchMap(loggedInUserId, userId -> weightRepo.getWeightStats(userId)));
 
-    public Weight getWeight(long id) { return weightRepo.getWeight(id); }
+    public void getWeight(long id, WeightTrackerRepository.Callback<Weight> callback) { weightRepo.getWeight(id, callback); }
 
     public void addWeight(Weight weight) {
         weightRepo.addWeight(weight);
@@ -141,34 +166,21 @@ public class WeightViewModel extends AndroidViewModel {
         weightRepo.deleteWeight(weight);
     }
 
-    public void addGoalWeight(GoalWeight goalWeight) { weightRepo.addGoalWeight(goalWeight); }
-
-    public void updateGoalWeight(GoalWeight goalWeight) { weightRepo.updateGoalWeight(goalWeight); }
-
-    // Check if the current weight is at or below the goal weight and return true if goal has been reached
-    public void checkGoalReached(float currentWeight) {
-        if (getGoalWeight.getValue() == null) {
-            goalReached.setValue(false);
-            return;
-        }
-
-        float goalWeight = getGoalWeight.getValue().getWeight();
-        goalReached.setValue(currentWeight <= goalWeight);
+    public Future<?> importWeights(Uri uri, long userId, WeightTrackerRepository.ImportListener listener) {
+        return weightRepo.importWeights(getApplication(), uri, userId, listener);
     }
 
-    // Calculate the weight loss percentage
-    private float calculateResult(LiveData<Weight> startingLive, LiveData<Weight> currentLive, LiveData<GoalWeight> goalLive) {
-        Weight starting = startingLive.getValue();
-        Weight current = currentLive.getValue();
-        GoalWeight goal = goalLive.getValue();
+    public Future<?> exportWeights(Uri uri, long userId, WeightExporter.Format format, WeightTrackerRepository.ExportListener listener) {
+        return weightRepo.exportWeights(getApplication(), uri, userId, format, listener);
+    }
 
-        if (starting == null || current == null || goal == null) {
-            return 0;
-        }
+    public void addGoalWeight(GoalWeight goalWeight) { weightRepo.addGoalWeight(goalWeight); }
 
-        float currentWeightLoss = starting.getWeight() - current.getWeight();
-        float totalLossGoal = starting.getWeight() - goal.getWeight();
+    public void updateGoalWeight(GoalWeight goalWeight) { weightRepo.updateGoalWeight(goalWeight); }
 
-        return Math.min(((currentWeightLoss / totalLossGoal) * 100), 100);
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        formatExecutor.shutdown();
     }
 }
@@ -0,0 +1,82 @@
+package com.josephlimbert.weighttracker.work;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.josephlimbert.weighttracker.repo.SettingsStore;
+import com.josephlimbert.weighttracker.repo.WeightTrackerRepository;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Checks whether a user's latest weight reached their goal and tells them once per goal. The
+// repository queues a check after every committed write, import and goal change, so backdated
+// and imported weights are checked too and nothing runs on the main thread.
+public class GoalCheckWorker extends Worker {
+    static final String KEY_USER_ID = "userId";
+    // Give up on a message after this many tries. The next write queues a new check anyway.
+    static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_SECONDS = 30;
+
+    private final WeightTrackerRepository weightRepo;
+    // Remembers the last goal each user was told about, so the same goal is never sent twice
+    private final SettingsStore settingsStore;
+    private final GoalNotifier notifier;
+
+    public GoalCheckWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        this(context, params, WeightTrackerRepository.getInstance(context), SettingsStore.getInstance(context),
+                new SmsGoalNotifier(context));
+    }
+
+    public GoalCheckWorker(@NonNull Context context, @NonNull WorkerParameters params,
+                           WeightTrackerRepository weightRepo, SettingsStore settingsStore, GoalNotifier notifier) {
+        super(context, params);
+        this.weightRepo = weightRepo;
+        this.settingsStore = settingsStore;
+        this.notifier = notifier;
+    }
+
+    // Queue a goal check for the user. Checks for the same user run one after another so two of
+    // them can't both decide a goal hasn't been sent yet.
+    public static void enqueue(Context context, long userId) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(GoalCheckWorker.class)
+                .setInputData(new Data.Builder().putLong(KEY_USER_ID, userId).build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork("goalCheck" + userId, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        long userId = getInputData().getLong(KEY_USER_ID, 0);
+        Float goalWeight = weightRepo.getReachedGoalWeight(userId);
+        if (goalWeight == null) return Result.success();
+
+        Float notified = settingsStore.readNotifiedGoal(userId);
+        if (goalWeight.equals(notified)) return Result.success();
+
+        boolean sent;
+        try {
+            sent = notifier.notifyGoalReached(goalWeight);
+        } catch (IOException e) {
+            Log.d("GoalCheckWorker", "Goal notification failed: " + e.getMessage());
+            return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+        }
+        // Nothing was sent, so the goal is sent by the first check after the user turns SMS on
+        if (!sent) return Result.success();
+        // Saved before the worker finishes so a retry after this point doesn't send it again
+        settingsStore.saveNotifiedGoal(userId, goalWeight);
+        return Result.success();
+    }
+}
@@ -0,0 +1,10 @@
+package com.josephlimbert.weighttracker.work;
+
+import java.io.IOException;
+
+// Tells the user they reached their goal weight. Called on a background thread by GoalCheckWorker.
+public interface GoalNotifier {
+    // Returns false when the user turned the message off or it can't be sent to them, so the goal
+    // isn't recorded as sent. Throws an IOException when sending failed so the check is tried again.
+    boolean notifyGoalReached(float goalWeight) throws IOException;
+}
@@ -0,0 +1,53 @@
+package com.josephlimbert.weighttracker.work;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.model.UserSettings;
+import com.josephlimbert.weighttracker.repo.SettingsStore;
+
+import java.io.IOException;
+
+// Sends the goal reached message by SMS to the phone number saved on the settings screen. Nothing
+// is sent if SMS notifications are turned off, no number is saved or the permission was denied.
+public class SmsGoalNotifier implements GoalNotifier {
+    private final Context context;
+
+    public SmsGoalNotifier(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public boolean notifyGoalReached(float goalWeight) throws IOException {
+        UserSettings settings = SettingsStore.getInstance(context).readSettings();
+        String phoneNumber = settings.getPhoneNumber();
+        if (!settings.isSmsEnabled() || phoneNumber.isBlank()) return false;
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            Log.d("SMS", "SMS permission not granted");
+            return false;
+        }
+
+        try {
+            smsManager().sendTextMessage(phoneNumber, null, context.getString(R.string.goal_reached_message), null, null);
+            Log.d("SMS", "SMS sent successfully to " + phoneNumber);
+            return true;
+        } catch (RuntimeException e) {
+            // The radio is off or busy, try again with the worker's backoff
+            throw new IOException("SMS failed: " + e.getMessage(), e);
+        }
+    }
+
+    private SmsManager smsManager() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return context.getSystemService(SmsManager.class);
+        }
+        return SmsManager.getDefault();
+    }
+}
@@ -0,0 +1,90 @@
+package com.josephlimbert.weighttracker;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times an operation over many iterations on the current thread and records the latency
+ * percentiles and the bytes allocated per call. Results are printed and appended to
+ * build/reports/benchmark/[name].txt so runs can be compared.
+ */
+public class BenchmarkRecorder {
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final StringBuilder report = new StringBuilder();
+    private final String name;
+
+    public interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    public BenchmarkRecorder(String name) {
+        this.name = name;
+        report.append(String.format(Locale.US, "%-12s %-28s %10s %10s %10s %10s %12s%n",
+                "dataset", "operation", "p50 us", "p90 us", "p99 us", "max us", "bytes/op"));
+    }
+
+    // Run the operation for the warmup iterations, then record the measured iterations
+    public void measure(String dataset, String operation, int warmup, int iterations, Operation op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run(i);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long[] nanos = new long[iterations];
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            op.run(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Arrays.sort(nanos);
+        String line = String.format(Locale.US, "%-12s %-28s %10.1f %10.1f %10.1f %10.1f %12d%n",
+                dataset, operation,
+                percentile(nanos, 0.50) / 1000.0, percentile(nanos, 0.90) / 1000.0,
+                percentile(nanos, 0.99) / 1000.0, nanos[nanos.length - 1] / 1000.0,
+                allocated / iterations);
+        report.append(line);
+        System.out.print(line);
+    }
+
+    // Record a single value that isn't a latency, such as the heap used by a data structure
+    public void record(String dataset, String metric, String value) {
+        String line = String.format(Locale.US, "%-12s %-28s %s%n", dataset, metric, value);
+        report.append(line);
+        System.out.print(line);
+    }
+
+    public void writeReport() throws IOException {
+        File dir = new File("build/reports/benchmark");
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(new File(dir, name + ".txt"), true))) {
+            writer.print(report);
+            writer.println();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("benchmark");
+    }
+
+    // Dataset sizes passed with -Pbenchmark.rows=1000,10000
+    public static int[] datasetSizes() {
+        return Arrays.stream(System.getProperty("benchmark.rows", "1000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
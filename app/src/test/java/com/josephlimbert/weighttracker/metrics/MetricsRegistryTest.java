@@ -0,0 +1,87 @@
+package com.josephlimbert.weighttracker.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the histogram percentiles, that nothing is recorded while metrics are off and that
+ * timed operations are recorded under their own names.
+ */
+public class MetricsRegistryTest {
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    @Test
+    public void histogram_percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) histogram.record(100_000);
+        for (int i = 0; i < 10; i++) histogram.record(5_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(590, histogram.getMeanMicros());
+        // 100 microseconds is in the 64-128 bucket, 5000 in the 4096-8192 bucket
+        assertEquals(128, histogram.getPercentileMicros(0.5));
+        assertEquals(128, histogram.getPercentileMicros(0.9));
+        assertEquals(5000, histogram.getPercentileMicros(0.99));
+        assertEquals(5000, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        metrics.recordLatency("query", 1000);
+        metrics.increment("count");
+        metrics.recordFrame("Home", 1000, true);
+
+        assertFalse(metrics.dumpToString().contains("query:"));
+        assertFalse(metrics.dumpToString().contains("count:"));
+        assertFalse(metrics.dumpToString().contains("Home:"));
+    }
+
+    @Test
+    public void enabled_dumpsEveryMetric() {
+        metrics.setEnabled(true);
+        metrics.recordLatency("query", 100_000);
+        metrics.increment("count");
+        metrics.increment("count");
+        metrics.recordFrame("Home", 10_000_000, false);
+        metrics.recordFrame("Home", 40_000_000, true);
+        metrics.registerGauge("gauge", () -> 7);
+
+        String dump = metrics.dumpToString();
+        assertTrue(dump.contains("  query: 1 100 100 100 100 100"));
+        assertTrue(dump.contains("  count: 2"));
+        assertTrue(dump.contains("  gauge: 7"));
+        assertTrue(dump.contains("  Home: 2 1 25000"));
+
+        metrics.reset();
+        dump = metrics.dumpToString();
+        assertFalse(dump.contains("query:"));
+        assertTrue(dump.contains("  gauge: 7"));
+    }
+
+    @Test
+    public void timing_recordsOnlyWhileEnabled() {
+        // A timing started while metrics are off isn't recorded, even if they are enabled since
+        long start = metrics.startTiming();
+        assertEquals(0, start);
+        metrics.setEnabled(true);
+        metrics.recordSince("WeightDao.getWeight", start);
+        assertFalse(metrics.dumpToString().contains("WeightDao.getWeight"));
+
+        metrics.recordSince("WeightDao.getWeight", metrics.startTiming());
+        metrics.recordSince("WeightDao.getWeight", metrics.startTiming());
+        metrics.recordSince("WeightDao.addWeight", metrics.startTiming());
+
+        String dump = metrics.dumpToString();
+        assertTrue(dump.contains("  WeightDao.getWeight: 2 "));
+        assertTrue(dump.contains("  WeightDao.addWeight: 1 "));
+    }
+
+    @Test
+    public void getInstance_isShared() {
+        assertSame(MetricsRegistry.getInstance(), MetricsRegistry.getInstance());
+    }
+}
@@ -0,0 +1,60 @@
+package com.josephlimbert.weighttracker.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DashboardTest {
+    private static final float DELTA = 0.001F;
+
+    @Test
+    public void derivedStats_useStartCurrentAndGoal() {
+        Dashboard dashboard = dashboard(200F, 190F, 180F);
+
+        assertEquals(10F, dashboard.getTotalLossWeight(), DELTA);
+        assertEquals(20F, dashboard.getTargetLossWeight(), DELTA);
+        assertEquals(10F, dashboard.getTargetLeftWeight(), DELTA);
+        assertEquals(50F, dashboard.getTotalLossPercentage(), DELTA);
+    }
+
+    @Test
+    public void totalLossPercentage_isCappedAtOneHundred() {
+        assertEquals(100F, dashboard(200F, 170F, 180F).getTotalLossPercentage(), DELTA);
+    }
+
+    @Test
+    public void derivedStats_areZeroWithoutData() {
+        Dashboard noGoal = dashboard(200F, 190F, null);
+        assertEquals(10F, noGoal.getTotalLossWeight(), DELTA);
+        assertEquals(0F, noGoal.getTargetLossWeight(), DELTA);
+        assertEquals(0F, noGoal.getTotalLossPercentage(), DELTA);
+
+        Dashboard noWeights = dashboard(null, null, 180F);
+        assertEquals(0F, noWeights.getTotalLossWeight(), DELTA);
+        assertEquals(0F, noWeights.getTargetLeftWeight(), DELTA);
+        assertEquals(0F, noWeights.getTotalLossPercentage(), DELTA);
+    }
+
+    @Test
+    public void from_usesFirstAndLastReadingsOfSeries() {
+        WeightSeries series = new WeightSeries(new long[]{1000, 2000, 3000}, new float[]{200F, 195F, 190F}, 3);
+        Dashboard dashboard = Dashboard.from(series, 180F);
+
+        assertEquals(200F, dashboard.getStartingWeight(), DELTA);
+        assertEquals(190F, dashboard.getCurrentWeight(), DELTA);
+        assertEquals(180F, dashboard.getGoalWeight(), DELTA);
+        assertEquals(1000L, (long) dashboard.getStartDate());
+        assertEquals(3, dashboard.getWeightCount());
+
+        Dashboard empty = Dashboard.from(new WeightSeries(new long[0], new float[0], 0), null);
+        assertEquals(new Dashboard(), empty);
+    }
+
+    private static Dashboard dashboard(Float starting, Float current, Float goal) {
+        Dashboard dashboard = new Dashboard();
+        dashboard.setStartingWeight(starting);
+        dashboard.setCurrentWeight(current);
+        dashboard.setGoalWeight(goal);
+        return dashboard;
+    }
+}
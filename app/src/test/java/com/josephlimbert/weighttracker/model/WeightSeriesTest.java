@@ -0,0 +1,31 @@
+package com.josephlimbert.weighttracker.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class WeightSeriesTest {
+    private final WeightSeries series = new WeightSeries(
+            new long[] {100, 200, 200, 300, 0, 0}, new float[] {180, 179, 178.5F, 178, 0, 0}, 4);
+
+    @Test
+    public void indexOf_findsFirstReadingAtOrAfterTime() {
+        assertEquals(0, series.indexOf(50));
+        assertEquals(0, series.indexOf(100));
+        assertEquals(1, series.indexOf(150));
+        assertEquals(1, series.indexOf(200));
+        assertEquals(3, series.indexOf(300));
+        assertEquals(4, series.indexOf(301));
+    }
+
+    @Test
+    public void toChartPoints_copiesRange() {
+        ChartPoints points = series.toChartPoints(1, 3, 150, 250);
+
+        assertEquals(2, points.getSize());
+        assertEquals(200, points.getDates()[0]);
+        assertEquals(178.5F, points.getWeights()[1], 0);
+        assertEquals(150, points.getFrom());
+        assertEquals(250, points.getTo());
+    }
+}
@@ -0,0 +1,292 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.ImportCheckpoint;
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and allocation benchmark for every WeightDao, UserDao and RollupDao method against an
+ * in-memory database seeded with several users and their rollups. Skipped unless enabled, run it from the command line with:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*DaoBenchmark' -Pbenchmark=true -Pbenchmark.rows=1000,100000,1000000
+ *
+ * Results are written to app/build/reports/benchmark/dao-benchmark.txt.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class DaoBenchmark {
+    private static final int USERS = 20;
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+    // Weights per addWeights call, the same batch size the importer commits
+    private static final int WRITE_BATCH = WeightImporter.DEFAULT_BATCH_SIZE;
+    // Rollups removed per deleteAllRollups run, the table is refilled between runs
+    private static final int DELETE_ALL_RUNS = 5;
+    // Readings are spread eight hours apart going back from this time
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long READING_INTERVAL = TimeUnit.HOURS.toMillis(8);
+
+    private final Random random = new Random(42);
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+    }
+
+    @Test
+    public void benchmarkDaoMethods() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("dao-benchmark");
+        for (int rows : BenchmarkRecorder.datasetSizes()) {
+            runDataset(recorder, rows);
+        }
+        recorder.writeReport();
+    }
+
+    private void runDataset(BenchmarkRecorder recorder, int rows) throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        // Run queries on the calling thread so the recorder sees all of the work and allocations
+        WeightTrackerDatabase database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .setQueryExecutor(Runnable::run)
+                .setTransactionExecutor(Runnable::run)
+                .allowMainThreadQueries()
+                .build();
+        WeightDao weightDao = database.weightDao();
+        UserDao userDao = database.userDao();
+        RollupDao rollupDao = database.rollupDao();
+        ZoneId zone = ZoneId.systemDefault();
+        String dataset = rows + " rows";
+
+        long[] userIds = seed(database, rows);
+        int rowsPerUser = rows / USERS;
+        // Queries that read all of a user's weights, or every user's, are slow for large datasets
+        // so they get fewer iterations
+        int scanIterations = Math.max(5, ITERATIONS * 1000 / Math.max(rows, 1000));
+
+        recorder.measure(dataset, "loadCurrentWeight", WARMUP, ITERATIONS,
+                i -> weightDao.loadCurrentWeight(randomUser(userIds)));
+        recorder.measure(dataset, "loadStartingWeight", WARMUP, ITERATIONS,
+                i -> weightDao.loadStartingWeight(randomUser(userIds)));
+        recorder.measure(dataset, "loadGoalWeight", WARMUP, ITERATIONS,
+                i -> weightDao.loadGoalWeight(randomUser(userIds)));
+        recorder.measure(dataset, "loadWeightList", 2, scanIterations,
+                i -> weightDao.loadWeightList(randomUser(userIds)));
+        recorder.measure(dataset, "getWeightSeries", 2, scanIterations, i -> {
+            try (Cursor cursor = weightDao.getWeightSeries(randomUser(userIds))) {
+                while (cursor.moveToNext()) {
+                    cursor.getLong(0);
+                    cursor.getFloat(1);
+                }
+            }
+        });
+        recorder.measure(dataset, "getUserIdsWithWeights", 2, scanIterations,
+                i -> weightDao.getUserIdsWithWeights());
+        recorder.measure(dataset, "getWeightCount", WARMUP, ITERATIONS,
+                i -> weightDao.getWeightCount(randomUser(userIds)));
+        recorder.measure(dataset, "hasWeights", WARMUP, ITERATIONS,
+                i -> weightDao.hasWeights());
+        recorder.measure(dataset, "getReachedGoalWeight", WARMUP, ITERATIONS,
+                i -> weightDao.getReachedGoalWeight(randomUser(userIds)));
+        recorder.measure(dataset, "getWeightsOlderThan", WARMUP, ITERATIONS,
+                i -> weightDao.getWeightsOlderThan(randomUser(userIds), randomReadingTime(rowsPerUser), 30));
+        recorder.measure(dataset, "getWeightsNewerThan", WARMUP, ITERATIONS,
+                i -> weightDao.getWeightsNewerThan(randomUser(userIds), randomReadingTime(rowsPerUser), 30));
+        recorder.measure(dataset, "getWeight", WARMUP, ITERATIONS,
+                i -> weightDao.getWeight(1 + random.nextInt(rows)));
+
+        // Writes use readings after NOW so they never collide with the seeded readings. The
+        // inserted readings are then updated and deleted so the dataset size doesn't change.
+        List<Weight> inserted = new ArrayList<>();
+        recorder.measure(dataset, "addWeight", WARMUP, ITERATIONS, i -> {
+            Weight weight = newWeight(userIds[0], NOW + (i + 1) * READING_INTERVAL);
+            weightDao.addWeight(weight);
+            inserted.add(weight);
+        });
+        List<Weight> added = weightDao.getWeightsNewerThan(userIds[0], NOW, inserted.size());
+        recorder.measure(dataset, "updateWeight", WARMUP, ITERATIONS, i -> {
+            Weight weight = added.get(i % added.size());
+            weight.setWeight(weight.getWeight() + 0.1F);
+            weightDao.updateWeight(weight);
+        });
+        recorder.measure(dataset, "deleteWeight", WARMUP, ITERATIONS,
+                i -> weightDao.deleteWeight(added.get(i)));
+        recorder.measure(dataset, "addWeights", 2, scanIterations, i -> {
+            List<Weight> batch = new ArrayList<>(WRITE_BATCH);
+            for (int j = 0; j < WRITE_BATCH; j++) {
+                batch.add(newWeight(userIds[1], NOW + ((long) i * WRITE_BATCH + j + 1) * READING_INTERVAL));
+            }
+            weightDao.addWeights(batch);
+        });
+        database.getOpenHelper().getWritableDatabase().execSQL("DELETE FROM Weights WHERE recorded_date > " + NOW);
+
+        recorder.measure(dataset, "addGoalWeight", WARMUP, ITERATIONS,
+                i -> weightDao.addGoalWeight(newGoal(randomUser(userIds))));
+        recorder.measure(dataset, "updateGoalWeight", WARMUP, ITERATIONS,
+                i -> weightDao.updateGoalWeight(newGoal(randomUser(userIds))));
+
+        // Each checkpoint is saved, read back and then deleted so the table is empty afterwards
+        recorder.measure(dataset, "saveImportCheckpoint", WARMUP, ITERATIONS,
+                i -> weightDao.saveImportCheckpoint(newCheckpoint(randomUser(userIds), i)));
+        recorder.measure(dataset, "getImportCheckpoint", WARMUP, ITERATIONS,
+                i -> weightDao.getImportCheckpoint("import" + random.nextInt(WARMUP + ITERATIONS)));
+        recorder.measure(dataset, "deleteImportCheckpoint", WARMUP, ITERATIONS,
+                i -> weightDao.deleteImportCheckpoint("import" + i));
+
+        recorder.measure(dataset, "getUserByUsername", WARMUP, ITERATIONS,
+                i -> userDao.getUserByUsername("user" + random.nextInt(USERS)));
+        recorder.measure(dataset, "registerUser", WARMUP, ITERATIONS, i -> {
+            User user = new User();
+            user.setUsername("new-user" + i);
+            user.setPassword("password");
+            userDao.registerUser(user);
+        });
+        recorder.measure(dataset, "updatePassword", WARMUP, ITERATIONS,
+                i -> userDao.updatePassword(randomUser(userIds), "password-hash" + i));
+
+        // A chart reads about three months of buckets
+        recorder.measure(dataset, "getRollups", WARMUP, ITERATIONS, i -> {
+            long from = randomReadingTime(rowsPerUser);
+            rollupDao.getRollups(randomUser(userIds), randomPeriod(), from, from + TimeUnit.DAYS.toMillis(90));
+        });
+        recorder.measure(dataset, "hasRollups", WARMUP, ITERATIONS,
+                i -> rollupDao.hasRollups());
+        // The same buckets are deleted and then rebuilt so the rollups are back as they were
+        Bucket[] buckets = new Bucket[WARMUP + ITERATIONS];
+        for (int i = 0; i < buckets.length; i++) {
+            int day = Weight.toEpochDay(randomReadingTime(rowsPerUser), zone);
+            buckets[i] = new Bucket(randomUser(userIds), randomPeriod(), day, zone);
+        }
+        recorder.measure(dataset, "deleteBucket", WARMUP, ITERATIONS, i ->
+                rollupDao.deleteBucket(buckets[i].userId, buckets[i].period, buckets[i].bucketStart));
+        recorder.measure(dataset, "rebuildBucket", WARMUP, ITERATIONS, i ->
+                rollupDao.rebuildBucket(buckets[i].userId, buckets[i].period, buckets[i].bucketStart,
+                        buckets[i].startDay, buckets[i].endDay));
+        // Write one user's rollups again, each row replaces itself
+        List<WeightRollup> rollups = new ArrayList<>();
+        for (int period : WeightRollup.PERIODS) {
+            rollups.addAll(rollupDao.getRollups(userIds[0], period, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        recorder.measure(dataset, "addRollups", 2, scanIterations,
+                i -> rollupDao.addRollups(rollups));
+
+        // Deleting every rollup can only be timed once per fill, so the table is refilled with
+        // the same rollups before each run and only the delete is timed
+        List<WeightRollup> allRollups = new ArrayList<>();
+        for (long userId : userIds) {
+            for (int period : WeightRollup.PERIODS) {
+                allRollups.addAll(rollupDao.getRollups(userId, period, Long.MIN_VALUE, Long.MAX_VALUE));
+            }
+        }
+        long[] deleteNanos = new long[DELETE_ALL_RUNS];
+        for (int run = 0; run < DELETE_ALL_RUNS; run++) {
+            rollupDao.addRollups(allRollups);
+            long start = System.nanoTime();
+            rollupDao.deleteAllRollups();
+            deleteNanos[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(deleteNanos);
+        recorder.record(dataset, "deleteAllRollups", String.format(Locale.US, "p50 %.1f us over %d runs of %d rollups",
+                deleteNanos[DELETE_ALL_RUNS / 2] / 1000.0, DELETE_ALL_RUNS, allRollups.size()));
+
+        database.close();
+    }
+
+    // One rollup bucket containing a seeded reading
+    private static class Bucket {
+        final long userId;
+        final int period;
+        final int startDay;
+        final int endDay;
+        final long bucketStart;
+
+        Bucket(long userId, int period, int day, ZoneId zone) {
+            this.userId = userId;
+            this.period = period;
+            this.startDay = RollupBuckets.startDay(period, day);
+            this.endDay = RollupBuckets.endDay(period, startDay);
+            this.bucketStart = RollupBuckets.dayStart(startDay, zone);
+        }
+    }
+
+    // Create the users, give each of them a goal weight and an equal share of the readings, then
+    // build the rollups from the readings
+    private long[] seed(WeightTrackerDatabase database, int rows) {
+        long[] userIds = new long[USERS];
+        database.runInTransaction(() -> {
+            for (int user = 0; user < USERS; user++) {
+                User newUser = new User();
+                newUser.setUsername("user" + user);
+                newUser.setPassword("password" + user);
+                userIds[user] = database.userDao().registerUser(newUser);
+                database.weightDao().addGoalWeight(newGoal(userIds[user]));
+            }
+            for (int row = 0; row < rows; row++) {
+                long userId = userIds[row % USERS];
+                long recordedDate = NOW - (row / USERS) * READING_INTERVAL;
+                database.weightDao().addWeight(newWeight(userId, recordedDate));
+            }
+        });
+        new RollupUpdater(database, ZoneId.systemDefault()).rebuildAll();
+        return userIds;
+    }
+
+    private long randomUser(long[] userIds) {
+        return userIds[random.nextInt(userIds.length)];
+    }
+
+    private int randomPeriod() {
+        return WeightRollup.PERIODS[random.nextInt(WeightRollup.PERIODS.length)];
+    }
+
+    private long randomReadingTime(int rowsPerUser) {
+        return NOW - random.nextInt(Math.max(rowsPerUser, 1)) * READING_INTERVAL;
+    }
+
+    private Weight newWeight(long userId, long recordedDate) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(recordedDate, ZoneId.systemDefault());
+        weight.setWeight(150 + random.nextFloat() * 100);
+        return weight;
+    }
+
+    private static ImportCheckpoint newCheckpoint(long userId, int i) {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setSourceKey("import" + i);
+        checkpoint.setUserId(userId);
+        checkpoint.setRowsCommitted(i * 1000L);
+        return checkpoint;
+    }
+
+    private GoalWeight newGoal(long userId) {
+        GoalWeight goalWeight = new GoalWeight();
+        goalWeight.setId(userId);
+        goalWeight.setUserId(userId);
+        goalWeight.setWeight(150 + random.nextFloat() * 20);
+        return goalWeight;
+    }
+}
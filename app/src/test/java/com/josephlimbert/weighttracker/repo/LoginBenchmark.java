@@ -0,0 +1,103 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+/**
+ * Login latency with 10,000 registered users, as on a device shared by a whole household or
+ * clinic. Measures the username lookup with and without the unique index, and a full login and
+ * registration with the default PBKDF2 cost. Skipped unless enabled, run it with:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*LoginBenchmark' -Pbenchmark=true
+ *
+ * Results are written to app/build/reports/benchmark/login-benchmark.txt. The hashing numbers
+ * are for the JVM, a phone is usually several times slower, so check DEFAULT_ITERATIONS on a
+ * device before raising it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class LoginBenchmark {
+    private static final int USERS = 10_000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 30;
+
+    private final Random random = new Random(42);
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+    }
+
+    @Test
+    public void benchmarkLogin() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("login-benchmark");
+        Context context = ApplicationProvider.getApplicationContext();
+        WeightTrackerDatabase database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .setQueryExecutor(Runnable::run)
+                .setTransactionExecutor(Runnable::run)
+                .allowMainThreadQueries()
+                .build();
+        UserDao userDao = database.userDao();
+        PasswordHasher hasher = new PasswordHasher(PasswordHasher.DEFAULT_ITERATIONS);
+        String dataset = USERS + " users";
+
+        // Seeding 10,000 full cost hashes would take minutes, so only the users that log in
+        // during the benchmark get one. The others only need to be in the index.
+        PasswordHasher cheapHasher = new PasswordHasher(1);
+        database.runInTransaction(() -> {
+            for (int i = 0; i < USERS; i++) {
+                User user = new User();
+                user.setUsername("user" + i);
+                user.setPassword(i < 10 ? hasher.hash("password" + i) : cheapHasher.hash("password" + i));
+                userDao.registerUser(user);
+            }
+        });
+
+        recorder.measure(dataset, "getUserByUsername", 100, 2000,
+                i -> userDao.getUserByUsername("user" + random.nextInt(USERS)));
+        // The same lookup with the index bypassed, which is what every login cost before version 5
+        recorder.measure(dataset, "lookup without index", 10, 200, i -> {
+            try (Cursor cursor = database.getOpenHelper().getReadableDatabase().query(
+                    "SELECT * FROM Users WHERE +username = ?", new Object[]{"user" + random.nextInt(USERS)})) {
+                cursor.moveToFirst();
+            }
+        });
+
+        recorder.measure(dataset, "login", WARMUP, ITERATIONS, i -> {
+            int user = i % 10;
+            User stored = userDao.getUserByUsername("user" + user);
+            assertTrue(hasher.verify("password" + user, stored.getPassword()));
+        });
+        recorder.measure(dataset, "login wrong password", WARMUP, ITERATIONS, i -> {
+            User stored = userDao.getUserByUsername("user" + (i % 10));
+            hasher.verify("wrong", stored.getPassword());
+        });
+        recorder.measure(dataset, "register", WARMUP, ITERATIONS, i -> {
+            User user = new User();
+            user.setUsername("new-user" + i);
+            user.setPassword(hasher.hash("password"));
+            userDao.registerUser(user);
+        });
+        recorder.record(dataset, "iterations", String.valueOf(PasswordHasher.DEFAULT_ITERATIONS));
+
+        database.close();
+        recorder.writeReport();
+    }
+}
@@ -0,0 +1,49 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PasswordHasherTest {
+    // Low so the tests are fast, the format and checks are the same at any cost
+    private final PasswordHasher hasher = new PasswordHasher(1000);
+
+    @Test
+    public void hash_verifiesOnlyTheSamePassword() {
+        String stored = hasher.hash("secret");
+
+        assertTrue(hasher.verify("secret", stored));
+        assertFalse(hasher.verify("Secret", stored));
+        assertFalse(hasher.verify("", stored));
+        assertFalse(hasher.needsRehash(stored));
+    }
+
+    @Test
+    public void hash_usesANewSaltEveryTime() {
+        assertNotEquals(hasher.hash("secret"), hasher.hash("secret"));
+    }
+
+    @Test
+    public void plainTextPassword_verifiesAndNeedsRehash() {
+        assertTrue(hasher.verify("secret", "secret"));
+        assertFalse(hasher.verify("other", "secret"));
+        assertTrue(hasher.needsRehash("secret"));
+    }
+
+    @Test
+    public void cheaperHash_stillVerifiesAndNeedsRehash() {
+        String stored = new PasswordHasher(500).hash("secret");
+
+        assertTrue(hasher.verify("secret", stored));
+        assertTrue(hasher.needsRehash(stored));
+    }
+
+    @Test
+    public void malformedHash_doesNotVerify() {
+        assertFalse(hasher.verify("secret", "pbkdf2-sha256$1000$not base64$"));
+        assertFalse(hasher.verify("secret", "pbkdf2-sha256$lots$c2FsdA==$aGFzaA=="));
+        assertFalse(hasher.verify("secret", null));
+    }
+}
@@ -0,0 +1,170 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightRollup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Checks that the rollup table matches the weights table after every kind of write.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class RollupUpdaterTest {
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+    private static final long START = LocalDate.of(2024, 1, 1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private WeightTrackerDatabase database;
+    private RollupUpdater rollupUpdater;
+    private WeightWriter weightWriter;
+    private long userId;
+    private long otherUserId;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        rollupUpdater = new RollupUpdater(database, ZONE);
+        weightWriter = new WeightWriter(database, rollupUpdater);
+        userId = registerUser("user");
+        otherUserId = registerUser("other");
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void randomWrites_keepRollupsEqualToRecalculation() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 400; i++) {
+            long user = random.nextBoolean() ? userId : otherUserId;
+            List<Weight> stored = database.weightDao().getWeightsNewerThan(user, Long.MIN_VALUE, Integer.MAX_VALUE);
+            int action = random.nextInt(10);
+            if (action < 6 || stored.isEmpty()) {
+                weightWriter.addWeight(newWeight(user, START + random.nextInt(24 * 120) * HOUR,
+                        150 + random.nextInt(500) / 10F));
+            } else if (action < 8) {
+                // Move a weight to another date, possibly into another week or month
+                Weight weight = stored.get(random.nextInt(stored.size()));
+                weight.setRecorded(START + random.nextInt(24 * 120) * HOUR, ZONE);
+                weight.setWeight(150 + random.nextInt(500) / 10F);
+                try {
+                    weightWriter.updateWeight(weight);
+                } catch (RuntimeException e) {
+                    // Another weight is already recorded at that time so nothing changed
+                }
+            } else {
+                weightWriter.deleteWeight(stored.get(random.nextInt(stored.size())));
+            }
+        }
+
+        assertRollupsMatchWeights(userId);
+        assertRollupsMatchWeights(otherUserId);
+    }
+
+    @Test
+    public void importWeights_updatesRollupsForEveryBatch() throws IOException {
+        WeightImporter importer = new WeightImporter(database, rollupUpdater, 100);
+        importer.importWeights(WeightImporterTest.csvReader(750), userId, "content://test/weights.csv", rows -> {});
+
+        assertRollupsMatchWeights(userId);
+    }
+
+    @Test
+    public void rebuildAll_matchesIncrementalRollups() {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            weightWriter.addWeight(newWeight(userId, START + i * 9 * HOUR, 150 + random.nextInt(500) / 10F));
+        }
+
+        database.rollupDao().deleteAllRollups();
+        rollupUpdater.rebuildIfEmpty();
+
+        assertRollupsMatchWeights(userId);
+    }
+
+    // Recalculate every bucket from the full list of weights and compare it to the rollup table
+    private void assertRollupsMatchWeights(long userId) {
+        List<Weight> weights = database.weightDao().getWeightsNewerThan(userId, Long.MIN_VALUE, Integer.MAX_VALUE);
+        for (int period : WeightRollup.PERIODS) {
+            Map<Long, List<Weight>> buckets = new TreeMap<>();
+            for (Weight weight : weights) {
+                // Buckets follow the day the weight was recorded on, which can be in another zone
+                long bucketStart = RollupBuckets.dayStart(RollupBuckets.startDay(period, weight.getRecordedDay()), ZONE);
+                buckets.computeIfAbsent(bucketStart, key -> new ArrayList<>()).add(weight);
+            }
+
+            List<WeightRollup> rollups = database.rollupDao().getRollups(userId, period, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(buckets.size(), rollups.size());
+
+            int index = 0;
+            for (Map.Entry<Long, List<Weight>> bucket : buckets.entrySet()) {
+                List<Weight> bucketWeights = bucket.getValue();
+                WeightRollup rollup = rollups.get(index++);
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                double sum = 0;
+                for (Weight weight : bucketWeights) {
+                    min = Math.min(min, weight.getWeight());
+                    max = Math.max(max, weight.getWeight());
+                    sum += weight.getWeight();
+                }
+                Weight first = bucketWeights.get(0);
+                Weight last = bucketWeights.get(bucketWeights.size() - 1);
+
+                assertEquals((long) bucket.getKey(), rollup.getBucketStart());
+                assertEquals(bucketWeights.size(), rollup.getWeightCount());
+                assertEquals(min, rollup.getMinWeight(), 0);
+                assertEquals(max, rollup.getMaxWeight(), 0);
+                assertEquals(sum, rollup.getSumWeight(), 0.01);
+                assertEquals(first.getRecordedDate(), rollup.getFirstDate());
+                assertEquals(first.getWeight(), rollup.getFirstWeight(), 0);
+                assertEquals(last.getRecordedDate(), rollup.getLastDate());
+                assertEquals(last.getWeight(), rollup.getLastWeight(), 0);
+            }
+        }
+    }
+
+    private long registerUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return database.userDao().registerUser(user);
+    }
+
+    private static Weight newWeight(long userId, long time, float value) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(time, ZONE);
+        weight.setWeight(value);
+        return weight;
+    }
+}
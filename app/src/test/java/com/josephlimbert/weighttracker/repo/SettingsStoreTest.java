@@ -0,0 +1,155 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.UserSettings;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class SettingsStoreTest {
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private SettingsStore store;
+
+    @After
+    public void disposeStore() {
+        if (store != null) store.dispose();
+    }
+
+    @Test
+    public void firstRead_migratesTheOldPreferenceFiles() {
+        context.getSharedPreferences("AuthUser", Context.MODE_PRIVATE).edit()
+                .putLong("userId", 7).commit();
+        context.getSharedPreferences("MainActivity", Context.MODE_PRIVATE).edit()
+                .putString("userPhoneNumber", "5551234")
+                .putBoolean("smsEnabled", true)
+                .commit();
+
+        store = new SettingsStore(context, "settings_migration");
+        UserSettings settings = store.readSettings();
+
+        assertEquals(Long.valueOf(7), settings.getLoggedInUserId());
+        assertEquals("5551234", settings.getPhoneNumber());
+        assertTrue(settings.isSmsEnabled());
+        assertFalse(preferencesFile("AuthUser").exists());
+        assertFalse(preferencesFile("MainActivity").exists());
+    }
+
+    @Test
+    public void firstRead_migratesTheNotifiedGoals() {
+        context.getSharedPreferences("GoalNotifications", Context.MODE_PRIVATE).edit()
+                .putFloat("user1", 180)
+                .putFloat("user2", 150.5F)
+                .commit();
+
+        store = new SettingsStore(context, "settings_goals");
+
+        assertEquals(Float.valueOf(180), store.readNotifiedGoal(1));
+        assertEquals(Float.valueOf(150.5F), store.readNotifiedGoal(2));
+        assertNull(store.readNotifiedGoal(3));
+        assertFalse(preferencesFile("GoalNotifications").exists());
+    }
+
+    @Test
+    public void saveNotifiedGoal_keepsTheOtherSettings() {
+        store = new SettingsStore(context, "settings_save_goal");
+        store.edit(settings -> settings.setPhoneNumber("5551234")).blockingGet();
+
+        store.saveNotifiedGoal(4, 175);
+
+        assertEquals(Float.valueOf(175), store.readNotifiedGoal(4));
+        assertEquals("5551234", store.readSettings().getPhoneNumber());
+    }
+
+    @Test
+    public void noOldFiles_readsDefaults() {
+        store = new SettingsStore(context, "settings_defaults");
+        UserSettings settings = store.readSettings();
+
+        assertNull(settings.getLoggedInUserId());
+        assertEquals("", settings.getPhoneNumber());
+        assertFalse(settings.isSmsEnabled());
+    }
+
+    @Test
+    public void edit_writesEveryChangeTogether() {
+        store = new SettingsStore(context, "settings_edit");
+        UserSettings saved = store.edit(settings -> {
+            settings.setLoggedInUserId(3L);
+            settings.setPhoneNumber("5559876");
+            settings.setSmsEnabled(true);
+        }).blockingGet();
+
+        assertEquals(Long.valueOf(3), saved.getLoggedInUserId());
+        assertEquals("5559876", saved.getPhoneNumber());
+        assertTrue(saved.isSmsEnabled());
+
+        UserSettings loggedOut = store.edit(settings -> settings.setLoggedInUserId(null)).blockingGet();
+        assertNull(loggedOut.getLoggedInUserId());
+        // Settings that weren't changed are kept
+        assertEquals("5559876", loggedOut.getPhoneNumber());
+        assertNull(store.readSettings().getLoggedInUserId());
+    }
+
+    @Test
+    public void saveDashboardSnapshot_thenRead_returnsTheSameValues() {
+        Dashboard dashboard = new Dashboard();
+        dashboard.setStartingWeight(200F);
+        dashboard.setCurrentWeight(185.5F);
+        dashboard.setGoalWeight(170F);
+        dashboard.setStartDate(1_700_000_000_000L);
+        dashboard.setWeightCount(42);
+
+        store = new SettingsStore(context, "settings_dashboard");
+        store.saveDashboardSnapshot(3, dashboard).blockingAwait();
+        Dashboard loaded = store.readDashboardSnapshot(3);
+
+        assertEquals(200F, loaded.getStartingWeight(), 0);
+        assertEquals(185.5F, loaded.getCurrentWeight(), 0);
+        assertEquals(170F, loaded.getGoalWeight(), 0);
+        assertEquals(dashboard.getStartDate(), loaded.getStartDate());
+        assertEquals(42, loaded.getWeightCount());
+        assertTrue(loaded.isSnapshot());
+    }
+
+    @Test
+    public void dashboardSnapshot_missingValuesReadAsNull() {
+        store = new SettingsStore(context, "settings_dashboard_empty");
+        store.saveDashboardSnapshot(3, new Dashboard()).blockingAwait();
+        Dashboard loaded = store.readDashboardSnapshot(3);
+
+        assertNull(loaded.getStartingWeight());
+        assertNull(loaded.getCurrentWeight());
+        assertNull(loaded.getGoalWeight());
+        assertNull(loaded.getStartDate());
+    }
+
+    @Test
+    public void dashboardSnapshot_forAnotherUser_readsNull() {
+        store = new SettingsStore(context, "settings_dashboard_user");
+        store.saveDashboardSnapshot(3, new Dashboard()).blockingAwait();
+
+        assertNull(store.readDashboardSnapshot(4));
+        // Saving the snapshot doesn't touch the other settings
+        assertNull(store.readSettings().getLoggedInUserId());
+    }
+
+    private File preferencesFile(String name) {
+        return new File(context.getDataDir(), "shared_prefs/" + name + ".xml");
+    }
+}
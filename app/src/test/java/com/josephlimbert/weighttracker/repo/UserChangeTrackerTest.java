@@ -0,0 +1,218 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.paging.PagingSource;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a write only re-runs the queries and paged lists of the user it touched and that
+ * results equal to the value already shown are not emitted.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class UserChangeTrackerTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private WeightTrackerDatabase database;
+    private WeightDao weightDao;
+    private UserChangeTracker tracker;
+    private WeightSeriesCache weightSeriesCache;
+    private WeightWriter weightWriter;
+    private long userId;
+    private long otherUserId;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        weightDao = database.weightDao();
+        // Run everything on the test thread except the emissions, which go through the main looper
+        tracker = new UserChangeTracker(Runnable::run, Runnable::run, new Handler(Looper.getMainLooper()));
+        weightSeriesCache = new WeightSeriesCache(database);
+        // Clear the cached series before the change is dispatched, the same order as the repository
+        weightWriter = new WeightWriter(database, new RollupUpdater(database, ZoneId.systemDefault()),
+                (userId, recordedDays) -> {
+                    weightSeriesCache.invalidate();
+                    tracker.onUserChanged(userId);
+                });
+        userId = registerUser("user");
+        otherUserId = registerUser("other");
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void writeForOtherUser_doesNotRunQueries() {
+        weightWriter.addWeight(newWeight(userId, DAY, 200));
+        List<Weight> starting = observe(tracker.observe("startingWeight", userId, () -> weightDao.loadStartingWeight(userId)));
+        List<Dashboard> dashboards = observe(tracker.observe("dashboard", userId, () -> loadDashboard(userId)));
+
+        weightWriter.addWeight(newWeight(otherUserId, DAY, 180));
+        weightWriter.addWeight(newWeight(otherUserId, 2 * DAY, 179));
+        idle();
+
+        assertEquals(1, starting.size());
+        assertEquals(1, dashboards.size());
+        UserChangeTracker.Counters counters = tracker.getCounters();
+        assertEquals(2, counters.getQueriesRun());
+        assertEquals(4, counters.getQueriesSkipped());
+        assertEquals(2, counters.getEmissionsDelivered());
+    }
+
+    @Test
+    public void editInMiddleOfHistory_suppressesUnchangedResults() {
+        weightWriter.addWeight(newWeight(userId, DAY, 200));
+        weightWriter.addWeight(newWeight(userId, 2 * DAY, 195));
+        weightWriter.addWeight(newWeight(userId, 3 * DAY, 190));
+        List<Weight> starting = observe(tracker.observe("startingWeight", userId, () -> weightDao.loadStartingWeight(userId)));
+        List<Weight> current = observe(tracker.observe("currentWeight", userId, () -> weightDao.loadCurrentWeight(userId)));
+        List<Dashboard> dashboards = observe(tracker.observe("dashboard", userId, () -> loadDashboard(userId)));
+
+        // The middle weight is neither the starting nor the current weight
+        Weight middle = weightDao.getWeightsNewerThan(userId, DAY, 1).get(0);
+        middle.setWeight(196);
+        weightWriter.updateWeight(middle);
+        idle();
+
+        assertEquals(1, starting.size());
+        assertEquals(1, current.size());
+        assertEquals(1, dashboards.size());
+        assertEquals(3, tracker.getCounters().getEmissionsSuppressed());
+
+        // Editing the newest weight changes the current weight and the dashboard only
+        Weight newest = weightDao.loadCurrentWeight(userId);
+        newest.setWeight(188);
+        weightWriter.updateWeight(newest);
+        idle();
+
+        assertEquals(1, starting.size());
+        assertEquals(2, current.size());
+        assertEquals(188, current.get(1).getWeight(), 0);
+        assertEquals(2, dashboards.size());
+        UserChangeTracker.Counters counters = tracker.getCounters();
+        assertEquals(9, counters.getQueriesRun());
+        assertEquals(4, counters.getEmissionsSuppressed());
+        assertEquals(5, counters.getEmissionsDelivered());
+    }
+
+    @Test
+    public void inactiveQuery_runsAgainWhenObservedAfterChange() {
+        weightWriter.addWeight(newWeight(userId, DAY, 200));
+        LiveData<Weight> currentWeight = tracker.observe("currentWeight", userId, () -> weightDao.loadCurrentWeight(userId));
+        List<Weight> current = new ArrayList<>();
+        Observer<Weight> observer = current::add;
+        currentWeight.observeForever(observer);
+        idle();
+        currentWeight.removeObserver(observer);
+
+        // Nothing is observing so the write doesn't run the query
+        weightWriter.addWeight(newWeight(userId, 2 * DAY, 198));
+        assertEquals(1, tracker.getCounters().getQueriesRun());
+
+        currentWeight.observeForever(observer);
+        idle();
+        assertEquals(2, tracker.getCounters().getQueriesRun());
+        assertEquals(198, currentWeight.getValue().getWeight(), 0);
+
+        // Observing again without a change reuses the value that is already loaded
+        currentWeight.removeObserver(observer);
+        currentWeight.observeForever(observer);
+        idle();
+        assertEquals(2, tracker.getCounters().getQueriesRun());
+    }
+
+    @Test
+    public void getChanges_emitsForEveryWriteToUser() {
+        List<Long> changes = observe(tracker.getChanges(userId));
+
+        weightWriter.addWeight(newWeight(userId, DAY, 200));
+        idle();
+        weightWriter.addWeight(newWeight(otherUserId, DAY, 180));
+        idle();
+        weightWriter.addWeight(newWeight(userId, 2 * DAY, 199));
+        idle();
+
+        assertEquals(2, changes.size());
+        assertEquals(2L, (long) changes.get(1));
+    }
+
+    @Test
+    public void pagingSource_isOnlyInvalidatedByItsUser() throws Exception {
+        weightWriter.addWeight(newWeight(userId, DAY, 200));
+        WeightPagingSource source = new WeightPagingSource(database, new WeightCache(database, 100), tracker,
+                userId, MoreExecutors.newDirectExecutorService());
+        // The source starts listening when its first page loads
+        source.loadFuture(new PagingSource.LoadParams.Refresh<>(null, 30, false)).get();
+
+        weightWriter.addWeight(newWeight(otherUserId, DAY, 180));
+        assertFalse(source.getInvalid());
+
+        weightWriter.addWeight(newWeight(userId, 2 * DAY, 199));
+        assertTrue(source.getInvalid());
+    }
+
+    // The dashboard as the repository builds it
+    private Dashboard loadDashboard(long userId) {
+        GoalWeight goal = weightDao.loadGoalWeight(userId);
+        return Dashboard.from(weightSeriesCache.get(userId), goal != null ? goal.getWeight() : null);
+    }
+
+    private <T> List<T> observe(LiveData<T> liveData) {
+        List<T> values = new ArrayList<>();
+        liveData.observeForever(values::add);
+        idle();
+        return values;
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private long registerUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return database.userDao().registerUser(user);
+    }
+
+    private static Weight newWeight(long userId, long time, float value) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(time, ZoneId.systemDefault());
+        weight.setWeight(value);
+        return weight;
+    }
+}
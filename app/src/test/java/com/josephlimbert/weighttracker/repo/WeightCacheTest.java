@@ -0,0 +1,98 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightCacheTest {
+    private WeightTrackerDatabase database;
+    private WeightCache cache;
+
+    @Before
+    public void createCache() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        cache = new WeightCache(database, 3);
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void get_returnsCopyOfCachedWeight() {
+        Weight weight = weight(1);
+        cache.putAll(List.of(weight), cache.getVersion());
+
+        Weight cached = cache.get(1);
+        assertNotSame(weight, cached);
+        assertEquals(weight.getWeight(), cached.getWeight(), 0);
+        assertEquals(weight.getRecordedDate(), cached.getRecordedDate());
+
+        // Editing the copy doesn't change the cached weight
+        cached.setWeight(1);
+        assertEquals(weight.getWeight(), cache.get(1).getWeight(), 0);
+        assertEquals(2, cache.hitCount());
+    }
+
+    @Test
+    public void putAll_dropsPageLoadedBeforeInvalidation() {
+        long version = cache.getVersion();
+        cache.invalidate();
+        cache.putAll(List.of(weight(1)), version);
+
+        assertNull(cache.get(1));
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void remove_dropsWrittenWeight() {
+        cache.putAll(List.of(weight(1), weight(2)), cache.getVersion());
+        cache.remove(1);
+
+        assertNull(cache.get(1));
+        assertEquals(2, cache.get(2).getId());
+    }
+
+    @Test
+    public void putAll_evictsLeastRecentlyUsedOverMaxSize() {
+        List<Weight> weights = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) weights.add(weight(id));
+        cache.putAll(weights, cache.getVersion());
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get(1));
+        assertEquals(5, cache.get(5).getId());
+    }
+
+    private static Weight weight(long id) {
+        Weight weight = new Weight();
+        weight.setId(id);
+        weight.setUserId(1);
+        weight.setWeight(180 + id);
+        weight.setRecordedDate(id * 1000);
+        return weight;
+    }
+}
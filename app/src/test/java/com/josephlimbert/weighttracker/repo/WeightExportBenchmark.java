@@ -0,0 +1,76 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.Writer;
+import java.time.ZoneId;
+import java.util.Locale;
+
+/**
+ * Exports up to a million weights to a writer that discards its output and samples the heap
+ * after every page. The heap used by the export must stay flat regardless of the number of rows.
+ * Skipped unless enabled:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*WeightExportBenchmark' -Pbenchmark=true -Pbenchmark.rows=1000000
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightExportBenchmark {
+    // The export may not grow the heap by more than this much over the baseline
+    private static final long MAX_HEAP_GROWTH = 32L * 1024 * 1024;
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+    }
+
+    @Test
+    public void exportUsesFlatMemory() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("export-benchmark");
+        Context context = ApplicationProvider.getApplicationContext();
+        for (int rows : BenchmarkRecorder.datasetSizes()) {
+            WeightTrackerDatabase database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                    .allowMainThreadQueries()
+                    .build();
+            User user = new User();
+            user.setUsername("user");
+            user.setPassword("password");
+            long userId = database.userDao().registerUser(user);
+            new WeightImporter(database, 10_000).importWeights(WeightImporterTest.csvReader(rows), userId, "seed", imported -> {});
+
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long baseline = runtime.totalMemory() - runtime.freeMemory();
+            long[] peak = {baseline};
+            long start = System.nanoTime();
+            new WeightExporter(database, WeightExporter.DEFAULT_PAGE_SIZE).exportWeights(Writer.nullWriter(), userId,
+                    WeightExporter.Format.CSV, ZoneId.of("UTC"), (exported, total) -> {
+                        if (exported % 50_000 < WeightExporter.DEFAULT_PAGE_SIZE) System.gc();
+                        peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+                    });
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long growth = peak[0] - baseline;
+            recorder.record(rows + " rows", "export", String.format(Locale.US,
+                    "%.0f rows/s, peak heap growth %d KB", rows / seconds, growth / 1024));
+            assertTrue("Heap grew by " + growth + " bytes", growth < MAX_HEAP_GROWTH);
+            database.close();
+        }
+        recorder.writeReport();
+    }
+}
@@ -0,0 +1,103 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.ZoneId;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightExporterTest {
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+    private static final int ROWS = 1234;
+
+    private WeightTrackerDatabase database;
+    private long userId;
+
+    @Before
+    public void createDatabase() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        userId = database.userDao().registerUser(user);
+        new WeightImporter(database, 500).importWeights(WeightImporterTest.csvReader(ROWS), userId, "seed", rows -> {});
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void exportCsv_writesEveryWeightOldestFirstInImportFormat() throws IOException {
+        StringWriter out = new StringWriter();
+        long rows = new WeightExporter(database, 100).exportWeights(out, userId, WeightExporter.Format.CSV, ZONE, (exported, total) -> {});
+
+        assertEquals(ROWS, rows);
+        assertRoundTrips(new CsvWeightReader(new StringReader(out.toString()), ZONE));
+    }
+
+    @Test
+    public void exportJson_writesEveryWeightOldestFirstInImportFormat() throws IOException {
+        StringWriter out = new StringWriter();
+        long rows = new WeightExporter(database, 100).exportWeights(out, userId, WeightExporter.Format.JSON, ZONE, (exported, total) -> {});
+
+        assertEquals(ROWS, rows);
+        assertRoundTrips(new JsonWeightReader(new StringReader(out.toString()), ZONE));
+    }
+
+    @Test
+    public void export_stopsBetweenPagesWhenCancelled() throws IOException {
+        long[] lastProgress = new long[1];
+        try {
+            new WeightExporter(database, 100).exportWeights(new StringWriter(), userId, WeightExporter.Format.CSV, ZONE,
+                    (exported, total) -> {
+                        lastProgress[0] = exported;
+                        // Cancel the export after the first page
+                        Thread.currentThread().interrupt();
+                    });
+            fail("Expected the export to be cancelled");
+        } catch (InterruptedIOException expected) {
+            assertEquals(100, lastProgress[0]);
+        }
+    }
+
+    // Reading the export back should give the same weights in date order
+    private void assertRoundTrips(WeightImportReader reader) throws IOException {
+        WeightImportReader expected = WeightImporterTest.csvReader(ROWS);
+        Weight actualWeight = new Weight();
+        Weight expectedWeight = new Weight();
+        int count = 0;
+        while (reader.next(actualWeight)) {
+            assertTrue(expected.next(expectedWeight));
+            assertEquals(expectedWeight.getRecordedDate(), actualWeight.getRecordedDate());
+            assertEquals(expectedWeight.getWeight(), actualWeight.getWeight(), 0);
+            count++;
+        }
+        assertEquals(ROWS, count);
+    }
+}
@@ -0,0 +1,62 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+/**
+ * Throughput of the CSV import pipeline for several batch sizes. Skipped unless enabled:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*WeightImportBenchmark' -Pbenchmark=true -Pbenchmark.rows=100000
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightImportBenchmark {
+    private static final int[] BATCH_SIZES = {100, 1000, 10000};
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+    }
+
+    @Test
+    public void benchmarkImportThroughput() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("import-benchmark");
+        Context context = ApplicationProvider.getApplicationContext();
+        for (int rows : BenchmarkRecorder.datasetSizes()) {
+            for (int batchSize : BATCH_SIZES) {
+                WeightTrackerDatabase database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                        .allowMainThreadQueries()
+                        .build();
+                User user = new User();
+                user.setUsername("user");
+                user.setPassword("password");
+                long userId = database.userDao().registerUser(user);
+
+                WeightImporter importer = new WeightImporter(database, batchSize);
+                long start = System.nanoTime();
+                importer.importWeights(WeightImporterTest.csvReader(rows), userId, "benchmark", imported -> {});
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                recorder.record(rows + " rows", "import batch " + batchSize,
+                        String.format(Locale.US, "%.0f rows/s", rows / seconds));
+                database.close();
+            }
+        }
+        recorder.writeReport();
+    }
+}
@@ -0,0 +1,160 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightImporterTest {
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+    private static final String SOURCE = "content://test/weights.csv";
+
+    private WeightTrackerDatabase database;
+    private long userId;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        userId = database.userDao().registerUser(user);
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void csvReader_parsesHeaderDatesAndEpochMillis() throws IOException {
+        String csv = "date,weight\n2024-03-04,180.5\n\n2024-03-05T07:30,180\n1700000000000,179.5\n";
+        List<Weight> weights = readAll(new CsvWeightReader(new StringReader(csv), ZONE));
+
+        assertEquals(3, weights.size());
+        assertEquals(LocalDate.of(2024, 3, 4).atStartOfDay(ZONE).toInstant().toEpochMilli(),
+                weights.get(0).getRecordedDate());
+        assertEquals(180.5F, weights.get(0).getWeight(), 0);
+        assertEquals(LocalDate.of(2024, 3, 5).atTime(7, 30).atZone(ZONE).toInstant().toEpochMilli(),
+                weights.get(1).getRecordedDate());
+        assertEquals(1700000000000L, weights.get(2).getRecordedDate());
+    }
+
+    @Test
+    public void jsonReader_parsesArrayOfWeights() throws IOException {
+        String json = "[{\"date\": \"2024-03-04\", \"weight\": 180.5, \"note\": \"ignored\"}, {\"weight\": 179, \"date\": \"1700000000000\"}]";
+        List<Weight> weights = readAll(new JsonWeightReader(new StringReader(json), ZONE));
+
+        assertEquals(2, weights.size());
+        assertEquals(180.5F, weights.get(0).getWeight(), 0);
+        assertEquals(1700000000000L, weights.get(1).getRecordedDate());
+    }
+
+    @Test
+    public void importWeights_insertsInBatchesAndReportsProgress() throws IOException {
+        List<Long> progress = new ArrayList<>();
+        WeightImporter importer = new WeightImporter(database, 1000);
+
+        long rows = importer.importWeights(csvReader(2500), userId, SOURCE, progress::add);
+
+        assertEquals(2500, rows);
+        assertEquals(2500, countWeights());
+        assertEquals(List.of(1000L, 2000L, 2500L), progress);
+        assertNull(database.weightDao().getImportCheckpoint(SOURCE));
+    }
+
+    @Test
+    public void importWeights_resumesAfterLastCommittedBatch() throws IOException {
+        WeightImporter importer = new WeightImporter(database, 1000);
+
+        // Fail part way through the second batch
+        try {
+            importer.importWeights(failingAfter(csvReader(2500), 1500), userId, SOURCE, rows -> {});
+            fail("Expected the import to fail");
+        } catch (IOException expected) {
+            // The first batch and its checkpoint were committed together
+        }
+        assertEquals(1000, countWeights());
+        assertEquals(1000, database.weightDao().getImportCheckpoint(SOURCE).getRowsCommitted());
+
+        List<Long> progress = new ArrayList<>();
+        long rows = importer.importWeights(csvReader(2500), userId, SOURCE, progress::add);
+
+        assertEquals(2500, rows);
+        assertEquals(2500, countWeights());
+        assertEquals(List.of(1000L, 2000L, 2500L), progress);
+        assertNull(database.weightDao().getImportCheckpoint(SOURCE));
+    }
+
+    private long countWeights() {
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM Weights", null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    // A CSV file with one reading per day
+    static CsvWeightReader csvReader(int rows) {
+        StringBuilder csv = new StringBuilder("date,weight\n");
+        LocalDate date = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            csv.append(date.plusDays(i)).append(',').append(150 + (i % 50)).append('\n');
+        }
+        return new CsvWeightReader(new StringReader(csv.toString()), ZONE);
+    }
+
+    private static WeightImportReader failingAfter(WeightImportReader reader, int rows) {
+        return new WeightImportReader() {
+            private int read;
+
+            @Override
+            public boolean next(Weight weight) throws IOException {
+                if (read++ == rows) throw new IOException("Interrupted");
+                return reader.next(weight);
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private static List<Weight> readAll(WeightImportReader reader) throws IOException {
+        List<Weight> weights = new ArrayList<>();
+        Weight weight = new Weight();
+        while (reader.next(weight)) {
+            weights.add(weight);
+            weight = new Weight();
+        }
+        reader.close();
+        return weights;
+    }
+}
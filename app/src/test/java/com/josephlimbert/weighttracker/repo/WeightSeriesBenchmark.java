@@ -0,0 +1,83 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightSeries;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Heap retained and load time of a user's full history as a list of entities compared to a
+ * WeightSeries. Skipped unless enabled:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*WeightSeriesBenchmark' -Pbenchmark=true -Pbenchmark.rows=1000000
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightSeriesBenchmark {
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+    }
+
+    @Test
+    public void benchmarkSeriesMemory() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("weight-series-benchmark");
+        Context context = ApplicationProvider.getApplicationContext();
+        for (int rows : BenchmarkRecorder.datasetSizes()) {
+            WeightTrackerDatabase database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                    .allowMainThreadQueries()
+                    .build();
+            User user = new User();
+            user.setUsername("user");
+            user.setPassword("password");
+            long userId = database.userDao().registerUser(user);
+            new WeightImporter(database, 10_000).importWeights(WeightImporterTest.csvReader(rows), userId, "seed", imported -> {});
+
+            long before = usedHeap();
+            long start = System.nanoTime();
+            List<Weight> weights = database.weightDao().getWeightsNewerThan(userId, Long.MIN_VALUE, Integer.MAX_VALUE);
+            double listSeconds = (System.nanoTime() - start) / 1e9;
+            long listBytes = usedHeap() - before;
+            record(recorder, rows, "List<Weight>", weights.size(), listBytes, listSeconds);
+            weights = null;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            WeightSeries series = new WeightSeriesCache(database).get(userId);
+            double seriesSeconds = (System.nanoTime() - start) / 1e9;
+            long seriesBytes = usedHeap() - before;
+            record(recorder, rows, "WeightSeries", series.size(), seriesBytes, seriesSeconds);
+
+            database.close();
+        }
+        recorder.writeReport();
+    }
+
+    private static void record(BenchmarkRecorder recorder, int rows, String structure, int size, long bytes, double seconds) {
+        recorder.record(rows + " rows", structure, String.format(Locale.US,
+                "%d KB retained, %.1f bytes/reading, loaded in %.0f ms",
+                bytes / 1024, (double) bytes / Math.max(size, 1), seconds * 1000));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
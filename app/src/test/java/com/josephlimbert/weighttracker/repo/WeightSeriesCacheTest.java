@@ -0,0 +1,87 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightSeries;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightSeriesCacheTest {
+    private WeightTrackerDatabase database;
+    private WeightSeriesCache cache;
+    private long userId;
+
+    @Before
+    public void createDatabase() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        cache = new WeightSeriesCache(database);
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        userId = database.userDao().registerUser(user);
+        new WeightImporter(database, 100).importWeights(WeightImporterTest.csvReader(250), userId, "seed", rows -> {});
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void get_readsEveryWeightOldestFirst() {
+        List<Weight> weights = database.weightDao().getWeightsNewerThan(userId, Long.MIN_VALUE, Integer.MAX_VALUE);
+        WeightSeries series = cache.get(userId);
+
+        assertEquals(weights.size(), series.size());
+        for (int i = 0; i < weights.size(); i++) {
+            assertEquals(weights.get(i).getRecordedDate(), series.getDate(i));
+            assertEquals(weights.get(i).getWeight(), series.getWeight(i), 0);
+        }
+    }
+
+    @Test
+    public void get_cachesSeriesUntilInvalidated() {
+        WeightSeries series = cache.get(userId);
+        assertSame(series, cache.get(userId));
+
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setWeight(170);
+        weight.setRecorded(series.getDate(series.size() - 1) + 1, ZoneId.systemDefault());
+        database.weightDao().addWeight(weight);
+        cache.invalidate();
+
+        WeightSeries reloaded = cache.get(userId);
+        assertNotSame(series, reloaded);
+        assertEquals(series.size() + 1, reloaded.size());
+        assertEquals(170, reloaded.getWeight(reloaded.size() - 1), 0);
+    }
+
+    @Test
+    public void get_returnsEmptySeriesForUserWithoutWeights() {
+        assertEquals(0, cache.get(userId + 1).size());
+    }
+}
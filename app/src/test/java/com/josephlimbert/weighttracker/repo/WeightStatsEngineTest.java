@@ -0,0 +1,121 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.josephlimbert.weighttracker.model.WeightStats;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class WeightStatsEngineTest {
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final float TOLERANCE = 1e-3F;
+
+    @Test
+    public void getStats_isEmptyWithoutWeights() {
+        WeightStats stats = new WeightStatsEngine().getStats();
+        assertNull(stats.getTrendWeight());
+        assertNull(stats.getWeeklyRate());
+    }
+
+    @Test
+    public void getStats_averagesCalendarDays() {
+        WeightStatsEngine engine = new WeightStatsEngine();
+        engine.setDay(START, 200, 1);
+        engine.setDay(START.plusDays(20), 190, 1);
+        engine.setDay(START.plusDays(25), 370, 2);
+
+        WeightStats stats = engine.getStats();
+        assertEquals(START.plusDays(25), stats.getLastDay());
+        // Days 19 to 25 hold 190 and two readings summing to 370
+        assertEquals(560 / 3F, stats.getSevenDayAverage(), TOLERANCE);
+        assertEquals(760 / 4F, stats.getThirtyDayAverage(), TOLERANCE);
+    }
+
+    @Test
+    public void getProjectedGoalDate_followsWeeklyRate() {
+        WeightStats stats = new WeightStats(START, 200F, 200F, 200F, -2F);
+        assertEquals(START.plusDays(35), stats.getProjectedGoalDate(190F));
+        assertNull(stats.getProjectedGoalDate(210F));
+        assertNull(stats.getProjectedGoalDate(null));
+    }
+
+    // Random adds, edits, backdated entries and removals must always give the same statistics
+    // as recalculating everything from the full list of days
+    @Test
+    public void randomChanges_matchNaiveRecalculation() {
+        Random random = new Random(13);
+        WeightStatsEngine engine = new WeightStatsEngine();
+        TreeMap<Long, double[]> days = new TreeMap<>();
+
+        for (int i = 0; i < 3000; i++) {
+            LocalDate date = START.plusDays(random.nextInt(i < 500 ? 60 : 400));
+            if (random.nextInt(5) == 0) {
+                engine.setDay(date, 0, 0);
+                days.remove(date.toEpochDay());
+            } else {
+                int count = 1 + random.nextInt(3);
+                double sum = 0;
+                for (int j = 0; j < count; j++) sum += 150 + random.nextInt(1000) / 10.0;
+                engine.setDay(date, sum, count);
+                days.put(date.toEpochDay(), new double[] {sum, count});
+            }
+            assertStatsEqual(naiveStats(days), engine.getStats());
+        }
+    }
+
+    private static void assertStatsEqual(WeightStats expected, WeightStats actual) {
+        assertEquals(expected.getLastDay(), actual.getLastDay());
+        assertNullableEquals(expected.getSevenDayAverage(), actual.getSevenDayAverage());
+        assertNullableEquals(expected.getThirtyDayAverage(), actual.getThirtyDayAverage());
+        assertNullableEquals(expected.getTrendWeight(), actual.getTrendWeight());
+        assertNullableEquals(expected.getWeeklyRate(), actual.getWeeklyRate());
+    }
+
+    private static void assertNullableEquals(Float expected, Float actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else {
+            assertEquals(expected, actual, TOLERANCE);
+        }
+    }
+
+    // Recalculate every statistic from scratch in one pass over the days
+    private static WeightStats naiveStats(TreeMap<Long, double[]> days) {
+        if (days.isEmpty()) return WeightStats.EMPTY;
+
+        Map<Long, Double> trends = new TreeMap<>();
+        double trend = Double.NaN;
+        for (Map.Entry<Long, double[]> day : days.entrySet()) {
+            double mean = day.getValue()[0] / day.getValue()[1];
+            trend = Double.isNaN(trend) ? mean : trend + WeightStatsEngine.TREND_SMOOTHING * (mean - trend);
+            trends.put(day.getKey(), trend);
+        }
+
+        long lastDay = days.lastKey();
+        Long weekAgo = days.floorKey(lastDay - 7);
+        if (weekAgo == null) weekAgo = days.firstKey();
+        Float weeklyRate = weekAgo == lastDay ? null
+                : (float) ((trend - trends.get(weekAgo)) / (lastDay - weekAgo) * 7);
+
+        return new WeightStats(LocalDate.ofEpochDay(lastDay), naiveAverage(days, lastDay, 7),
+                naiveAverage(days, lastDay, 30), (float) trend, weeklyRate);
+    }
+
+    private static float naiveAverage(TreeMap<Long, double[]> days, long lastDay, int numberOfDays) {
+        double sum = 0;
+        int count = 0;
+        for (Map.Entry<Long, double[]> day : days.entrySet()) {
+            if (day.getKey() > lastDay - numberOfDays) {
+                sum += day.getValue()[0];
+                count += (int) day.getValue()[1];
+            }
+        }
+        return (float) (sum / count);
+    }
+}
@@ -0,0 +1,165 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calls the repository from many threads at once to check that only one shared repository is
+ * ever built and that no write is lost.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightTrackerRepositoryConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int WRITES_PER_THREAD = 50;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final AtomicInteger databasesBuilt = new AtomicInteger();
+    private final ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+    private WeightTrackerRepository repo;
+    private volatile WeightTrackerDatabase database;
+
+    // Build an in-memory database, keeping it so the test can check what was written
+    private final WeightTrackerRepository.DatabaseFactory inMemoryDatabase = (context, queryExecutor) -> {
+        databasesBuilt.incrementAndGet();
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .setQueryExecutor(queryExecutor)
+                .allowMainThreadQueries()
+                .build();
+        return database;
+    };
+
+    // Weight writes queue a goal check with WorkManager
+    @Before
+    public void initWorkManager() {
+        WorkManagerTestInitHelper.initializeTestWorkManager(context);
+    }
+
+    @After
+    public void tearDown() {
+        threads.shutdownNow();
+        WeightTrackerRepository.setInstance(null);
+        if (repo != null) repo.close();
+    }
+
+    @Test
+    public void getInstance_fromManyThreads_buildsOneRepository() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<WeightTrackerRepository>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(threads.submit(() -> {
+                start.await();
+                return WeightTrackerRepository.getInstance(context, inMemoryDatabase);
+            }));
+        }
+        start.countDown();
+
+        repo = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<WeightTrackerRepository> result : results) {
+            assertSame(repo, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, databasesBuilt.get());
+    }
+
+    @Test
+    public void writesFromManyThreads_areAllApplied() throws Exception {
+        repo = WeightTrackerRepository.create(context, inMemoryDatabase);
+        WeightTrackerRepository.setInstance(repo);
+        long userId = registerUser();
+
+        // Every thread adds its own weights at the same time as the others
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> adds = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            adds.add(threads.submit(() -> {
+                start.await();
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    long time = (thread * WRITES_PER_THREAD + i) * DAY;
+                    WeightTrackerRepository.getInstance(context).addWeight(newWeight(userId, time, 150 + i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> add : adds) add.get(30, TimeUnit.SECONDS);
+        repo.awaitWrites(30, TimeUnit.SECONDS);
+
+        List<Weight> stored = database.weightDao().getWeightsNewerThan(userId, Long.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(THREADS * WRITES_PER_THREAD, stored.size());
+
+        // Then every thread edits one half of its weights and deletes the other half
+        List<Future<?>> edits = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Weight> own = stored.subList(t * WRITES_PER_THREAD, (t + 1) * WRITES_PER_THREAD);
+            edits.add(threads.submit(() -> {
+                for (int i = 0; i < own.size(); i++) {
+                    Weight weight = new Weight(own.get(i));
+                    if (i % 2 == 0) {
+                        weight.setWeight(200);
+                        repo.updateWeight(weight);
+                    } else {
+                        repo.deleteWeight(weight);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> edit : edits) edit.get(30, TimeUnit.SECONDS);
+        // Run the posted calls and the queue's flush, then wait for the flush to be written
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WeightWriteQueue.DEFAULT_WINDOW_MILLIS));
+        repo.awaitWrites(30, TimeUnit.SECONDS);
+
+        List<Weight> remaining = database.weightDao().getWeightsNewerThan(userId, Long.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(THREADS * WRITES_PER_THREAD / 2, remaining.size());
+        for (Weight weight : remaining) {
+            assertEquals(200, weight.getWeight(), 0);
+        }
+        assertEquals(1, databasesBuilt.get());
+    }
+
+    private long registerUser() {
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        return database.userDao().registerUser(user);
+    }
+
+    private static Weight newWeight(long userId, long time, float value) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(time, ZoneId.systemDefault());
+        weight.setWeight(value);
+        return weight;
+    }
+}
@@ -0,0 +1,155 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.josephlimbert.weighttracker.model.ChartPoints;
+import com.josephlimbert.weighttracker.model.Dashboard;
+import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.LoginResult;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Calls every repository operation from the main looper against a database that doesn't allow
+ * main thread queries. Room throws as soon as a DAO call runs on the main looper, so any
+ * operation that reads or writes on the calling thread fails the test.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightTrackerRepositoryThreadingTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private WeightTrackerDatabase database;
+    private WeightTrackerRepository repo;
+
+    @Before
+    public void createRepository() {
+        WorkManagerTestInitHelper.initializeTestWorkManager(context);
+        repo = WeightTrackerRepository.create(context, (context, queryExecutor) -> {
+            database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                    .setQueryExecutor(queryExecutor)
+                    .build();
+            return database;
+        });
+    }
+
+    @After
+    public void closeRepository() {
+        repo.close();
+    }
+
+    @Test
+    public void daoCallOnMainLooper_throws() {
+        // The test runs on the main looper, so this is what any main thread access would hit
+        assertThrows(IllegalStateException.class, () -> database.weightDao().loadCurrentWeight(1));
+    }
+
+    @Test
+    public void everyOperation_runsOffTheMainLooper() throws Exception {
+        AtomicReference<LoginResult> login = new AtomicReference<>();
+        repo.loginOrRegister("user", "password", login::set);
+        long userId = await(login::get).getUserId();
+
+        repo.addWeight(newWeight(userId, DAY, 200));
+        repo.addWeight(newWeight(userId, 2 * DAY, 195));
+        GoalWeight goal = new GoalWeight();
+        goal.setUserId(userId);
+        goal.setWeight(180);
+        repo.addGoalWeight(goal);
+        repo.awaitWrites(10, TimeUnit.SECONDS);
+
+        Dashboard dashboard = await(observe(repo.getDashboard(userId)));
+        assertEquals(195, dashboard.getCurrentWeight(), 0);
+        assertNotNull(await(observe(repo.getWeightStats(userId))));
+
+        AtomicReference<ChartPoints> chart = new AtomicReference<>();
+        repo.getChartPoints(userId, 0, 3 * DAY, 100, chart::set);
+        await(chart::get);
+
+        AtomicReference<Weight> loaded = new AtomicReference<>();
+        repo.getWeight(inBackground(() -> database.weightDao().loadCurrentWeight(userId).getId()), loaded::set);
+        Weight weight = await(loaded::get);
+
+        // Edits and deletes are queued on the main looper and written when the window closes
+        weight.setWeight(190);
+        repo.updateWeight(weight);
+        repo.deleteWeight(weight);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WeightWriteQueue.DEFAULT_WINDOW_MILLIS));
+        // The insert doesn't set the goal's ID, so update the stored row
+        GoalWeight storedGoal = inBackground(() -> database.weightDao().loadGoalWeight(userId));
+        storedGoal.setWeight(175);
+        repo.updateGoalWeight(storedGoal);
+        repo.prewarm();
+        repo.awaitWrites(10, TimeUnit.SECONDS);
+
+        assertEquals(1, (int) inBackground(() -> database.weightDao().getWeightCount(userId)));
+        assertEquals(175, inBackground(() -> database.weightDao().loadGoalWeight(userId)).getWeight(), 0);
+    }
+
+    // Read straight from the database for the test's own checks, off the main looper
+    private static <T> T inBackground(Callable<T> read) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(read).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> Supplier<T> observe(LiveData<T> liveData) {
+        liveData.observeForever(value -> {});
+        return liveData::getValue;
+    }
+
+    // Run the main looper until the value is set. Results are posted there by the background threads.
+    private static <T> T await(Supplier<T> value) throws InterruptedException {
+        waitForMainLooper(() -> value.get() != null);
+        T result = value.get();
+        assertNotNull("Timed out waiting for a result", result);
+        return result;
+    }
+
+    private static void waitForMainLooper(Supplier<Boolean> done) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (done.get()) return;
+            Thread.sleep(10);
+        }
+    }
+
+    private static Weight newWeight(long userId, long time, float value) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(time, ZoneId.systemDefault());
+        weight.setWeight(value);
+        return weight;
+    }
+}
@@ -0,0 +1,180 @@
+package com.josephlimbert.weighttracker.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightWriteQueueTest {
+    private static final long WINDOW = 300;
+
+    private WeightTrackerDatabase database;
+    private WeightWriter weightWriter;
+    private WeightWriteQueue queue;
+    private long userId;
+    private final AtomicInteger invalidations = new AtomicInteger();
+    // Whether a transaction was still open each time the writer's listener was called
+    private final List<Boolean> notifiedInTransaction = new ArrayList<>();
+
+    @Before
+    public void createDatabase() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        // Run queries and invalidation checks on the calling thread so every invalidation is
+        // counted before the test checks the count
+        database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                .setQueryExecutor(Runnable::run)
+                .setTransactionExecutor(Runnable::run)
+                .allowMainThreadQueries()
+                .build();
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        userId = database.userDao().registerUser(user);
+        new WeightImporter(database, 1000).importWeights(WeightImporterTest.csvReader(200), userId, "seed", rows -> {});
+
+        weightWriter = new WeightWriter(database, new RollupUpdater(database, ZoneId.of("UTC")),
+                (changedUserId, recordedDays) -> notifiedInTransaction.add(database.inTransaction()));
+        queue = new WeightWriteQueue(weightWriter, Runnable::run, new Handler(Looper.getMainLooper()), WINDOW);
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("Weights") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidations.incrementAndGet();
+            }
+        });
+        idle();
+        invalidations.set(0);
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void burstOfDeletes_isWrittenInOneTransaction() {
+        List<Weight> weights = weights();
+        for (int i = 0; i < 100; i++) {
+            queue.deleteWeight(weights.get(i));
+        }
+
+        // Nothing is written until the window closes but the deletes are pending straight away
+        assertEquals(200, database.weightDao().getWeightCount(userId));
+        assertTrue(queue.getPendingWrites().getValue().isDeleted(weights.get(0).getId()));
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WINDOW));
+        idle();
+
+        assertEquals(100, database.weightDao().getWeightCount(userId));
+        assertEquals(1, invalidations.get());
+        // The listener is told once for the user, after the batch has committed
+        assertEquals(List.of(false), notifiedInTransaction);
+    }
+
+    @Test
+    public void burstOfDirectDeletes_invalidatesForEveryDelete() {
+        List<Weight> weights = weights();
+        for (int i = 0; i < 100; i++) {
+            weightWriter.deleteWeight(weights.get(i));
+        }
+        idle();
+
+        // Each delete commits its own transaction, and each commit invalidates the table
+        assertEquals(100, invalidations.get());
+    }
+
+    @Test
+    public void repeatedEdits_writeOnlyTheLastValue() {
+        Weight weight = weights().get(0);
+        for (int i = 1; i <= 5; i++) {
+            Weight edit = new Weight(weight);
+            edit.setWeight(100 + i);
+            queue.updateWeight(edit);
+        }
+        assertEquals(105, queue.getPendingWrites().getValue().getUpdate(weight.getId()).getWeight(), 0);
+
+        queue.flush();
+        idle();
+
+        assertEquals(105, database.weightDao().getWeight(weight.getId()).getWeight(), 0);
+        // The edit stays overlaid until the list reloads from the database
+        assertTrue(queue.clearConfirmed());
+        assertTrue(queue.getPendingWrites().getValue().isEmpty());
+    }
+
+    @Test
+    public void failedBatch_rollsBackEveryWriteAndReportsError() {
+        List<Weight> weights = weights();
+        queue.deleteWeight(weights.get(0));
+        // Moving a weight onto another weight's date breaks the unique index
+        Weight clash = new Weight(weights.get(1));
+        clash.setRecorded(weights.get(2).getRecordedDate(), ZoneId.of("UTC"));
+        queue.updateWeight(clash);
+
+        queue.flush();
+        idle();
+
+        // Nothing was observing when the batch failed, the error waits for the first observer
+        Exception[] error = new Exception[1];
+        queue.getWriteErrors().observeForever(event -> error[0] = event.consume());
+        assertNotNull(error[0]);
+        // and is only delivered once, for example when the list is recreated
+        queue.getWriteErrors().observeForever(event -> error[0] = event.consume());
+        assertNull(error[0]);
+        assertEquals(200, database.weightDao().getWeightCount(userId));
+        assertNotNull(database.weightDao().getWeight(weights.get(0).getId()));
+        assertTrue(queue.getPendingWrites().getValue().isEmpty());
+        assertFalse(queue.clearConfirmed());
+        // Nothing changed, so the listener isn't told about the rolled back delete
+        assertTrue(notifiedInTransaction.isEmpty());
+    }
+
+    @Test
+    public void editAfterDelete_isIgnored() {
+        Weight weight = weights().get(0);
+        queue.deleteWeight(weight);
+        queue.updateWeight(new Weight(weight));
+
+        PendingWrites pending = queue.getPendingWrites().getValue();
+        assertTrue(pending.isDeleted(weight.getId()));
+        assertNull(pending.getUpdate(weight.getId()));
+    }
+
+    private List<Weight> weights() {
+        return database.weightDao().getWeightsNewerThan(userId, Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
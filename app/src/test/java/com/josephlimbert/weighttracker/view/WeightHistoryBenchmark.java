@@ -0,0 +1,192 @@
+package com.josephlimbert.weighttracker.view;
+
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.Transformations;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingDataTransforms;
+import androidx.paging.PagingLiveData;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightListItem;
+import com.josephlimbert.weighttracker.repo.UserChangeTracker;
+import com.josephlimbert.weighttracker.repo.WeightCache;
+import com.josephlimbert.weighttracker.repo.WeightPagingSource;
+import com.josephlimbert.weighttracker.repo.WeightTrackerDatabase;
+import com.josephlimbert.weighttracker.viewmodel.WeightFormatter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Heap retained and time to the first frame of rows for the history list, paged from the
+ * database compared to loading the user's whole history into the adapter. The first frame is
+ * the first layout of the recycler view that has rows in it. Skipped unless enabled:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*WeightHistoryBenchmark' -Pbenchmark=true -Pbenchmark.rows=10000,100000,1000000
+ *
+ * Results are written to app/build/reports/benchmark/weight-history-benchmark.txt.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightHistoryBenchmark {
+    // The same page size as WeightViewModel
+    private static final int PAGE_SIZE = 30;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private AppCompatActivity activity;
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+        ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+        activity = controller.get();
+        activity.setTheme(R.style.Theme_WeightTracker);
+        controller.setup();
+    }
+
+    @After
+    public void shutDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void benchmarkFirstFrame() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("weight-history-benchmark");
+        for (int rows : BenchmarkRecorder.datasetSizes()) {
+            WeightTrackerDatabase database = Room.inMemoryDatabaseBuilder(activity, WeightTrackerDatabase.class)
+                    .allowMainThreadQueries()
+                    .build();
+            long userId = seed(database, rows);
+            measure(recorder, rows, "paged", () -> pagedList(database, userId));
+            measure(recorder, rows, "full list", () -> fullList(database, userId));
+            database.close();
+        }
+        recorder.writeReport();
+    }
+
+    // Show the list in a new recycler view and record how long the first frame of rows took and
+    // how much heap the list holds once it is on screen
+    private void measure(BenchmarkRecorder recorder, int rows, String list,
+                         Supplier<LiveData<PagingData<WeightListItem>>> pages) throws InterruptedException {
+        RecyclerView recyclerView = new RecyclerView(activity);
+        recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+        recyclerView.setHasFixedSize(true);
+        ListFragment.WeightListAdapter adapter = new ListFragment.WeightListAdapter(null, null);
+        recyclerView.setAdapter(adapter);
+        activity.setContentView(recyclerView);
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        LiveData<PagingData<WeightListItem>> pagingData = pages.get();
+        Observer<PagingData<WeightListItem>> observer = data -> adapter.submitData(activity.getLifecycle(), data);
+        pagingData.observeForever(observer);
+        waitForFirstFrame(recyclerView);
+        double firstFrameSeconds = (System.nanoTime() - start) / 1e9;
+        long bytes = usedHeap() - before;
+
+        recorder.record(rows + " rows", list, String.format(Locale.US,
+                "first frame in %.0f ms, %d KB retained, %d rows loaded",
+                firstFrameSeconds * 1000, bytes / 1024, adapter.snapshot().getItems().size()));
+
+        pagingData.removeObserver(observer);
+        recyclerView.setAdapter(null);
+    }
+
+    // The list as WeightViewModel builds it, one page at a time from the database
+    private LiveData<PagingData<WeightListItem>> pagedList(WeightTrackerDatabase database, long userId) {
+        WeightCache weightCache = new WeightCache(database, PAGE_SIZE * 3);
+        UserChangeTracker userChangeTracker = new UserChangeTracker(executor, executor, new Handler(Looper.getMainLooper()));
+        Pager<Long, Weight> pager = new Pager<>(new PagingConfig(PAGE_SIZE, PAGE_SIZE, false),
+                () -> new WeightPagingSource(database, weightCache, userChangeTracker, userId,
+                        MoreExecutors.listeningDecorator(executor)));
+        return Transformations.map(PagingLiveData.getLiveData(pager),
+                pagingData -> PagingDataTransforms.map(pagingData, executor, this::toListItem));
+    }
+
+    // Every weight the user has, loaded and formatted before the list is shown
+    private LiveData<PagingData<WeightListItem>> fullList(WeightTrackerDatabase database, long userId) {
+        List<Weight> weights = database.weightDao().loadWeightList(userId);
+        List<WeightListItem> items = new ArrayList<>(weights.size());
+        for (Weight weight : weights) {
+            items.add(toListItem(weight));
+        }
+        return new MutableLiveData<>(PagingData.from(items));
+    }
+
+    private WeightListItem toListItem(Weight weight) {
+        return WeightFormatter.toListItem(weight, Locale.US, ZoneId.systemDefault());
+    }
+
+    // Lay the list out on a phone sized screen until it has rows. Pages are loaded and formatted
+    // on the executor and posted to the main looper.
+    private static void waitForFirstFrame(RecyclerView recyclerView) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            recyclerView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+            recyclerView.layout(0, 0, 1080, 1920);
+            if (recyclerView.getChildCount() > 0) return;
+            Thread.sleep(1);
+        }
+        throw new AssertionError("Timed out waiting for the first frame");
+    }
+
+    // One user with a reading every day going back from the newest
+    private static long seed(WeightTrackerDatabase database, int rows) {
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        long userId = database.userDao().registerUser(user);
+        database.runInTransaction(() -> {
+            for (int row = 0; row < rows; row++) {
+                Weight weight = new Weight();
+                weight.setUserId(userId);
+                weight.setRecorded((rows - row) * DAY, ZoneId.systemDefault());
+                weight.setWeight(150 + row % 50);
+                database.weightDao().addWeight(weight);
+            }
+        });
+        return userId;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
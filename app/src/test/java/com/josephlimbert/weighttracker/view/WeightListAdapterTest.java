@@ -0,0 +1,127 @@
+package com.josephlimbert.weighttracker.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.paging.PagingData;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.josephlimbert.weighttracker.R;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightListItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Shows 5,000 weights in the history list's adapter and checks that changing one weight rebinds
+ * only that row, not every row on screen.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class WeightListAdapterTest {
+    private static final int ITEMS = 5000;
+    private static final int CHANGED = 2;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private AppCompatActivity activity;
+    private RecyclerView recyclerView;
+    private final CountingAdapter adapter = new CountingAdapter();
+
+    // Records the position of every row it binds
+    private static class CountingAdapter extends ListFragment.WeightListAdapter {
+        final List<Integer> bound = new ArrayList<>();
+
+        CountingAdapter() {
+            super(null, null);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ListFragment.WeightListHolder holder, int position) {
+            bound.add(position);
+            super.onBindViewHolder(holder, position);
+        }
+    }
+
+    @Before
+    public void showList() {
+        ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+        activity = controller.get();
+        activity.setTheme(R.style.Theme_WeightTracker);
+        controller.setup();
+
+        recyclerView = new RecyclerView(activity);
+        recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setAdapter(adapter);
+        activity.setContentView(recyclerView);
+    }
+
+    @Test
+    public void singleChange_rebindsOnlyTheChangedRow() throws InterruptedException {
+        adapter.submitData(activity.getLifecycle(), PagingData.from(items(150)));
+        waitFor(() -> adapter.getItemCount() == ITEMS);
+        layout();
+        int rowsOnScreen = recyclerView.getChildCount();
+        assertTrue("Expected a screen of rows, got " + rowsOnScreen, rowsOnScreen > CHANGED && rowsOnScreen < 100);
+        adapter.bound.clear();
+
+        // The new list is diffed against the old one in the background
+        adapter.submitData(activity.getLifecycle(), PagingData.from(items(149.5F)));
+        waitFor(() -> "149.5".equals(adapter.peek(CHANGED).getWeightText()));
+        layout();
+
+        assertEquals(List.of(CHANGED), adapter.bound);
+    }
+
+    // Newest first like the real list. Only the weight at CHANGED differs between two calls.
+    private static List<WeightListItem> items(float changedWeight) {
+        List<WeightListItem> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            Weight weight = new Weight();
+            weight.setId(ITEMS - i);
+            weight.setUserId(1);
+            weight.setRecorded((ITEMS - i) * DAY, ZoneId.of("UTC"));
+            weight.setWeight(i == CHANGED ? changedWeight : 150);
+            String text = String.valueOf(weight.getWeight());
+            items.add(new WeightListItem(weight, "Mon", String.valueOf(i % 28 + 1), text));
+        }
+        return items;
+    }
+
+    private void layout() {
+        shadowOf(Looper.getMainLooper()).idle();
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 1080, 1920);
+    }
+
+    // Run the main looper until the condition holds. Paging diffs on a background thread and
+    // posts the result to the main looper.
+    private static void waitFor(Supplier<Boolean> done) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (done.get()) return;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Timed out waiting for the adapter");
+    }
+}
@@ -0,0 +1,42 @@
+package com.josephlimbert.weighttracker.viewmodel;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.josephlimbert.weighttracker.BenchmarkRecorder;
+import com.josephlimbert.weighttracker.model.ChartPoints;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Time to downsample a weight series to the width of a phone screen. Skipped unless enabled:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*ChartDownsamplerBenchmark' -Pbenchmark=true -Pbenchmark.rows=100000,1000000
+ */
+public class ChartDownsamplerBenchmark {
+    // Chart widths in pixels, and twice that for the range loaded around the visible part
+    private static final int[] THRESHOLDS = {1080, 2160};
+
+    @Before
+    public void checkEnabled() {
+        assumeTrue("Run with -Pbenchmark=true", BenchmarkRecorder.isEnabled());
+    }
+
+    @Test
+    public void benchmarkLttb() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("chart-downsampler-benchmark");
+        for (int rows : BenchmarkRecorder.datasetSizes()) {
+            ChartPoints points = ChartDownsamplerTest.series(rows, new Random(rows));
+            for (int threshold : THRESHOLDS) {
+                long[] dates = new long[threshold];
+                float[] weights = new float[threshold];
+                recorder.measure(rows + " rows", "lttb to " + threshold, 20, 100, iteration ->
+                        ChartDownsampler.lttb(points.getDates(), points.getWeights(), points.getSize(),
+                                threshold, dates, weights));
+            }
+        }
+        recorder.writeReport();
+    }
+}
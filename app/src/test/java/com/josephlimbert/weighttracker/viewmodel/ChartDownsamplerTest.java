@@ -0,0 +1,73 @@
+package com.josephlimbert.weighttracker.viewmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.josephlimbert.weighttracker.model.ChartPoints;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ChartDownsamplerTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void downsample_returnsSmallSeriesUnchanged() {
+        ChartPoints points = series(50, new Random(1));
+        assertSame(points, ChartDownsampler.downsample(points, 100));
+    }
+
+    @Test
+    public void downsample_keepsEndpointsAndThreshold() {
+        ChartPoints points = series(10_000, new Random(2));
+        ChartPoints downsampled = ChartDownsampler.downsample(points, 300);
+
+        assertEquals(300, downsampled.getSize());
+        assertEquals(points.getDates()[0], downsampled.getDates()[0]);
+        assertEquals(points.getDates()[9_999], downsampled.getDates()[299]);
+        assertEquals(points.getWeights()[9_999], downsampled.getWeights()[299], 0);
+        assertEquals(points.getFrom(), downsampled.getFrom());
+        assertEquals(points.getTo(), downsampled.getTo());
+    }
+
+    @Test
+    public void downsample_keepsDatesInOrder() {
+        ChartPoints downsampled = ChartDownsampler.downsample(series(100_000, new Random(3)), 1080);
+        long[] dates = downsampled.getDates();
+        for (int i = 1; i < downsampled.getSize(); i++) {
+            assertTrue(dates[i] > dates[i - 1]);
+        }
+    }
+
+    @Test
+    public void downsample_keepsSpikes() {
+        ChartPoints points = series(5_000, new Random(4));
+        points.getWeights()[1234] = 300;
+        points.getWeights()[3456] = 50;
+
+        ChartPoints downsampled = ChartDownsampler.downsample(points, 100);
+        boolean foundHigh = false;
+        boolean foundLow = false;
+        for (int i = 0; i < downsampled.getSize(); i++) {
+            foundHigh |= downsampled.getWeights()[i] == 300;
+            foundLow |= downsampled.getWeights()[i] == 50;
+        }
+        assertTrue(foundHigh);
+        assertTrue(foundLow);
+    }
+
+    // A daily weight drifting around 180 pounds
+    static ChartPoints series(int size, Random random) {
+        long[] dates = new long[size];
+        float[] weights = new float[size];
+        float weight = 180;
+        for (int i = 0; i < size; i++) {
+            weight += random.nextFloat() - 0.5F;
+            dates[i] = 1_600_000_000_000L + i * DAY;
+            weights[i] = weight;
+        }
+        return new ChartPoints(dates, weights, size, dates[0], dates[size - 1] + 1);
+    }
+}
@@ -0,0 +1,62 @@
+package com.josephlimbert.weighttracker.viewmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.model.WeightListItem;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Locale;
+
+public class WeightFormatterTest {
+    private static final ZoneId ZONE = ZoneId.of("America/Chicago");
+
+    @Test
+    public void toListItem_formatsDayAndWeight() {
+        Weight weight = new Weight();
+        weight.setWeight(180.5F);
+        weight.setRecorded(LocalDate.of(2024, 3, 4).atStartOfDay(ZONE).toInstant().toEpochMilli(), ZONE);
+
+        WeightListItem item = WeightFormatter.toListItem(weight, Locale.US, ZONE);
+
+        assertSame(weight, item.getWeight());
+        assertEquals("Mon", item.getDayOfWeek());
+        assertEquals("4", item.getDayOfMonth());
+        assertEquals("180.5 Lbs", item.getWeightText());
+    }
+
+    @Test
+    public void formatters_areCachedPerLocale() {
+        assertSame(WeightFormatter.dayOfWeekFormat(Locale.US), WeightFormatter.dayOfWeekFormat(Locale.US));
+        assertSame(WeightFormatter.dayOfMonthFormat(Locale.GERMANY), WeightFormatter.dayOfMonthFormat(Locale.GERMANY));
+        assertEquals("Mo.", WeightFormatter.dayOfWeekFormat(Locale.GERMANY)
+                .format(LocalDate.of(2024, 3, 4)));
+    }
+
+    // Looking up a cached formatter should not allocate once the locale has been seen
+    @Test
+    public void formatterLookup_doesNotAllocateWhenWarm() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 10_000; i++) {
+            WeightFormatter.dayOfWeekFormat(Locale.US);
+            WeightFormatter.dayOfMonthFormat(Locale.US);
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            WeightFormatter.dayOfWeekFormat(Locale.US);
+            WeightFormatter.dayOfMonthFormat(Locale.US);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow for the bookkeeping done by getThreadAllocatedBytes itself
+        assertEquals(0, allocated / 1024);
+    }
+}
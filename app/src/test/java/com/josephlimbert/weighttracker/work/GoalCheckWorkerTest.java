@@ -0,0 +1,184 @@
+package com.josephlimbert.weighttracker.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.work.Data;
+import androidx.work.ListenableWorker;
+import androidx.work.WorkerFactory;
+import androidx.work.WorkerParameters;
+import androidx.work.testing.TestListenableWorkerBuilder;
+
+import com.josephlimbert.weighttracker.model.GoalWeight;
+import com.josephlimbert.weighttracker.model.User;
+import com.josephlimbert.weighttracker.model.Weight;
+import com.josephlimbert.weighttracker.repo.SettingsStore;
+import com.josephlimbert.weighttracker.repo.WeightTrackerDatabase;
+import com.josephlimbert.weighttracker.repo.WeightTrackerRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class GoalCheckWorkerTest {
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final FakeGoalNotifier notifier = new FakeGoalNotifier();
+    private WeightTrackerDatabase database;
+    private WeightTrackerRepository repo;
+    private SettingsStore settingsStore;
+    private long userId;
+
+    // Records every goal it sends, fails while failures is above zero and sends nothing while
+    // disabled, like SMS turned off on the settings screen
+    private static class FakeGoalNotifier implements GoalNotifier {
+        final List<Float> sent = new ArrayList<>();
+        int failures;
+        boolean disabled;
+
+        @Override
+        public boolean notifyGoalReached(float goalWeight) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("No signal");
+            }
+            if (disabled) return false;
+            sent.add(goalWeight);
+            return true;
+        }
+    }
+
+    @Before
+    public void createRepository() {
+        repo = WeightTrackerRepository.create(context, (context, queryExecutor) -> {
+            database = Room.inMemoryDatabaseBuilder(context, WeightTrackerDatabase.class)
+                    .allowMainThreadQueries()
+                    .build();
+            return database;
+        });
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+        userId = database.userDao().registerUser(user);
+        settingsStore = new SettingsStore(context, "settings_goal_check");
+    }
+
+    @After
+    public void closeRepository() {
+        repo.close();
+        settingsStore.dispose();
+    }
+
+    @Test
+    public void goalReached_notifiesOnce() {
+        setGoal(180);
+        addWeight(1, 185);
+        assertEquals(ListenableWorker.Result.success(), runWorker(0));
+        assertEquals(0, notifier.sent.size());
+
+        addWeight(2, 179.5F);
+        assertEquals(ListenableWorker.Result.success(), runWorker(0));
+        addWeight(3, 178);
+        assertEquals(ListenableWorker.Result.success(), runWorker(0));
+
+        assertEquals(List.of(180F), notifier.sent);
+        assertEquals(Float.valueOf(180), settingsStore.readNotifiedGoal(userId));
+    }
+
+    @Test
+    public void newGoal_isNotifiedAgain() {
+        setGoal(180);
+        addWeight(1, 179);
+        runWorker(0);
+        setGoal(175);
+        addWeight(2, 174);
+        runWorker(0);
+
+        assertEquals(List.of(180F, 175F), notifier.sent);
+    }
+
+    @Test
+    public void backdatedWeight_isJudgedByTheLatestWeight() {
+        setGoal(180);
+        addWeight(10, 185);
+        // An old weight below the goal doesn't mean the goal is reached now
+        addWeight(1, 170);
+        runWorker(0);
+
+        assertEquals(0, notifier.sent.size());
+    }
+
+    @Test
+    public void failedNotification_retriesUntilTheLastAttempt() {
+        setGoal(180);
+        addWeight(1, 179);
+        notifier.failures = GoalCheckWorker.MAX_ATTEMPTS;
+
+        assertEquals(ListenableWorker.Result.retry(), runWorker(0));
+        assertEquals(ListenableWorker.Result.failure(), runWorker(GoalCheckWorker.MAX_ATTEMPTS - 1));
+        // The goal wasn't recorded as sent so the next check sends it
+        notifier.failures = 0;
+        assertEquals(ListenableWorker.Result.success(), runWorker(0));
+        assertEquals(List.of(180F), notifier.sent);
+    }
+
+    @Test
+    public void nothingSent_goalIsNotRecorded() {
+        setGoal(180);
+        addWeight(1, 179);
+        notifier.disabled = true;
+
+        assertEquals(ListenableWorker.Result.success(), runWorker(0));
+        assertNull(settingsStore.readNotifiedGoal(userId));
+        // Once the user can be told, the next check sends the goal
+        notifier.disabled = false;
+        assertEquals(ListenableWorker.Result.success(), runWorker(0));
+        assertEquals(List.of(180F), notifier.sent);
+    }
+
+    private ListenableWorker.Result runWorker(int runAttemptCount) {
+        WorkerFactory factory = new WorkerFactory() {
+            @Override
+            public ListenableWorker createWorker(@NonNull Context appContext, @NonNull String workerClassName,
+                                                 @NonNull WorkerParameters params) {
+                return new GoalCheckWorker(appContext, params, repo, settingsStore, notifier);
+            }
+        };
+        GoalCheckWorker worker = TestListenableWorkerBuilder.from(context, GoalCheckWorker.class)
+                .setInputData(new Data.Builder().putLong(GoalCheckWorker.KEY_USER_ID, userId).build())
+                .setRunAttemptCount(runAttemptCount)
+                .setWorkerFactory(factory)
+                .build();
+        return worker.doWork();
+    }
+
+    private void setGoal(float weight) {
+        GoalWeight goalWeight = new GoalWeight();
+        goalWeight.setId(userId);
+        goalWeight.setUserId(userId);
+        goalWeight.setWeight(weight);
+        database.weightDao().addGoalWeight(goalWeight);
+    }
+
+    private void addWeight(int day, float value) {
+        Weight weight = new Weight();
+        weight.setUserId(userId);
+        weight.setRecorded(day * 24 * 60 * 60 * 1000L, ZoneId.systemDefault());
+        weight.setWeight(value);
+        database.weightDao().addWeight(weight);
+    }
+}
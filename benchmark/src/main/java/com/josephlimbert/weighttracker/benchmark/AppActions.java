@@ -0,0 +1,39 @@
+package com.josephlimbert.weighttracker.benchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * The user journeys shared by the benchmarks and the baseline profile generator.
+ */
+final class AppActions {
+    static final String PACKAGE_NAME = "com.josephlimbert.weighttracker";
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    private AppActions() {}
+
+    // Switch to the History tab and wait for the weight list to appear
+    static void openHistory(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        device.findObject(By.res(PACKAGE_NAME, "navigation_history")).click();
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "history_list")), TIMEOUT_MILLIS);
+    }
+
+    // Fling the weight list down and back up, waiting for it to settle after each fling
+    static void flingWeightList(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = device.findObject(By.res(PACKAGE_NAME, "history_list"));
+        // Keep the gesture away from the edges so it doesn't trigger system navigation
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < 3; i++) {
+            list.fling(Direction.DOWN);
+            device.waitForIdle();
+        }
+        list.fling(Direction.UP);
+        device.waitForIdle();
+    }
+}
@@ -0,0 +1,32 @@
+package com.josephlimbert.weighttracker.benchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records the classes and methods used while starting the app, opening the History tab and
+ * scrolling the weight list. The :app module ships them as its baseline profile so they are
+ * compiled ahead of time on install. Regenerate with ./gradlew :app:generateBaselineProfile.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(AppActions.PACKAGE_NAME, scope -> {
+            scope.pressHome();
+            scope.startActivityAndWait();
+            AppActions.openHistory(scope);
+            AppActions.flingWeightList(scope);
+            return Unit.INSTANCE;
+        });
+    }
+}
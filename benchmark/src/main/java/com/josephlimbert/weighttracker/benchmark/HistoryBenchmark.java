@@ -0,0 +1,67 @@
+package com.josephlimbert.weighttracker.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures frame times on the History tab: switching to it, which builds the chart and the
+ * first page of the weight list, and flinging the list. Use a user with a few hundred weights
+ * so the list pages while it scrolls.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryBenchmark {
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void openHistory() {
+        benchmarkRule.measureRepeated(
+                AppActions.PACKAGE_NAME,
+                List.of(new FrameTimingMetric()),
+                new CompilationMode.Partial(),
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    AppActions.openHistory(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+
+    @Test
+    public void flingWeightList() {
+        benchmarkRule.measureRepeated(
+                AppActions.PACKAGE_NAME,
+                List.of(new FrameTimingMetric()),
+                new CompilationMode.Partial(),
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    AppActions.openHistory(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    AppActions.flingWeightList(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
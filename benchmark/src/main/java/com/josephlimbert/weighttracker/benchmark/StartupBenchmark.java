@@ -0,0 +1,63 @@
+package com.josephlimbert.weighttracker.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures how long the app takes to start. StartupTimingMetric reports the time to initial
+ * display, when the first frame is drawn, and the time to full display, when HomeFragment calls
+ * reportFullyDrawn after the dashboard is loaded from the database.
+ *
+ * Each start is measured without compilation and with the baseline profile so the difference
+ * the profile makes can be tracked.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartupNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    @Test
+    public void coldStartupBaselineProfile() {
+        startup(new CompilationMode.Partial(), StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStartupBaselineProfile() {
+        startup(new CompilationMode.Partial(), StartupMode.WARM);
+    }
+
+    private void startup(CompilationMode compilationMode, StartupMode startupMode) {
+        benchmarkRule.measureRepeated(
+                AppActions.PACKAGE_NAME,
+                List.of(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
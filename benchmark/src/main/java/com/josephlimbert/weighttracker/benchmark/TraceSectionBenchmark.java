@@ -0,0 +1,194 @@
+package com.josephlimbert.weighttracker.benchmark;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures the app's own trace sections and fails when the median of a section is over its upper
+ * bound. The app only emits the sections when it is built with them, so run with:
+ * ./gradlew :benchmark:connectedBenchmarkReleaseAndroidTest -PtraceSections=true
+ *
+ * The bounds are for a mid-range phone and a user with a few hundred weights. Fragment and
+ * startup sections are summed over each iteration. The others are the slowest single run of the
+ * section in each iteration, so one slow bind or page load is enough to fail.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TraceSectionBenchmark {
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Rule
+    public TestName testName = new TestName();
+
+    // Each section's name and the most its median may take, in milliseconds
+    private static final class Bound {
+        final String section;
+        final TraceSectionMetric.Mode mode;
+        final double maxMillis;
+
+        Bound(String section, TraceSectionMetric.Mode mode, double maxMillis) {
+            this.section = section;
+            this.mode = mode;
+            this.maxMillis = maxMillis;
+        }
+    }
+
+    @Test
+    public void startToHome() {
+        List<Bound> bounds = List.of(
+                new Bound("HomeFragment.onCreateView", TraceSectionMetric.Mode.Sum.INSTANCE, 60),
+                new Bound("Repository.prewarm", TraceSectionMetric.Mode.Sum.INSTANCE, 150),
+                new Bound("Repository.getDashboard", TraceSectionMetric.Mode.Max.INSTANCE, 30),
+                new Bound("Repository.onDashboardLoaded", TraceSectionMetric.Mode.Max.INSTANCE, 8));
+        benchmarkRule.measureRepeated(
+                AppActions.PACKAGE_NAME,
+                metrics(bounds),
+                new CompilationMode.Partial(),
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+        assertBounds(bounds);
+    }
+
+    @Test
+    public void openHistory() {
+        List<Bound> bounds = List.of(
+                new Bound("HistoryFragment.onCreateView", TraceSectionMetric.Mode.Sum.INSTANCE, 30),
+                new Bound("ListFragment.onCreateView", TraceSectionMetric.Mode.Sum.INSTANCE, 30),
+                new Bound("WeightPagingSource.load", TraceSectionMetric.Mode.Max.INSTANCE, 30),
+                new Bound("Repository.getChartPoints", TraceSectionMetric.Mode.Max.INSTANCE, 50),
+                new Bound("WeightViewModel.onPagesLoaded", TraceSectionMetric.Mode.Max.INSTANCE, 8));
+        benchmarkRule.measureRepeated(
+                AppActions.PACKAGE_NAME,
+                metrics(bounds),
+                new CompilationMode.Partial(),
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    AppActions.openHistory(scope);
+                    return Unit.INSTANCE;
+                });
+        assertBounds(bounds);
+    }
+
+    @Test
+    public void flingWeightList() {
+        List<Bound> bounds = List.of(
+                new Bound("WeightListAdapter.onBindViewHolder", TraceSectionMetric.Mode.Max.INSTANCE, 4),
+                new Bound("WeightListAdapter.onCreateViewHolder", TraceSectionMetric.Mode.Max.INSTANCE, 8),
+                new Bound("WeightPagingSource.load", TraceSectionMetric.Mode.Max.INSTANCE, 30));
+        benchmarkRule.measureRepeated(
+                AppActions.PACKAGE_NAME,
+                metrics(bounds),
+                new CompilationMode.Partial(),
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    AppActions.openHistory(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    AppActions.flingWeightList(scope);
+                    return Unit.INSTANCE;
+                });
+        assertBounds(bounds);
+    }
+
+    // One metric per section, labelled with the section name so its result can be found again
+    private static List<Metric> metrics(List<Bound> bounds) {
+        List<Metric> metrics = new ArrayList<>();
+        for (Bound bound : bounds) {
+            metrics.add(new TraceSectionMetric(bound.section, bound.mode, bound.section, true));
+        }
+        return metrics;
+    }
+
+    // The rule doesn't return its results, they are read back from the JSON report it writes
+    // after each test
+    private void assertBounds(List<Bound> bounds) {
+        JSONObject results = readResults();
+        for (Bound bound : bounds) {
+            Double median = findMedian(results, bound.section);
+            assertNotNull("No trace section " + bound.section
+                    + ", was the app built with -PtraceSections=true?", median);
+            assertTrue(bound.section + " median " + median + " ms is over " + bound.maxMillis + " ms",
+                    median <= bound.maxMillis);
+        }
+    }
+
+    // The metrics of this test's entry in the report. The report has every test run so far.
+    private JSONObject readResults() {
+        String outputDir = InstrumentationRegistry.getArguments().getString("additionalTestOutputDir");
+        assertNotNull("additionalTestOutputDir is not set", outputDir);
+        String packageName = InstrumentationRegistry.getInstrumentation().getContext().getPackageName();
+        File report = new File(outputDir, packageName + "-benchmarkData.json");
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8));
+            JSONArray benchmarks = json.getJSONArray("benchmarks");
+            for (int i = benchmarks.length() - 1; i >= 0; i--) {
+                JSONObject benchmark = benchmarks.getJSONObject(i);
+                if (getClass().getName().equals(benchmark.optString("className"))
+                        && testName.getMethodName().equals(benchmark.optString("name"))) {
+                    return benchmark.getJSONObject("metrics");
+                }
+            }
+            throw new AssertionError("No results for " + testName.getMethodName() + " in " + report);
+        } catch (IOException | JSONException e) {
+            throw new AssertionError("Could not read " + report, e);
+        }
+    }
+
+    // Metric keys are the label followed by the mode and unit, such as "Repository.prewarmSumMs"
+    private static Double findMedian(JSONObject results, String section) {
+        Iterator<String> keys = results.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.startsWith(section) && key.endsWith("Ms")) {
+                return results.optJSONObject(key).optDouble("median");
+            }
+        }
+        return null;
+    }
+}